@@ -0,0 +1,64 @@
+package de.medizininformatik_initiative.process.report.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.medizininformatik_initiative.process.report.util.ReportBundleMerger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBundleMergerBenchmark
+{
+	@Param({ "100", "1000", "10000" })
+	public int entries;
+
+	@Param({ "2", "10", "40" })
+	public int dics;
+
+	private final ReportBundleMerger merger = new ReportBundleMerger();
+
+	private List<Bundle> reports;
+	private Bundle base;
+
+	@Setup(Level.Trial)
+	public void setupReports()
+	{
+		reports = IntStream.range(0, dics).mapToObj(i -> SyntheticBundles.reportBundle(entries, "dic-" + i, i))
+				.toList();
+	}
+
+	// merging only adds totals to the base report, resetting per iteration keeps the totals from overflowing
+	@Setup(Level.Iteration)
+	public void setupBase()
+	{
+		base = reports.get(0).copy();
+	}
+
+	@Benchmark
+	public Bundle mergeBundles()
+	{
+		for (int i = 1; i < reports.size(); i++)
+			merger.mergeBundles(base, reports.get(i));
+
+		return base;
+	}
+}
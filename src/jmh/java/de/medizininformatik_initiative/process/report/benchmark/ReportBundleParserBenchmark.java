@@ -0,0 +1,63 @@
+package de.medizininformatik_initiative.process.report.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBundleParserBenchmark
+{
+	@Param({ "100", "1000", "10000" })
+	public int entries;
+
+	@Param({ "json", "xml" })
+	public String format;
+
+	private final FhirContext fhirContext = FhirContext.forR4();
+
+	private Bundle report;
+	private String encodedReport;
+
+	@Setup
+	public void setup()
+	{
+		report = SyntheticBundles.reportBundle(entries, "dic", 42);
+		encodedReport = newParser().encodeResourceToString(report);
+	}
+
+	@Benchmark
+	public Bundle parse()
+	{
+		return newParser().parseResource(Bundle.class, encodedReport);
+	}
+
+	@Benchmark
+	public String encode()
+	{
+		return newParser().encodeResourceToString(report);
+	}
+
+	private IParser newParser()
+	{
+		return "xml".equals(format) ? fhirContext.newXmlParser() : fhirContext.newJsonParser();
+	}
+}
@@ -0,0 +1,58 @@
+package de.medizininformatik_initiative.process.report.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.medizininformatik_initiative.process.report.util.ReportEntryTransformer;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportEntryTransformerBenchmark
+{
+	@Param({ "100", "1000", "10000" })
+	public int entries;
+
+	@Param({ "false", "true" })
+	public boolean async;
+
+	private ReportEntryTransformer transformer;
+	private Bundle searchBundle;
+	private Bundle responseBundle;
+
+	@Setup
+	public void setup()
+	{
+		transformer = new ReportEntryTransformer(async);
+		searchBundle = SyntheticBundles.searchBundle(entries);
+		responseBundle = SyntheticBundles.responseBundle(searchBundle, async, 42);
+	}
+
+	// the calls SearchBundleExecutor makes with ReportEntryTransformer::transformEntry as responses arrive, without the
+	// search requests
+	@Benchmark
+	public Bundle transformEntries()
+	{
+		Bundle report = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		for (int i = 0; i < searchBundle.getEntry().size(); i++)
+			report.addEntry(transformer.transformEntry(searchBundle.getEntry().get(i).getRequest().getUrl(),
+					responseBundle.getEntry().get(i)));
+
+		return report;
+	}
+}
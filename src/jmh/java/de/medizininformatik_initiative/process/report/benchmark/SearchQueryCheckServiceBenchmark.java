@@ -0,0 +1,48 @@
+package de.medizininformatik_initiative.process.report.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.medizininformatik_initiative.process.report.util.SearchQueryCheckService;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchQueryCheckServiceBenchmark
+{
+	@Param({ "100", "1000", "10000" })
+	public int entries;
+
+	private final SearchQueryCheckService searchQueryCheckService = new SearchQueryCheckService();
+
+	private Bundle searchBundle;
+
+	@Setup
+	public void setup()
+	{
+		searchBundle = SyntheticBundles.searchBundle(entries);
+		searchQueryCheckService.checkBundle(searchBundle);
+	}
+
+	@Benchmark
+	public Bundle checkBundle()
+	{
+		searchQueryCheckService.checkBundle(searchBundle);
+		return searchBundle;
+	}
+}
@@ -0,0 +1,146 @@
+package de.medizininformatik_initiative.process.report.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Identifier;
+
+public final class SyntheticBundles
+{
+	private static final List<String> SEARCHES = List.of(
+			"Condition?code=http://fhir.de/CodeSystem/bfarm/icd-10-gm|&_summary=count",
+			"Condition?code=http://fhir.de/CodeSystem/bfarm/icd-10-gm|&recorded-date=eq%d&_summary=count",
+			"Encounter?type=einrichtungskontakt&date=eq%d&_summary=count",
+			"Observation?code=http://loinc.org|&date=eq%d&_summary=count",
+			"Procedure?code=http://fhir.de/CodeSystem/bfarm/ops|&date=eq%d&_summary=count",
+			"Medication?code=http://fhir.de/CodeSystem/ifa/pzn|&_profile:below=https://www.medizininformatik-initiative.de/fhir/core/modul-medikation/StructureDefinition/Medication&_summary=count",
+			"MedicationAdministration?effective-time=eq%d&_summary=count",
+			"Specimen?type=http://snomed.info/sct|&collected=eq%d&_summary=count",
+			"Patient?_profile:below=https://www.medizininformatik-initiative.de/fhir/core/modul-person/StructureDefinition/Patient&_summary=count");
+
+	private static final String CAPABILITY_STATEMENT_URL = "metadata";
+	private static final int CAPABILITY_STATEMENT_RESOURCES = 150;
+	private static final int CAPABILITY_STATEMENT_SEARCH_PARAMS = 20;
+
+	private SyntheticBundles()
+	{
+	}
+
+	public static Bundle searchBundle(int entries)
+	{
+		Bundle bundle = new Bundle().setType(Bundle.BundleType.BATCH);
+		bundle.addEntry().getRequest().setMethod(Bundle.HTTPVerb.GET).setUrl(CAPABILITY_STATEMENT_URL);
+
+		for (int i = 1; i < entries; i++)
+			bundle.addEntry().getRequest().setMethod(Bundle.HTTPVerb.GET).setUrl(url(i));
+
+		return bundle;
+	}
+
+	public static Bundle responseBundle(Bundle searchBundle, boolean async, long seed)
+	{
+		Random random = new Random(seed);
+		Bundle bundle = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+
+		for (Bundle.BundleEntryComponent searchEntry : searchBundle.getEntry())
+		{
+			Bundle.BundleEntryComponent entry = bundle.addEntry();
+			entry.getResponse().setStatus("200");
+
+			if (CAPABILITY_STATEMENT_URL.equals(searchEntry.getRequest().getUrl()))
+				entry.setResource(capabilityStatement());
+			else
+			{
+				Bundle searchset = new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(random.nextInt(100_000));
+				searchset.getMeta().setLastUpdated(new Date());
+				entry.setResource(async ? nest(searchset) : searchset);
+			}
+		}
+
+		return bundle;
+	}
+
+	public static Bundle reportBundle(int entries, String organizationIdentifier, long seed)
+	{
+		Random random = new Random(seed);
+		Bundle bundle = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		bundle.setIdentifier(
+				new Identifier().setSystem("http://medizininformatik-initiative.de/sid/cds-report-identifier")
+						.setValue(organizationIdentifier));
+		bundle.getMeta().setLastUpdated(new Date());
+
+		Bundle.BundleEntryComponent metadata = bundle.addEntry();
+		metadata.setResource(capabilityStatement());
+		metadata.getResponse().setStatus("200");
+
+		for (int i = 1; i < entries; i++)
+		{
+			Bundle searchset = new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(random.nextInt(100_000));
+			searchset.getMeta().setLastUpdated(new Date());
+			searchset.addLink().setRelation("self").setUrl(url(i));
+
+			Bundle.BundleEntryComponent entry = bundle.addEntry();
+			entry.setResource(searchset);
+			entry.getResponse().setStatus("200");
+		}
+
+		return bundle;
+	}
+
+	private static String url(int index)
+	{
+		// urls have to be unique within a report, report merges are keyed by url
+		String search = SEARCHES.get(index % SEARCHES.size());
+		int variant = index / SEARCHES.size();
+
+		if (search.contains("%d"))
+		{
+			String url = String.format(search, 2000 + variant % 100);
+			return variant < 100 ? url : url + "&_profile=" + variant / 100;
+		}
+		else
+			return variant == 0 ? search : search + "&_profile=" + variant;
+	}
+
+	private static Bundle nest(Bundle searchset)
+	{
+		Bundle inner = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		inner.addEntry().setResource(searchset);
+
+		Bundle outer = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		outer.addEntry().setResource(inner);
+
+		return outer;
+	}
+
+	private static CapabilityStatement capabilityStatement()
+	{
+		CapabilityStatement capabilityStatement = new CapabilityStatement();
+		capabilityStatement.setStatus(Enumerations.PublicationStatus.ACTIVE).setDate(new Date())
+				.setKind(CapabilityStatement.CapabilityStatementKind.INSTANCE)
+				.setFhirVersion(Enumerations.FHIRVersion._4_0_1);
+		capabilityStatement.getSoftware().setName("Synthetic FHIR Server").setVersion("1.0.0");
+		capabilityStatement.addFormat("application/fhir+json").addFormat("application/fhir+xml").addFormat("json")
+				.addFormat("xml");
+
+		CapabilityStatement.CapabilityStatementRestComponent rest = capabilityStatement.addRest()
+				.setMode(CapabilityStatement.RestfulCapabilityMode.SERVER);
+
+		for (int r = 0; r < CAPABILITY_STATEMENT_RESOURCES; r++)
+		{
+			CapabilityStatement.CapabilityStatementRestResourceComponent resource = rest.addResource()
+					.setType("Resource" + r);
+
+			for (int p = 0; p < CAPABILITY_STATEMENT_SEARCH_PARAMS; p++)
+				resource.addSearchParam().setName("param" + p).setType(Enumerations.SearchParamType.TOKEN)
+						.setDocumentation("Documentation of search parameter param" + p
+								+ " which is removed when transforming the CapabilityStatement for the report");
+		}
+
+		return capabilityStatement;
+	}
+}
@@ -39,6 +39,8 @@ public interface ConstantsReport
 	String BPMN_EXECUTION_VARIABLE_REPORT_TIMER_INTERVAL = "reportTimerInterval";
 	String BPMN_EXECUTION_VARIABLE_REPORT_FIRST_EXECUTION = "reportFirstExecution";
 	String BPMN_EXECUTION_VARIABLE_REPORT_FIRST_EXECUTION_DELAYED = "reportFirstExecutionDelayed";
+	String BPMN_EXECUTION_VARIABLE_REPORT_NEXT_EXECUTION = "reportNextExecution";
+	String BPMN_EXECUTION_VARIABLE_REPORT_DEFERRED_SINCE = "reportDeferredSince";
 	String BPMN_EXECUTION_VARIABLE_REPORT_SEARCH_BUNDLE = "reportSearchBundle";
 	String BPMN_EXECUTION_VARIABLE_REPORT_SEARCH_BUNDLE_RESPONSE_REFERENCE = "reportSearchBundleResponseReference";
 	String BPMN_EXECUTION_VARIABLE_REPORT_RECEIVE_ERROR = "reportReceiveError";
@@ -64,6 +66,7 @@ public interface ConstantsReport
 	String CODESYSTEM_REPORT_STATUS_VALUE_RECEIVE_OK = "receive-ok";
 	String CODESYSTEM_REPORT_STATUS_VALUE_RECEIVE_ERROR = "receive-error";
 	String CODESYSTEM_REPORT_STATUS_VALUE_DRY_RUN = "dry-run";
+	String CODESYSTEM_REPORT_STATUS_VALUE_PENDING = "pending";
 
 	String VALUESET_REPORT_STATUS_SEND = "http://medizininformatik-initiative.de/fhir/ValueSet/report-status-send";
 
@@ -1,5 +1,6 @@
 package de.medizininformatik_initiative.process.report;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -8,6 +9,7 @@ import org.hl7.fhir.r4.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.medizininformatik_initiative.process.report.util.DirectoryCache;
 import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import dev.dsf.bpe.v1.ProcessPluginApi;
 import dev.dsf.bpe.v1.constants.NamingSystems;
@@ -16,6 +18,8 @@ public interface HrpExtracter
 {
 	Logger logger = LoggerFactory.getLogger(HrpExtracter.class);
 
+	DirectoryCache getDirectoryCache();
+
 	default String hrpExtract(ProcessPluginApi api, Task startTask, String hrpIdentifierEnvVariable, Coding hrpRole,
 			Identifier parentIdentifier)
 	{
@@ -40,33 +44,83 @@ public interface HrpExtracter
 		return hrpIdentifier;
 	}
 
+	// in multi target mode the ENV variable may contain a comma separated list of HRPs, only the autostart process
+	// starts one report send process per HRP
 	default Supplier<Optional<String>> extractHrpIdentifierFromEnv(String hrpIdentifierEnvVariable)
 	{
 		return () ->
 		{
 			if (hrpIdentifierEnvVariable != null)
 			{
-				logger.info("Using HRP '{}' from ENV variable as report target", hrpIdentifierEnvVariable);
-				return Optional.of(hrpIdentifierEnvVariable);
+				List<String> hrpIdentifiers = splitHrpIdentifiers(hrpIdentifierEnvVariable);
+				if (hrpIdentifiers.size() > 1)
+					throw new RuntimeException("ENV variable contains more than one HRP " + hrpIdentifiers
+							+ ", report target must be set as Task input or report must be started by the autostart process");
+
+				logger.info("Using HRP '{}' from ENV variable as report target", hrpIdentifiers.get(0));
+				return Optional.of(hrpIdentifiers.get(0));
 			}
 			else
 				return Optional.empty();
 		};
 	}
 
+	default List<String> splitHrpIdentifiers(String hrpIdentifierEnvVariable)
+	{
+		List<String> hrpIdentifiers = Arrays.stream(hrpIdentifierEnvVariable.split(",")).map(String::trim)
+				.filter(h -> !h.isEmpty()).distinct().toList();
+
+		if (hrpIdentifiers.isEmpty())
+			throw new RuntimeException("ENV variable contains no HRP");
+
+		return hrpIdentifiers;
+	}
+
 	default String searchHrpIdentifier(ProcessPluginApi api, Identifier parentIdentifier, Coding hrpRole, Task task)
 	{
 		logger.debug(
 				"HRP not defined in Task with id '{}' or ENV variable - searching HRP for mii-consortium as report target",
 				task.getId());
 
-		Organization organization = getHrpOrganization(api, parentIdentifier, hrpRole);
+		Organization organization = getHrpOrganization(parentIdentifier, hrpRole);
 		return extractHrpIdentifierFromOrganization(organization);
 	}
 
-	default Organization getHrpOrganization(ProcessPluginApi api, Identifier parentIdentifier, Coding role)
+	default Identifier getParentIdentifier(String reportSendOrganizationIdentifier)
+	{
+		return NamingSystems.OrganizationIdentifier
+				.withValue(reportSendOrganizationIdentifier != null && !reportSendOrganizationIdentifier.isEmpty()
+						? reportSendOrganizationIdentifier
+						: ConstantsBase.NAMINGSYSTEM_DSF_ORGANIZATION_IDENTIFIER_MEDICAL_INFORMATICS_INITIATIVE_CONSORTIUM);
+	}
+
+	default Coding getHrpRole()
+	{
+		return new Coding().setSystem(ConstantsBase.CODESYSTEM_DSF_ORGANIZATION_ROLE)
+				.setCode(ConstantsBase.CODESYSTEM_DSF_ORGANIZATION_ROLE_VALUE_HRP);
+	}
+
+	// all HRPs configured as comma separated list in the ENV variable, if not present all HRPs of the
+	// mii-parent-organization
+	default List<String> searchHrpIdentifiers(String hrpIdentifierEnvVariable, Identifier parentIdentifier,
+			Coding hrpRole)
+	{
+		if (hrpIdentifierEnvVariable != null)
+			return splitHrpIdentifiers(hrpIdentifierEnvVariable);
+
+		List<String> hrpIdentifiers = getDirectoryCache().getOrganizations(parentIdentifier, hrpRole).stream()
+				.map(this::extractHrpIdentifierFromOrganization).distinct().toList();
+
+		if (hrpIdentifiers.isEmpty())
+			throw new RuntimeException("Could not find any organization with role '" + hrpRole.getCode()
+					+ "' and parent organization '" + parentIdentifier.getValue() + "'");
+
+		return hrpIdentifiers;
+	}
+
+	default Organization getHrpOrganization(Identifier parentIdentifier, Coding role)
 	{
-		List<Organization> hrps = api.getOrganizationProvider().getOrganizations(parentIdentifier, role);
+		List<Organization> hrps = getDirectoryCache().getOrganizations(parentIdentifier, role);
 
 		if (hrps.size() < 1)
 			throw new RuntimeException("Could not find any organization with role '" + role.getCode()
@@ -89,10 +143,9 @@ public interface HrpExtracter
 				.getValue();
 	}
 
-	default Endpoint getEndpoint(ProcessPluginApi api, Identifier parentIdentifier, Identifier organizationIdentifier,
-			Coding role)
+	default Endpoint getEndpoint(Identifier parentIdentifier, Identifier organizationIdentifier, Coding role)
 	{
-		return api.getEndpointProvider().getEndpoint(parentIdentifier, organizationIdentifier, role)
+		return getDirectoryCache().getEndpoint(parentIdentifier, organizationIdentifier, role)
 				.orElseThrow(() -> new RuntimeException("Could not find any endpoint of '" + role.getCode()
 						+ "' with identifier '" + organizationIdentifier.getValue() + "'"));
 	}
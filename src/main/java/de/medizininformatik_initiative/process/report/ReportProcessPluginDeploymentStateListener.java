@@ -1,10 +1,15 @@
 package de.medizininformatik_initiative.process.report;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -14,8 +19,11 @@ import org.hl7.fhir.r4.model.CodeSystem;
 import org.hl7.fhir.r4.model.Resource;
 import org.hl7.fhir.r4.model.Task;
 import org.hl7.fhir.r4.model.ValueSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
+import de.medizininformatik_initiative.process.report.store.MetadataMigrationState;
 import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
 import de.medizininformatik_initiative.processes.common.util.MetadataResourceConverter;
 import dev.dsf.bpe.v1.ProcessPluginApi;
@@ -24,22 +32,30 @@ import dev.dsf.bpe.v1.ProcessPluginDeploymentStateListener;
 public class ReportProcessPluginDeploymentStateListener
 		implements ProcessPluginDeploymentStateListener, InitializingBean
 {
+	private static final Logger logger = LoggerFactory.getLogger(ReportProcessPluginDeploymentStateListener.class);
+
+	private static final String CODESYSTEM_REPORT_FILE = "fhir/CodeSystem/report.xml";
+	private static final String CODESYSTEM_REPORT_STATUS_FILE = "fhir/CodeSystem/report-status.xml";
+	private static final String VALUESET_REPORT_STATUS_SEND_FILE = "fhir/ValueSet/report-status-send.xml";
+
 	private final ProcessPluginApi api;
 
 	private final FhirClientFactory fhirClientFactory;
 	private final boolean reportDistributeAsBroker;
 	private final String resourcesVersion;
 	private final MetadataResourceConverter metadataResourceConverter;
+	private final MetadataMigrationState metadataMigrationState;
 
 
 	public ReportProcessPluginDeploymentStateListener(ProcessPluginApi api, FhirClientFactory fhirClientFactory,
-			MetadataResourceConverter metadataResourceConverter, String resourcesVersion,
-			boolean reportDistributeAsBroker)
+			MetadataResourceConverter metadataResourceConverter, MetadataMigrationState metadataMigrationState,
+			String resourcesVersion, boolean reportDistributeAsBroker)
 	{
 		this.api = api;
 		this.fhirClientFactory = fhirClientFactory;
 		this.reportDistributeAsBroker = reportDistributeAsBroker;
 		this.metadataResourceConverter = metadataResourceConverter;
+		this.metadataMigrationState = metadataMigrationState;
 		this.resourcesVersion = resourcesVersion;
 	}
 
@@ -49,6 +65,7 @@ public class ReportProcessPluginDeploymentStateListener
 		Objects.requireNonNull(api, "api");
 		Objects.requireNonNull(fhirClientFactory, "fhirClientFactory");
 		Objects.requireNonNull(metadataResourceConverter, "metadataResourceConverter");
+		Objects.requireNonNull(metadataMigrationState, "metadataMigrationState");
 		Objects.requireNonNull(resourcesVersion, "resourcesVersion");
 	}
 
@@ -59,25 +76,87 @@ public class ReportProcessPluginDeploymentStateListener
 		// updateDraftTaskReportSendStart added because CodeSystems with different versions cannot be used in
 		// DSF API 1.x. Remove for DSF API 2.x API where CodeSystem versioning is fixed.
 
-		metadataResourceConverter.searchAndConvertOlderResourcesIfCurrentIsNewestResource(
-				ConstantsReport.CODESYSTEM_REPORT, CodeSystem.class, this::filterCodeSystemsWithNonMatchingConceptCodes,
-				this::adaptCodeSystemsReplacingConcepts);
-
-		metadataResourceConverter.searchAndConvertOlderResourcesIfCurrentIsNewestResource(
-				ConstantsReport.CODESYSTEM_REPORT_STATUS, CodeSystem.class,
-				this::filterCodeSystemsWithNonMatchingConceptCodes, this::adaptCodeSystemsReplacingConcepts);
+		boolean sendActive = !reportDistributeAsBroker
+				&& activeProcesses.contains(ConstantsReport.PROCESS_NAME_FULL_REPORT_SEND);
 
-		if (!reportDistributeAsBroker && activeProcesses.contains(ConstantsReport.PROCESS_NAME_FULL_REPORT_SEND))
+		String fingerprint = createMigrationFingerprint(sendActive);
+		if (metadataMigrationState.isMigrated(fingerprint))
 		{
-			metadataResourceConverter.searchAndConvertOlderResourcesIfCurrentIsNewestResource(
-					ConstantsReport.VALUESET_REPORT_STATUS_SEND, ValueSet.class,
-					this::filterValueSetsWithNonMatchingConceptCodes, this::adaptValueSetsReplacingConcepts);
+			logger.info("Report CodeSystems and ValueSets unchanged since last start, skipping metadata migration");
+		}
+		else
+		{
+			List<Runnable> migrations = new ArrayList<>();
+			migrations.add(() -> metadataResourceConverter.searchAndConvertOlderResourcesIfCurrentIsNewestResource(
+					ConstantsReport.CODESYSTEM_REPORT, CodeSystem.class,
+					this::filterCodeSystemsWithNonMatchingConceptCodes, this::adaptCodeSystemsReplacingConcepts));
+			migrations.add(() -> metadataResourceConverter.searchAndConvertOlderResourcesIfCurrentIsNewestResource(
+					ConstantsReport.CODESYSTEM_REPORT_STATUS, CodeSystem.class,
+					this::filterCodeSystemsWithNonMatchingConceptCodes, this::adaptCodeSystemsReplacingConcepts));
+
+			if (sendActive)
+				migrations.add(() -> metadataResourceConverter.searchAndConvertOlderResourcesIfCurrentIsNewestResource(
+						ConstantsReport.VALUESET_REPORT_STATUS_SEND, ValueSet.class,
+						this::filterValueSetsWithNonMatchingConceptCodes, this::adaptValueSetsReplacingConcepts));
+
+			runConcurrently(migrations);
+			metadataMigrationState.markMigrated(fingerprint);
+		}
 
+		if (sendActive)
+		{
+			// draft Task is replaced by the DSF on every deployment and has to be checked each time
 			updateDraftTaskReportSendStart();
 
-			fhirClientFactory.testConnection();
+			testConnectionInBackground();
+		}
+	}
+
+	private String createMigrationFingerprint(boolean sendActive)
+	{
+		List<String> files = sendActive
+				? List.of(CODESYSTEM_REPORT_FILE, CODESYSTEM_REPORT_STATUS_FILE, VALUESET_REPORT_STATUS_SEND_FILE)
+				: List.of(CODESYSTEM_REPORT_FILE, CODESYSTEM_REPORT_STATUS_FILE);
 
+		return MetadataMigrationState.createFingerprint(resourcesVersion, files);
+	}
+
+	private void runConcurrently(List<Runnable> migrations)
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(migrations.size());
+		try
+		{
+			CompletableFuture.allOf(migrations.stream().map(m -> CompletableFuture.runAsync(m, executor))
+					.toArray(CompletableFuture[]::new)).join();
 		}
+		catch (CompletionException exception)
+		{
+			if (exception.getCause() instanceof RuntimeException runtimeException)
+				throw runtimeException;
+			else
+				throw exception;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private void testConnectionInBackground()
+	{
+		Thread thread = new Thread(() ->
+		{
+			try
+			{
+				fhirClientFactory.testConnection();
+			}
+			catch (Exception exception)
+			{
+				logger.warn("Connection test to FHIR store failed - {}", exception.getMessage());
+			}
+		}, "report-fhir-connection-test");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 	private void adaptCodeSystemsReplacingConcepts(CodeSystem currentResource, CodeSystem olderResource)
@@ -4,7 +4,7 @@ import java.util.Collections;
 import java.util.Map;
 
 import org.hl7.fhir.r4.model.Bundle;
-import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.IdType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,7 +14,8 @@ public interface SaveOrUpdateBundle
 {
 	Logger logger = LoggerFactory.getLogger(SaveOrUpdateBundle.class);
 
-	default Resource saveOrUpdate(FhirWebserviceClient localWebserviceClient, Bundle bundle,
+	// stored bundles are not returned by the DSF FHIR server, only id and version are read from the response
+	default IdType saveOrUpdate(FhirWebserviceClient localWebserviceClient, Bundle bundle,
 			String searchBundleIdentifier)
 	{
 		Bundle localSearchBundle = searchBundleLocal(localWebserviceClient, searchBundleIdentifier);
@@ -23,14 +24,14 @@ public interface SaveOrUpdateBundle
 		{
 			logger.info("Store report bundle on local dsf fhir server finished. Bundle identifier: {}",
 					searchBundleIdentifier);
-			return localWebserviceClient.create(bundle.setId((String) null));
+			return localWebserviceClient.withMinimalReturn().create(bundle.setId((String) null));
 		}
 		else if (localSearchBundle.getEntry().iterator().next().getResource() instanceof Bundle innerBundle)
 		{
 			logger.info("Update report bundle on local dsf fhir server finished. Bundle identifier: {}",
 					searchBundleIdentifier);
 			bundle.getMeta().setVersionId(innerBundle.getMeta().getVersionId());
-			return localWebserviceClient.update(bundle.setId(innerBundle.getId()));
+			return localWebserviceClient.withMinimalReturn().update(bundle.setId(innerBundle.getId()));
 		}
 		return null;
 	}
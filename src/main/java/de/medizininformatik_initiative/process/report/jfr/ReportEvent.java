@@ -0,0 +1,47 @@
+package de.medizininformatik_initiative.process.report.jfr;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+@Category({ "DSF", "Report" })
+@StackTrace(false)
+public abstract class ReportEvent extends Event
+{
+	@Label("Task Id")
+	public String taskId;
+
+	@Label("Organization")
+	@Description("Identifier of the HRP or DIC the step is executed for")
+	public String organization;
+
+	@Label("URL")
+	public String url;
+
+	@Label("Bytes")
+	@Description("Size of the JSON encoded resource handled by the step, 0 if resource sizes are not recorded")
+	@DataAmount
+	public long bytes;
+
+	public void finish(ReportEventResourceSize resourceSize, IBaseResource resource, String taskId, String organization,
+			String url)
+	{
+		end();
+
+		// only populate and encode if recording is enabled and the event passes the configured threshold
+		if (shouldCommit())
+		{
+			this.taskId = taskId;
+			this.organization = organization;
+			this.url = url;
+			this.bytes = resourceSize.getBytes(resource);
+
+			commit();
+		}
+	}
+}
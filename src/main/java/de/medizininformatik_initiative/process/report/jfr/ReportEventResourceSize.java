@@ -0,0 +1,26 @@
+package de.medizininformatik_initiative.process.report.jfr;
+
+import java.nio.charset.StandardCharsets;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import ca.uhn.fhir.context.FhirContext;
+
+// resources are encoded to JSON only to count their bytes, expensive for large reports and therefore optional
+public class ReportEventResourceSize
+{
+	private final FhirContext fhirContext;
+	private final boolean enabled;
+
+	public ReportEventResourceSize(FhirContext fhirContext, boolean enabled)
+	{
+		this.fhirContext = fhirContext;
+		this.enabled = enabled;
+	}
+
+	public long getBytes(IBaseResource resource)
+	{
+		return resource == null || !enabled ? 0
+				: fhirContext.newJsonParser().encodeResourceToString(resource).getBytes(StandardCharsets.UTF_8).length;
+	}
+}
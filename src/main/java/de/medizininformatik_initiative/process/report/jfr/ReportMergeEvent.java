@@ -0,0 +1,12 @@
+package de.medizininformatik_initiative.process.report.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.medizininformatik_initiative.report.Merge")
+@Label("Report Aggregation Merge")
+@Description("Merge of a DIC report into the aggregated report")
+public class ReportMergeEvent extends ReportEvent
+{
+}
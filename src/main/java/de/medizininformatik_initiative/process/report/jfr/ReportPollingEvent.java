@@ -0,0 +1,12 @@
+package de.medizininformatik_initiative.process.report.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.medizininformatik_initiative.report.Polling")
+@Label("Report Async Polling")
+@Description("Asynchronous search request against the DIC FHIR store including all status polls")
+public class ReportPollingEvent extends ReportEvent
+{
+}
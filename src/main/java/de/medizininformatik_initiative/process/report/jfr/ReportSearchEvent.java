@@ -0,0 +1,17 @@
+package de.medizininformatik_initiative.process.report.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.medizininformatik_initiative.report.Search")
+@Label("Report Search")
+@Description("Search request of a search Bundle executed against the DIC FHIR store")
+public class ReportSearchEvent extends ReportEvent
+{
+	@Label("Request Pattern")
+	public String pattern;
+
+	@Label("Response Status")
+	public String status;
+}
@@ -0,0 +1,12 @@
+package de.medizininformatik_initiative.process.report.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.medizininformatik_initiative.report.Transformation")
+@Label("Report Transformation")
+@Description("Transformation of search responses into the report Bundle")
+public class ReportTransformationEvent extends ReportEvent
+{
+}
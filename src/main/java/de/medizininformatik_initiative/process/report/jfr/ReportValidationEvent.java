@@ -0,0 +1,12 @@
+package de.medizininformatik_initiative.process.report.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.medizininformatik_initiative.report.Validation")
+@Label("Report Validation")
+@Description("Check of a search Bundle or report Bundle")
+public class ReportValidationEvent extends ReportEvent
+{
+}
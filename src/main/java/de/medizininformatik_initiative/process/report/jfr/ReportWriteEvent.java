@@ -0,0 +1,12 @@
+package de.medizininformatik_initiative.process.report.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.medizininformatik_initiative.report.Write")
+@Label("Report FHIR Write")
+@Description("Create or update of a search Bundle or report Bundle on the local DSF FHIR server")
+public class ReportWriteEvent extends ReportEvent
+{
+}
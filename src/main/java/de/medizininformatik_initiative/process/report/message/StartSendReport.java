@@ -1,5 +1,8 @@
 package de.medizininformatik_initiative.process.report.message;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -7,19 +10,109 @@ import java.util.stream.Stream;
 import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.hl7.fhir.r4.model.Reference;
 import org.hl7.fhir.r4.model.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.HrpExtracter;
+import de.medizininformatik_initiative.process.report.util.DirectoryCache;
+import de.medizininformatik_initiative.process.report.util.FhirStoreCircuitBreaker;
+import de.medizininformatik_initiative.process.report.util.ReportSchedule;
 import dev.dsf.bpe.v1.ProcessPluginApi;
 import dev.dsf.bpe.v1.activity.AbstractTaskMessageSend;
+import dev.dsf.bpe.v1.constants.NamingSystems;
 import dev.dsf.bpe.v1.variables.Target;
 import dev.dsf.bpe.v1.variables.Variables;
 
-public class StartSendReport extends AbstractTaskMessageSend
+public class StartSendReport extends AbstractTaskMessageSend implements HrpExtracter
 {
+	private static final Logger logger = LoggerFactory.getLogger(StartSendReport.class);
 
-	public StartSendReport(ProcessPluginApi api)
+	private final FhirStoreCircuitBreaker circuitBreaker;
+	private final ReportSchedule schedule;
+	private final DirectoryCache directoryCache;
+	private final String hrpIdentifierEnvVariable;
+	private final String reportSendOrganizationIdentifier;
+	private final boolean multiTargetEnabled;
+
+	public StartSendReport(ProcessPluginApi api, FhirStoreCircuitBreaker circuitBreaker, ReportSchedule schedule,
+			DirectoryCache directoryCache, String hrpIdentifierEnvVariable, String reportSendOrganizationIdentifier,
+			boolean multiTargetEnabled)
 	{
 		super(api);
+		this.circuitBreaker = circuitBreaker;
+		this.schedule = schedule;
+		this.directoryCache = directoryCache;
+		this.hrpIdentifierEnvVariable = hrpIdentifierEnvVariable;
+		this.reportSendOrganizationIdentifier = reportSendOrganizationIdentifier;
+		this.multiTargetEnabled = multiTargetEnabled;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception
+	{
+		super.afterPropertiesSet();
+		Objects.requireNonNull(circuitBreaker, "circuitBreaker");
+		Objects.requireNonNull(schedule, "schedule");
+		Objects.requireNonNull(directoryCache, "directoryCache");
+	}
+
+	@Override
+	public DirectoryCache getDirectoryCache()
+	{
+		return directoryCache;
+	}
+
+	@Override
+	protected void doExecute(DelegateExecution execution, Variables variables) throws Exception
+	{
+		LocalDateTime now = LocalDateTime.now();
+		Optional<LocalDateTime> deferral = schedule.getDeferral(now, getDue(variables, now), circuitBreaker.isBusy());
+		if (deferral.isPresent())
+		{
+			variables.setString(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_NEXT_EXECUTION,
+					deferral.get().toString());
+			logger.info("Deferring report send process to '{}' for Task with id '{}', {}", deferral.get(),
+					variables.getStartTask().getId(),
+					schedule.isInExecutionWindow(now)
+							? "FHIR store busy, probe latency " + circuitBreaker.getProbeLatency()
+							: "outside of execution windows");
+			return;
+		}
+
+		execution.removeVariable(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_DEFERRED_SINCE);
+		setNextExecution(variables, now);
+
+		// a report could not be created anyway, next attempt at the next timer interval
+		if (!circuitBreaker.isAvailable())
+		{
+			logger.warn("FHIR store unavailable, not starting report send process for Task with id '{}'",
+					variables.getStartTask().getId());
+			return;
+		}
+
+		super.doExecute(execution, variables);
+	}
+
+	private LocalDateTime getDue(Variables variables, LocalDateTime now)
+	{
+		String deferredSince = variables.getString(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_DEFERRED_SINCE);
+		if (deferredSince != null)
+			return LocalDateTime.parse(deferredSince);
+
+		variables.setString(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_DEFERRED_SINCE, now.toString());
+		return now;
+	}
+
+	private void setNextExecution(Variables variables, LocalDateTime now)
+	{
+		String timerInterval = variables.getString(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_TIMER_INTERVAL);
+		String nextExecution = schedule.getNextExecution(timerInterval, now,
+				api.getOrganizationProvider().getLocalOrganizationIdentifierValue().orElse(null)).toString();
+
+		variables.setString(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_NEXT_EXECUTION, nextExecution);
+		logger.info("Next execution of report send process set to '{}' for Task with id '{}'", nextExecution,
+				variables.getStartTask().getId());
 	}
 
 	@Override
@@ -27,9 +120,40 @@ public class StartSendReport extends AbstractTaskMessageSend
 			String instantiatesCanonical, String messageName, String businessKey, String profile,
 			Stream<Task.ParameterComponent> additionalInputParameters)
 	{
-		// Use different business key as autostart process to allow parallel creation of reports
-		super.sendTask(execution, variables, target, instantiatesCanonical, messageName, UUID.randomUUID().toString(),
-				profile, additionalInputParameters);
+		List<Task.ParameterComponent> inputParameters = additionalInputParameters.toList();
+
+		if (!multiTargetEnabled || inputParameters.stream().anyMatch(this::isHrpIdentifierInput))
+		{
+			// Use different business key as autostart process to allow parallel creation of reports
+			super.sendTask(execution, variables, target, instantiatesCanonical, messageName,
+					UUID.randomUUID().toString(), profile, inputParameters.stream());
+			return;
+		}
+
+		// one report send process per HRP running in parallel, search requests contained in the search Bundles of
+		// more than one HRP are only executed once, see SearchResultCache
+		List<String> hrpIdentifiers = searchHrpIdentifiers(hrpIdentifierEnvVariable,
+				getParentIdentifier(reportSendOrganizationIdentifier), getHrpRole());
+		logger.info("Starting report send process for HRPs {} for Task with id '{}'", hrpIdentifiers,
+				variables.getStartTask().getId());
+
+		for (String hrpIdentifier : hrpIdentifiers)
+		{
+			Task.ParameterComponent hrpInput = api.getTaskHelper().createInput(
+					new Reference().setIdentifier(NamingSystems.OrganizationIdentifier.withValue(hrpIdentifier)),
+					ConstantsReport.CODESYSTEM_REPORT, ConstantsReport.CODESYSTEM_REPORT_VALUE_HRP_IDENTIFIER);
+
+			super.sendTask(execution, variables, target, instantiatesCanonical, messageName,
+					UUID.randomUUID().toString(), profile,
+					Stream.concat(inputParameters.stream(), Stream.of(hrpInput)));
+		}
+	}
+
+	private boolean isHrpIdentifierInput(Task.ParameterComponent parameter)
+	{
+		return parameter.getType().getCoding().stream()
+				.anyMatch(c -> ConstantsReport.CODESYSTEM_REPORT.equals(c.getSystem())
+						&& ConstantsReport.CODESYSTEM_REPORT_VALUE_HRP_IDENTIFIER.equals(c.getCode()));
 	}
 
 	@Override
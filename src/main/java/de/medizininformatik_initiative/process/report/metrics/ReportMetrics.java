@@ -0,0 +1,208 @@
+package de.medizininformatik_initiative.process.report.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+// meters are kept in memory and written to the log by ReportMetricsLogger, see README for exporting them. Micrometer is
+// not used, the DSF BPE neither provides a MeterRegistry to process plugins nor exposes a metrics endpoint, a registry
+// shaded into the plugin jar could only be exported via the log as well. Meter names and tags follow the Micrometer
+// conventions to allow switching to it once the DSF BPE supports it
+public class ReportMetrics
+{
+	public static final String TASK_DURATION = "report.task.duration";
+	public static final String SEARCH_DURATION = "report.search.duration";
+	public static final String SEARCH_RESPONSES = "report.search.responses";
+	public static final String AGGREGATE_MERGE_DURATION = "report.aggregate.merge.duration";
+	public static final String AGGREGATE_REPORTS = "report.aggregate.reports";
+	public static final String DIRECTORY_CACHE_REQUESTS = "report.directory.cache.requests";
+	public static final String RECEIVE_INSERTS = "report.receive.inserts";
+	public static final String STORE_CIRCUIT_TRANSITIONS = "report.store.circuit.transitions";
+	public static final String INCREMENTAL_ENTRIES = "report.incremental.entries";
+	public static final String SEARCH_RESULT_CACHE = "report.search.result.cache";
+	public static final String CLIENT_RETRIES = "report.client.retries";
+
+	public static final String TAG_TASK = "task";
+	public static final String TAG_OUTCOME = "outcome";
+	public static final String TAG_RESOURCE = "resource";
+	public static final String TAG_REQUEST_PATTERN = "pattern";
+	public static final String TAG_STATUS = "status";
+	public static final String TAG_RESULT = "result";
+	public static final String TAG_STATE = "state";
+	public static final String TAG_OPERATION = "operation";
+
+	private static final long[] BUCKET_BOUNDARIES_MILLIS = { 10, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000,
+			60_000, 300_000, 900_000, 3_600_000 };
+
+	private final ConcurrentMap<MeterId, Timer> timers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<MeterId, LongAdder> counters = new ConcurrentHashMap<>();
+
+	public Sample start()
+	{
+		return new Sample(System.nanoTime());
+	}
+
+	public void record(String name, Duration duration, String... tags)
+	{
+		timer(name, tags).record(duration.toNanos());
+	}
+
+	public void increment(String name, String... tags)
+	{
+		increment(name, 1, tags);
+	}
+
+	public void increment(String name, long amount, String... tags)
+	{
+		counters.computeIfAbsent(MeterId.of(name, tags), id -> new LongAdder()).add(amount);
+	}
+
+	public Timer timer(String name, String... tags)
+	{
+		return timers.computeIfAbsent(MeterId.of(name, tags), id -> new Timer());
+	}
+
+	public long count(String name, String... tags)
+	{
+		LongAdder counter = counters.get(MeterId.of(name, tags));
+		return counter == null ? 0 : counter.sum();
+	}
+
+	public boolean isEmpty()
+	{
+		return timers.isEmpty() && counters.isEmpty();
+	}
+
+	public List<String> format()
+	{
+		List<String> lines = new ArrayList<>();
+
+		timers.entrySet().stream().sorted(Map.Entry.comparingByKey(Comparator.comparing(MeterId::toString)))
+				.map(e -> e.getKey() + " " + e.getValue()).forEach(lines::add);
+		counters.entrySet().stream().sorted(Map.Entry.comparingByKey(Comparator.comparing(MeterId::toString)))
+				.map(e -> e.getKey() + " count=" + e.getValue().sum()).forEach(lines::add);
+
+		return lines;
+	}
+
+	public final class Sample
+	{
+		private final long startNanos;
+
+		private Sample(long startNanos)
+		{
+			this.startNanos = startNanos;
+		}
+
+		public long stop(String name, String... tags)
+		{
+			long durationNanos = System.nanoTime() - startNanos;
+			timer(name, tags).record(durationNanos);
+
+			return durationNanos;
+		}
+	}
+
+	public static final class Timer
+	{
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDARIES_MILLIS.length + 1);
+
+		private void record(long durationNanos)
+		{
+			count.increment();
+			totalNanos.add(durationNanos);
+			maxNanos.accumulateAndGet(durationNanos, Math::max);
+
+			long durationMillis = Duration.ofNanos(durationNanos).toMillis();
+			int bucket = Arrays.binarySearch(BUCKET_BOUNDARIES_MILLIS, durationMillis);
+			buckets.incrementAndGet(bucket >= 0 ? bucket : -bucket - 1);
+		}
+
+		public long getCount()
+		{
+			return count.sum();
+		}
+
+		public Duration getTotal()
+		{
+			return Duration.ofNanos(totalNanos.sum());
+		}
+
+		public Duration getMax()
+		{
+			return Duration.ofNanos(maxNanos.get());
+		}
+
+		public Duration getMean()
+		{
+			long count = getCount();
+			return count == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos.sum() / count);
+		}
+
+		public Duration getPercentileUpperBound(double percentile)
+		{
+			long count = getCount();
+			if (count == 0)
+				return Duration.ZERO;
+
+			long rank = (long) Math.ceil(percentile * count);
+			long seen = 0;
+			for (int i = 0; i < BUCKET_BOUNDARIES_MILLIS.length; i++)
+			{
+				seen += buckets.get(i);
+				if (seen >= rank)
+					return Duration.ofMillis(BUCKET_BOUNDARIES_MILLIS[i]);
+			}
+
+			return getMax();
+		}
+
+		@Override
+		public String toString()
+		{
+			return "count=" + getCount() + " total=" + getTotal().toMillis() + "ms mean=" + getMean().toMillis()
+					+ "ms p50<=" + getPercentileUpperBound(0.5).toMillis() + "ms p95<="
+					+ getPercentileUpperBound(0.95).toMillis() + "ms max=" + getMax().toMillis() + "ms";
+		}
+	}
+
+	private record MeterId(String name, Map<String, String> tags)
+	{
+		static MeterId of(String name, String... tags)
+		{
+			Objects.requireNonNull(name, "name");
+
+			if (tags.length % 2 != 0)
+				throw new IllegalArgumentException("Tags must be given as key-value pairs");
+
+			Map<String, String> tagMap = new TreeMap<>();
+			for (int i = 0; i < tags.length; i += 2)
+				tagMap.put(tags[i], tags[i + 1] == null ? "none" : tags[i + 1]);
+
+			return new MeterId(name, Collections.unmodifiableMap(tagMap));
+		}
+
+		@Override
+		public String toString()
+		{
+			return tags.isEmpty() ? name
+					: name + tags.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue())
+							.collect(Collectors.joining(",", "{", "}"));
+		}
+	}
+}
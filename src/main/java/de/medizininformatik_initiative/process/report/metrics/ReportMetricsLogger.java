@@ -0,0 +1,71 @@
+package de.medizininformatik_initiative.process.report.metrics;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+public class ReportMetricsLogger implements InitializingBean, DisposableBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(ReportMetricsLogger.class);
+
+	private final ReportMetrics metrics;
+	private final Duration interval;
+
+	private ScheduledExecutorService executor;
+
+	public ReportMetricsLogger(ReportMetrics metrics, Duration interval)
+	{
+		this.metrics = metrics;
+		this.interval = interval;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(metrics, "metrics");
+		Objects.requireNonNull(interval, "interval");
+
+		if (interval.isZero() || interval.isNegative())
+		{
+			logger.debug("Periodic logging of report metrics disabled");
+			return;
+		}
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "report-metrics-logger");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleAtFixedRate(this::log, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	public void log()
+	{
+		if (metrics.isEmpty())
+			return;
+
+		try
+		{
+			metrics.format().forEach(line -> logger.info("Report metrics: {}", line));
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Could not log report metrics - {}", exception.getMessage());
+		}
+	}
+}
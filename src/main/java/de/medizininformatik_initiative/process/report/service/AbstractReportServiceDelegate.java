@@ -0,0 +1,58 @@
+package de.medizininformatik_initiative.process.report.service;
+
+import java.util.Objects;
+
+import org.camunda.bpm.engine.delegate.BpmnError;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import dev.dsf.bpe.v1.ProcessPluginApi;
+import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
+import dev.dsf.bpe.v1.variables.Variables;
+
+public abstract class AbstractReportServiceDelegate extends AbstractServiceDelegate
+{
+	private static final String OUTCOME_SUCCESS = "success";
+	private static final String OUTCOME_BPMN_ERROR = "bpmn-error";
+	private static final String OUTCOME_ERROR = "error";
+
+	protected final ReportMetrics metrics;
+
+	public AbstractReportServiceDelegate(ProcessPluginApi api, ReportMetrics metrics)
+	{
+		super(api);
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception
+	{
+		super.afterPropertiesSet();
+		Objects.requireNonNull(metrics, "metrics");
+	}
+
+	@Override
+	protected final void doExecute(DelegateExecution execution, Variables variables) throws BpmnError, Exception
+	{
+		ReportMetrics.Sample sample = metrics.start();
+		String outcome = OUTCOME_ERROR;
+
+		try
+		{
+			doExecuteTask(execution, variables);
+			outcome = OUTCOME_SUCCESS;
+		}
+		catch (BpmnError error)
+		{
+			outcome = OUTCOME_BPMN_ERROR;
+			throw error;
+		}
+		finally
+		{
+			sample.stop(ReportMetrics.TASK_DURATION, ReportMetrics.TAG_TASK, getClass().getSimpleName(),
+					ReportMetrics.TAG_OUTCOME, outcome);
+		}
+	}
+
+	protected abstract void doExecuteTask(DelegateExecution execution, Variables variables) throws BpmnError, Exception;
+}
@@ -2,9 +2,6 @@ package de.medizininformatik_initiative.process.report.service;
 
 import static de.medizininformatik_initiative.process.report.ConstantsReport.DIC;
 
-import java.util.Map;
-import java.util.UUID;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.camunda.bpm.engine.delegate.BpmnError;
@@ -17,14 +14,19 @@ import org.springframework.beans.factory.InitializingBean;
 import de.medizininformatik_initiative.process.report.ConstantsReport;
 import de.medizininformatik_initiative.process.report.HrpExtracter;
 import de.medizininformatik_initiative.process.report.SaveOrUpdateBundle;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.jfr.ReportMergeEvent;
+import de.medizininformatik_initiative.process.report.jfr.ReportWriteEvent;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.DirectoryCache;
+import de.medizininformatik_initiative.process.report.util.ReportBundleMerger;
 import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.constants.NamingSystems;
 import dev.dsf.bpe.v1.variables.Variables;
 import dev.dsf.fhir.client.FhirWebserviceClient;
 
-public class AggregateReports extends AbstractServiceDelegate
+public class AggregateReports extends AbstractReportServiceDelegate
 		implements InitializingBean, SaveOrUpdateBundle, HrpExtracter
 {
 	private static final Logger logger = LoggerFactory.getLogger(AggregateReports.class);
@@ -32,13 +34,19 @@ public class AggregateReports extends AbstractServiceDelegate
 
 	private final String reportReceiveOrganizationIdentifier;
 	private final String hrpIdentifierEnvVariable;
+	private final DirectoryCache directoryCache;
+	private final ReportEventResourceSize eventResourceSize;
+
+	private final ReportBundleMerger reportBundleMerger = new ReportBundleMerger();
 
 	private FhirWebserviceClient localWebserviceClient;
 
-	public AggregateReports(ProcessPluginApi api, String hrpIdentifierEnvVariable,
-			String reportReceiveOrganizationIdentifier)
+	public AggregateReports(ProcessPluginApi api, ReportMetrics metrics, ReportEventResourceSize eventResourceSize,
+			DirectoryCache directoryCache, String hrpIdentifierEnvVariable, String reportReceiveOrganizationIdentifier)
 	{
-		super(api);
+		super(api, metrics);
+		this.eventResourceSize = eventResourceSize;
+		this.directoryCache = directoryCache;
 
 
 		this.reportReceiveOrganizationIdentifier = reportReceiveOrganizationIdentifier;
@@ -47,7 +55,7 @@ public class AggregateReports extends AbstractServiceDelegate
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution delegateExecution, Variables variables) throws BpmnError, Exception
+	protected void doExecuteTask(DelegateExecution delegateExecution, Variables variables) throws BpmnError, Exception
 	{
 		logger.info("AggregateReports doExecute");
 
@@ -58,9 +66,8 @@ public class AggregateReports extends AbstractServiceDelegate
 
 
 		api.getOrganizationProvider().getLocalOrganizationIdentifierValue()
-				.ifPresent(organizationIdentifierValue -> api.getOrganizationProvider()
-						.getOrganizations(parentIdentifier, DIC).stream().filter(Organization::hasEndpoint)
-						.filter(Organization::hasIdentifier).flatMap(org ->
+				.ifPresent(organizationIdentifierValue -> directoryCache.getOrganizations(parentIdentifier, DIC)
+						.stream().filter(Organization::hasEndpoint).filter(Organization::hasIdentifier).flatMap(org ->
 						{
 							String identifierValue = ConstantsReport.NAMINGSYSTEM_CDS_REPORT_IDENTIFIER + "|"
 									+ org.getIdentifierFirstRep().getValue();
@@ -80,9 +87,21 @@ public class AggregateReports extends AbstractServiceDelegate
 							// genau 1 Entry vorhanden
 							var res = search.getEntry().get(0).getResource();
 							return (res instanceof Bundle b) ? Stream.of(b) : Stream.empty();
-						}).reduce((base, next) ->
+						}).peek(b -> metrics.increment(ReportMetrics.AGGREGATE_REPORTS)).reduce((base, next) ->
 						{
-							mergeBundles(base, next); // wird für jedes weitere Bundle aufgerufen
+							ReportMetrics.Sample sample = metrics.start();
+							ReportMergeEvent mergeEvent = new ReportMergeEvent();
+							mergeEvent.begin();
+							try
+							{
+								reportBundleMerger.mergeBundles(base, next); // wird für jedes weitere Bundle aufgerufen
+							}
+							finally
+							{
+								mergeEvent.finish(eventResourceSize, next, variables.getStartTask().getId(),
+										next.getIdentifier().getValue(), null);
+							}
+							sample.stop(ReportMetrics.AGGREGATE_MERGE_DURATION);
 							return base; // base bleibt die Merge-Basis (erstes gefundene Bundle)
 						}).ifPresent(mergeBundle ->
 						{
@@ -96,14 +115,32 @@ public class AggregateReports extends AbstractServiceDelegate
 
 							String searchBundleIdentifier = ConstantsReport.NAMINGSYSTEM_CDS_REPORT_IDENTIFIER + "|"
 									+ organizationIdentifierValue;
-							Resource r = saveOrUpdate(localWebserviceClient, mergeBundle, searchBundleIdentifier);
+							ReportWriteEvent writeEvent = new ReportWriteEvent();
+							writeEvent.begin();
+							IdType r;
+							try
+							{
+								r = saveOrUpdate(localWebserviceClient, mergeBundle, searchBundleIdentifier);
+							}
+							finally
+							{
+								writeEvent.finish(eventResourceSize, mergeBundle, variables.getStartTask().getId(),
+										hrpIdentifier,
+										ResourceType.Bundle.name() + "?identifier=" + searchBundleIdentifier);
+							}
 
-							setReportSearchBundleResponseReference(variables, r.getIdElement().getIdPart(),
-									r.getMeta().getVersionId(), organizationIdentifierValue);
+							setReportSearchBundleResponseReference(variables, r.getIdPart(), r.getVersionIdPart(),
+									organizationIdentifierValue);
 						}));
 
 	}
 
+	@Override
+	public DirectoryCache getDirectoryCache()
+	{
+		return directoryCache;
+	}
+
 	private void setReportSearchBundleResponseReference(Variables variables, String id, String versionId,
 			String brokerHrpId)
 	{
@@ -127,66 +164,4 @@ public class AggregateReports extends AbstractServiceDelegate
 						identifier.setValue(hrpIdentifier);
 				});
 	}
-
-	private void mergeBundles(Bundle base, Bundle nextBundle)
-	{
-		if (nextBundle != null && base != null && !nextBundle.getEntry().isEmpty() && !base.getEntry().isEmpty())
-		{
-			Map<String, Integer> nextBundleUrlsAndTotals = nextBundle.getEntry().stream()
-					.collect(Collectors.toMap(url ->
-					{
-						if (url.getResource() != null && url.getResource() instanceof Bundle bundle
-								&& !bundle.getLink().isEmpty())
-						{
-							return bundle.getLink().get(0).getUrl();
-
-						}
-						if (checkSkipEntryBundle(url))
-						{
-							return UUID.randomUUID().toString();
-						}
-						throw new RuntimeException("Bundle " + url.fhirType() + " not supported");
-					}, total ->
-					{
-						if (total.getResource() != null && total.getResource() instanceof Bundle bundle
-								&& bundle.getTotal() > -1)
-						{
-							return bundle.getTotal();
-						}
-						if (checkSkipEntryBundle(total))
-						{
-							return -1;
-						}
-						throw new RuntimeException("Bundle " + total.fhirType() + " not supported");
-					}));
-			base.getEntry().forEach(entry ->
-			{
-				if (entry.getResource() != null && entry.getResource() instanceof Bundle bundle
-						&& !bundle.getLink().isEmpty())
-				{
-					String url = bundle.getLink().get(0).getUrl();
-					if (nextBundleUrlsAndTotals.containsKey(url))
-					{
-						Integer total = nextBundleUrlsAndTotals.get(url);
-						if (total != null && total > -1)
-						{
-							int baseTotal = bundle.getTotal();
-							bundle.setTotal(baseTotal + nextBundleUrlsAndTotals.get(url));
-						}
-					}
-				}
-			});
-		}
-	}
-
-	private boolean checkSkipEntryBundle(Bundle.BundleEntryComponent entry)
-	{
-		if (entry.getResource() == null || entry.getResource() instanceof CapabilityStatement)
-		{
-			logger.debug("Skipping merge bundle with resource type CapabilityStatement or null");
-			return true;
-		}
-		return false;
-	}
-
 }
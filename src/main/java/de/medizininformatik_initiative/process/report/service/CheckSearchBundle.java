@@ -14,25 +14,30 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.jfr.ReportValidationEvent;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
 import de.medizininformatik_initiative.process.report.util.SearchQueryCheckService;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Target;
 import dev.dsf.bpe.v1.variables.Variables;
 
-public class CheckSearchBundle extends AbstractServiceDelegate implements InitializingBean
+public class CheckSearchBundle extends AbstractReportServiceDelegate implements InitializingBean
 {
 	private static final Logger logger = LoggerFactory.getLogger(CheckSearchBundle.class);
 
+	private final ReportEventResourceSize eventResourceSize;
 	private final SearchQueryCheckService searchQueryCheckService;
 
 	private boolean reportDistributeAsBroker;
 	private String reportWaitBeforeAggregate;
 
-	public CheckSearchBundle(ProcessPluginApi api, SearchQueryCheckService searchQueryCheckService,
-			boolean reportDistributeAsBroker, String reportWaitBeforeAggregate)
+	public CheckSearchBundle(ProcessPluginApi api, ReportMetrics metrics, ReportEventResourceSize eventResourceSize,
+			SearchQueryCheckService searchQueryCheckService, boolean reportDistributeAsBroker,
+			String reportWaitBeforeAggregate)
 	{
-		super(api);
+		super(api, metrics);
+		this.eventResourceSize = eventResourceSize;
 		this.searchQueryCheckService = searchQueryCheckService;
 		this.reportDistributeAsBroker = reportDistributeAsBroker;
 		this.reportWaitBeforeAggregate = reportWaitBeforeAggregate;
@@ -42,11 +47,12 @@ public class CheckSearchBundle extends AbstractServiceDelegate implements Initia
 	public void afterPropertiesSet() throws Exception
 	{
 		super.afterPropertiesSet();
+		Objects.requireNonNull(eventResourceSize, "eventResourceSize");
 		Objects.requireNonNull(searchQueryCheckService, "searchQueryCheckService");
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution execution, Variables variables)
+	protected void doExecuteTask(DelegateExecution execution, Variables variables)
 	{
 		logger.info("CheckSearchBundle doExecute");
 
@@ -66,6 +72,8 @@ public class CheckSearchBundle extends AbstractServiceDelegate implements Initia
 				reportWaitBeforeAggregate);
 		logger.info("Set the execution interval before the aggregation of the received reports starts to {}",
 				reportWaitBeforeAggregate);
+		ReportValidationEvent validationEvent = new ReportValidationEvent();
+		validationEvent.begin();
 		try
 		{
 			searchQueryCheckService.checkBundle(bundle);
@@ -84,5 +92,10 @@ public class CheckSearchBundle extends AbstractServiceDelegate implements Initia
 							+ "' in Task with id '" + task.getId() + "' - " + exception.getMessage(),
 					exception);
 		}
+		finally
+		{
+			validationEvent.finish(eventResourceSize, bundle, task.getId(), target.getOrganizationIdentifierValue(),
+					null);
+		}
 	}
 }
@@ -1,56 +1,84 @@
 package de.medizininformatik_initiative.process.report.service;
 
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.hl7.fhir.r4.model.Bundle;
-import org.hl7.fhir.r4.model.CapabilityStatement;
-import org.hl7.fhir.r4.model.IdType;
-import org.hl7.fhir.r4.model.Identifier;
-import org.hl7.fhir.r4.model.OperationOutcome;
-import org.hl7.fhir.r4.model.Resource;
-import org.hl7.fhir.r4.model.ResourceType;
 import org.hl7.fhir.r4.model.Task;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
-import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.jfr.ReportTransformationEvent;
+import de.medizininformatik_initiative.process.report.jfr.ReportValidationEvent;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.store.ReportCheckpointStore;
+import de.medizininformatik_initiative.process.report.store.ReportTimeSeriesStore;
+import de.medizininformatik_initiative.process.report.util.CapabilityStatementCache;
+import de.medizininformatik_initiative.process.report.util.FhirStoreCircuitBreaker;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.process.report.util.IncrementalReportPlanner;
+import de.medizininformatik_initiative.process.report.util.InterimReportProgress;
+import de.medizininformatik_initiative.process.report.util.ReportBundleStore;
+import de.medizininformatik_initiative.process.report.util.ReportEntryTransformer;
+import de.medizininformatik_initiative.process.report.util.ReportStatusGenerator;
+import de.medizininformatik_initiative.process.report.util.SearchBundleExecutor;
+import de.medizininformatik_initiative.process.report.util.SearchResultCache;
 import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
 import de.medizininformatik_initiative.processes.common.fhir.client.logging.DataLogger;
-import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Target;
 import dev.dsf.bpe.v1.variables.Variables;
-import dev.dsf.fhir.client.PreferReturnMinimal;
 
-public class CreateReport extends AbstractServiceDelegate implements InitializingBean
+public class CreateReport extends AbstractReportServiceDelegate implements InitializingBean
 {
 	private static final Logger logger = LoggerFactory.getLogger(CreateReport.class);
 
 	private static final String RESPONSE_OK = "200";
 
+	private final ReportEventResourceSize eventResourceSize;
 	private final String resourceVersion;
 	private final FhirClientFactory fhirClientFactory;
-	private final boolean fhirAsyncRequestsEnabled;
 	private final DataLogger dataLogger;
-
-	public CreateReport(ProcessPluginApi api, String resourceVersion, FhirClientFactory fhirClientFactory,
-			boolean fhirAsyncRequestsEnabled, DataLogger dataLogger)
+	private final ReportEntryTransformer reportEntryTransformer;
+	private final SearchBundleExecutor searchBundleExecutor;
+	private final FhirStoreCircuitBreaker circuitBreaker;
+	private final ReportStatusGenerator statusGenerator;
+	private final List<Integer> interimReportMilestones;
+	private final IncrementalReportPlanner incrementalReportPlanner;
+	private final ReportTimeSeriesStore timeSeriesStore;
+	private final ReportBundleStore reportBundleStore;
+
+	public CreateReport(ProcessPluginApi api, ReportMetrics metrics, ReportEventResourceSize eventResourceSize,
+			String resourceVersion, FhirClientFactory fhirClientFactory, boolean fhirAsyncRequestsEnabled,
+			int searchParallelism, FhirStoreFormat fhirStoreFormat, CapabilityStatementCache capabilityStatementCache,
+			SearchResultCache searchResultCache, DataLogger dataLogger, FhirStoreCircuitBreaker circuitBreaker,
+			ReportCheckpointStore checkpointStore, ReportStatusGenerator statusGenerator,
+			List<Integer> interimReportMilestones, IncrementalReportPlanner incrementalReportPlanner,
+			ReportTimeSeriesStore timeSeriesStore, ReportBundleStore reportBundleStore)
 	{
-		super(api);
+		super(api, metrics);
 
+		this.eventResourceSize = eventResourceSize;
 		this.resourceVersion = resourceVersion;
 		this.fhirClientFactory = fhirClientFactory;
-		this.fhirAsyncRequestsEnabled = fhirAsyncRequestsEnabled;
 		this.dataLogger = dataLogger;
+		this.reportEntryTransformer = new ReportEntryTransformer(fhirAsyncRequestsEnabled);
+		this.searchBundleExecutor = new SearchBundleExecutor(fhirClientFactory, fhirAsyncRequestsEnabled, metrics,
+				eventResourceSize, circuitBreaker, checkpointStore, searchParallelism, fhirStoreFormat,
+				capabilityStatementCache, searchResultCache);
+		this.circuitBreaker = circuitBreaker;
+		this.statusGenerator = statusGenerator;
+		this.interimReportMilestones = interimReportMilestones;
+		this.incrementalReportPlanner = incrementalReportPlanner;
+		this.timeSeriesStore = timeSeriesStore;
+		this.reportBundleStore = reportBundleStore;
 	}
 
 	@Override
@@ -58,13 +86,20 @@ public class CreateReport extends AbstractServiceDelegate implements Initializin
 	{
 		super.afterPropertiesSet();
 
+		Objects.requireNonNull(eventResourceSize, "eventResourceSize");
 		Objects.requireNonNull(resourceVersion, "resourceVersion");
 		Objects.requireNonNull(fhirClientFactory, "fhirClientFactory");
 		Objects.requireNonNull(dataLogger, "dataLogger");
+		Objects.requireNonNull(circuitBreaker, "circuitBreaker");
+		Objects.requireNonNull(statusGenerator, "statusGenerator");
+		Objects.requireNonNull(interimReportMilestones, "interimReportMilestones");
+		Objects.requireNonNull(incrementalReportPlanner, "incrementalReportPlanner");
+		Objects.requireNonNull(timeSeriesStore, "timeSeriesStore");
+		Objects.requireNonNull(reportBundleStore, "reportBundleStore");
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution execution, Variables variables)
+	protected void doExecuteTask(DelegateExecution execution, Variables variables)
 	{
 		logger.info("CreateReport doExecute");
 
@@ -75,17 +110,51 @@ public class CreateReport extends AbstractServiceDelegate implements Initializin
 
 		try
 		{
-			Bundle responseBundle = executeSearchBundle(searchBundle, target.getOrganizationIdentifierValue());
-
-			Bundle reportBundle = transformToReportBundle(searchBundle, responseBundle, target, isDryRun);
+			Map<Integer, Bundle.BundleEntryComponent> reusedEntries = incrementalReportPlanner.isEnabled()
+					? incrementalReportPlanner.plan(searchBundle, readPreviousReportBundle(target).orElse(null))
+					: Map.of();
+
+			// report entries are created as soon as a response arrives, complete search results and the
+			// CapabilityStatement are not kept until all search requests completed
+			Bundle reportEntries = searchBundleExecutor.execute(searchBundle, target.getOrganizationIdentifierValue(),
+					task.getId(), reusedEntries, reportEntryTransformer::transformEntry,
+					createInterimReportProgress(searchBundle, target, isDryRun, task.getId()));
+
+			ReportTransformationEvent transformationEvent = new ReportTransformationEvent();
+			transformationEvent.begin();
+			Bundle reportBundle = null;
+			try
+			{
+				reportBundle = createReportBundle(reportEntries, target, isDryRun);
+			}
+			finally
+			{
+				transformationEvent.finish(eventResourceSize, reportBundle, task.getId(),
+						target.getOrganizationIdentifierValue(), null);
+			}
 			dataLogger.logResource("Report Bundle", reportBundle);
 
-			checkReportBundle(searchBundle, reportBundle, target.getOrganizationIdentifierValue());
+			ReportValidationEvent validationEvent = new ReportValidationEvent();
+			validationEvent.begin();
+			try
+			{
+				checkReportBundle(searchBundle, reportBundle, target.getOrganizationIdentifierValue());
+			}
+			finally
+			{
+				validationEvent.finish(eventResourceSize, reportBundle, task.getId(),
+						target.getOrganizationIdentifierValue(), null);
+			}
 
-			String reportReference = storeReportBundle(reportBundle, target.getOrganizationIdentifierValue(),
-					task.getId());
+			String reportReference = reportBundleStore.store(reportBundle, target.getOrganizationIdentifierValue(),
+					task.getId(), true);
 			variables.setString(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_SEARCH_BUNDLE_RESPONSE_REFERENCE,
 					reportReference);
+
+			searchBundleExecutor.completed(searchBundle, task.getId());
+
+			if (!isDryRun)
+				appendTimeSeries(target, reportBundle);
 		}
 		catch (Exception exception)
 		{
@@ -96,176 +165,39 @@ public class CreateReport extends AbstractServiceDelegate implements Initializin
 		}
 	}
 
-	private Bundle executeSearchBundle(Bundle searchBundle, String hrpIdentifier)
-	{
-		logger.info(
-				"Executing search Bundle from HRP '{}' against FHIR store with base URL '{}' - this could take a while...",
-				hrpIdentifier, fhirClientFactory.getFhirBaseUrl());
-
-		Bundle responseBundle = new Bundle();
-		responseBundle.setType(Bundle.BundleType.BATCHRESPONSE);
-
-		searchBundle.getEntry().stream().filter(Bundle.BundleEntryComponent::hasRequest)
-				.map(Bundle.BundleEntryComponent::getRequest)
-				.filter(r -> r.hasUrl() && r.hasMethod() && Bundle.HTTPVerb.GET.equals(r.getMethod()))
-				.map(Bundle.BundleEntryRequestComponent::getUrl).map(this::executeRequest)
-				.forEach(responseBundle::addEntry);
-
-		return responseBundle;
-	}
-
-	private Bundle.BundleEntryComponent executeRequest(String url)
+	// the report is already stored, failures of the time series do not fail the report creation
+	private void appendTimeSeries(Target target, Bundle reportBundle)
 	{
-		Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent();
-
 		try
 		{
-			logger.debug("Executing report search request '{}' with {}", url,
-					fhirAsyncRequestsEnabled ? "async request pattern" : "normal request pattern");
-			Resource result = doExecuteRequest(url);
-
-			entry.setResource(result);
-			entry.setResponse(new Bundle.BundleEntryResponseComponent().setStatus(RESPONSE_OK));
+			timeSeriesStore.append(ReportTimeSeriesStore.SERIES_CREATED, target.getOrganizationIdentifierValue(),
+					reportBundle);
 		}
-		catch (BaseServerResponseException exception)
+		catch (Exception exception)
 		{
-			logger.warn("Could not execute report search request '{}' - {}", url, exception.getMessage());
-
-			OperationOutcome outcome = new OperationOutcome();
-			outcome.addIssue().setSeverity(OperationOutcome.IssueSeverity.ERROR)
-					.setCode(OperationOutcome.IssueType.EXCEPTION).setDiagnostics(exception.getMessage());
-			Bundle.BundleEntryResponseComponent response = new Bundle.BundleEntryResponseComponent()
-					.setStatus(String.valueOf(exception.getStatusCode())).setOutcome(outcome);
-
-			entry.setResponse(response);
+			logger.warn("Could not append report for HRP '{}' to time series - {}",
+					target.getOrganizationIdentifierValue(), exception.getMessage());
 		}
-
-		return entry;
-	}
-
-	private Resource doExecuteRequest(String url)
-	{
-		if (fhirAsyncRequestsEnabled)
-			return fhirClientFactory.getAsyncFhirClient().search(url);
-		else
-			return fhirClientFactory.getStandardFhirClient().search(url);
 	}
 
-	private Bundle transformToReportBundle(Bundle searchBundle, Bundle responseBundle, Target target, boolean isDryRun)
+	private Bundle createReportBundle(Bundle reportEntries, Target target, boolean isDryRun)
 	{
 		Bundle report = new Bundle();
-		report.setMeta(responseBundle.getMeta());
 		report.getMeta().addProfile(ConstantsReport.PROFILE_REPORT_SEARCH_BUNDLE_RESPONSE + "|" + resourceVersion);
 		report.getMeta().setLastUpdated(new Date());
-		report.setType(responseBundle.getType());
+		report.setType(reportEntries.getType());
 
-		report.setIdentifier(new Identifier().setSystem(ConstantsReport.NAMINGSYSTEM_CDS_REPORT_IDENTIFIER)
-				.setValue(api.getOrganizationProvider().getLocalOrganizationIdentifierValue()
-						.orElseThrow(() -> new RuntimeException("LocalOrganizationIdentifierValue empty"))));
+		report.setIdentifier(reportBundleStore.createIdentifier(target.getOrganizationIdentifierValue()));
 
 		api.getReadAccessHelper().addLocal(report);
 		if (!isDryRun)
 			api.getReadAccessHelper().addOrganization(report, target.getOrganizationIdentifierValue());
 
-		for (int i = 0; i < searchBundle.getEntry().size(); i++)
-		{
-			Bundle.BundleEntryComponent responseEntry = responseBundle.getEntry().get(i);
-			Bundle.BundleEntryComponent reportEntry = new Bundle.BundleEntryComponent();
-
-			if (responseEntry.getResource() instanceof Bundle || !responseEntry.hasResource())
-			{
-				toEntryComponentBundleResource(responseEntry, reportEntry,
-						searchBundle.getEntry().get(i).getRequest().getUrl());
-			}
-
-			if (responseEntry.getResource() instanceof CapabilityStatement)
-			{
-				toEntryComponentCapabilityStatementResource(responseEntry, reportEntry);
-			}
-
-			reportEntry.setResponse(responseEntry.getResponse());
-			report.addEntry(reportEntry);
-		}
+		report.setEntry(reportEntries.getEntry());
 
 		return report;
 	}
 
-	private void toEntryComponentBundleResource(Bundle.BundleEntryComponent responseEntry,
-			Bundle.BundleEntryComponent reportEntry, String url)
-	{
-		Bundle reportEntryBundle = new Bundle();
-		reportEntryBundle.getMeta().setLastUpdated(new Date());
-		reportEntryBundle.addLink().setRelation("self").setUrl(url);
-		reportEntryBundle.setType(Bundle.BundleType.SEARCHSET);
-		reportEntryBundle.setTotal(0);
-
-		if (responseEntry.getResource() instanceof Bundle responseEntryBundle)
-		{
-			if (fhirAsyncRequestsEnabled)
-				responseEntryBundle = flattenBundle(responseEntryBundle);
-			reportEntryBundle.setTotal(responseEntryBundle.getTotal());
-			reportEntryBundle.getMeta().setLastUpdated(responseEntryBundle.getMeta().getLastUpdated());
-		}
-
-		reportEntry.setResource(reportEntryBundle);
-	}
-
-	private Bundle flattenBundle(Bundle bundle)
-	{
-		// the structure of a async response is nested in multiple levels. Therefore this flattening is needed.
-		// see http://hl7.org/fhir/R5/async-bundle.html#3.2.6.2.4.0.3
-		if (bundle.hasEntry() && bundle.getEntryFirstRep().hasResource()
-				&& bundle.getEntryFirstRep().getResource() instanceof Bundle child)
-			return flattenBundle(child);
-		else
-			return bundle;
-	}
-
-	private void toEntryComponentCapabilityStatementResource(Bundle.BundleEntryComponent responseEntry,
-			Bundle.BundleEntryComponent reportEntry)
-	{
-		CapabilityStatement responseEntryCapabilityStatement = (CapabilityStatement) responseEntry.getResource();
-		CapabilityStatement reportEntryCapabilityStatement = new CapabilityStatement();
-
-		reportEntryCapabilityStatement.setKind(CapabilityStatement.CapabilityStatementKind.CAPABILITY);
-		reportEntryCapabilityStatement.setStatus(responseEntryCapabilityStatement.getStatus());
-		reportEntryCapabilityStatement.setDate(responseEntryCapabilityStatement.getDate());
-		reportEntryCapabilityStatement.setName("Server");
-
-		reportEntryCapabilityStatement.getSoftware().setName(responseEntryCapabilityStatement.getSoftware().getName());
-		reportEntryCapabilityStatement.getSoftware()
-				.setVersion(responseEntryCapabilityStatement.getSoftware().getVersion());
-
-		reportEntryCapabilityStatement.setFhirVersion(responseEntryCapabilityStatement.getFhirVersion());
-
-		reportEntryCapabilityStatement.setFormat(responseEntryCapabilityStatement.getFormat().stream()
-				.filter(f -> "application/fhir+xml".equals(f.getCode()) || "application/fhir+json".equals(f.getCode()))
-				.collect(Collectors.toList()));
-
-		for (CapabilityStatement.CapabilityStatementRestComponent oldRestComponent : responseEntryCapabilityStatement
-				.getRest())
-		{
-			List<CapabilityStatement.CapabilityStatementRestResourceComponent> resources = oldRestComponent
-					.getResource().stream().map(r -> new CapabilityStatement.CapabilityStatementRestResourceComponent()
-							.setType(r.getType()).setSearchParam(removeDocumentation(r.getSearchParam())))
-					.toList();
-
-			CapabilityStatement.CapabilityStatementRestComponent newRestComponent = new CapabilityStatement.CapabilityStatementRestComponent()
-					.setResource(resources).setMode(oldRestComponent.getMode())
-					.setSearchParam(removeDocumentation(oldRestComponent.getSearchParam()));
-
-			reportEntryCapabilityStatement.addRest(newRestComponent);
-		}
-
-		reportEntry.setResource(reportEntryCapabilityStatement);
-	}
-
-	private List<CapabilityStatement.CapabilityStatementRestResourceSearchParamComponent> removeDocumentation(
-			List<CapabilityStatement.CapabilityStatementRestResourceSearchParamComponent> searchParams)
-	{
-		return searchParams.stream().map(s -> s.setDocumentation(null)).toList();
-	}
-
 	private void checkReportBundle(Bundle searchBundle, Bundle reportBundle, String hrpIdentifier)
 	{
 		int requests = searchBundle.getEntry().size();
@@ -279,23 +211,45 @@ public class CreateReport extends AbstractServiceDelegate implements Initializin
 					"Report Bundle for HRP '" + hrpIdentifier + "' only contains error status codes");
 	}
 
-	private String storeReportBundle(Bundle responseBundle, String hrpIdentifier, String taskId)
+	private Optional<Bundle> readPreviousReportBundle(Target target)
 	{
-		PreferReturnMinimal client = api.getFhirWebserviceClientProvider().getLocalWebserviceClient()
-				.withMinimalReturn()
-				.withRetry(ConstantsBase.DSF_CLIENT_RETRY_6_TIMES, ConstantsBase.DSF_CLIENT_RETRY_INTERVAL_5MIN);
-
-		String localOrganizationIdentifier = api.getOrganizationProvider().getLocalOrganizationIdentifierValue()
-				.orElseThrow(() -> new RuntimeException("LocalOrganizationIdentifierValue empty"));
-		IdType bundleIdType = client.updateConditionaly(responseBundle, Map.of("identifier", Collections.singletonList(
-				ConstantsReport.NAMINGSYSTEM_CDS_REPORT_IDENTIFIER + "|" + localOrganizationIdentifier)));
+		try
+		{
+			return reportBundleStore.readPrevious(target.getOrganizationIdentifierValue());
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Could not read previous report Bundle, executing all search requests - {}",
+					exception.getMessage());
+			return Optional.empty();
+		}
+	}
 
-		String absoluteId = new IdType(api.getEndpointProvider().getLocalEndpointAddress(), ResourceType.Bundle.name(),
-				bundleIdType.getIdPart(), bundleIdType.getVersionIdPart()).getValue();
+	private InterimReportProgress createInterimReportProgress(Bundle searchBundle, Target target, boolean isDryRun,
+			String taskId)
+	{
+		return new InterimReportProgress(interimReportMilestones, searchBundle, reportEntryTransformer, statusGenerator,
+				interimReportEntries -> storeInterimReportBundle(searchBundle, interimReportEntries, target, isDryRun,
+						taskId));
+	}
 
-		logger.info("Stored report Bundle with id '{}' for HRP '{}' and Task with id '{}'", absoluteId, hrpIdentifier,
-				taskId);
+	private void storeInterimReportBundle(Bundle searchBundle, Bundle interimReportEntries, Target target,
+			boolean isDryRun, String taskId)
+	{
+		try
+		{
+			Bundle interimReportBundle = createReportBundle(interimReportEntries, target, isDryRun);
+			reportBundleStore.store(interimReportBundle, target.getOrganizationIdentifierValue(), taskId, false);
 
-		return absoluteId;
+			logger.info(
+					"Stored interim report with {} of {} search requests completed for HRP '{}'", interimReportEntries
+							.getEntry().stream().filter(e -> !statusGenerator.isPending(e.getResponse())).count(),
+					searchBundle.getEntry().size(), target.getOrganizationIdentifierValue());
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Could not store interim report for HRP '{}' in Task with id '{}' - {}",
+					target.getOrganizationIdentifierValue(), taskId, exception.getMessage());
+		}
 	}
 }
@@ -5,7 +5,6 @@ import java.util.Objects;
 
 import org.camunda.bpm.engine.delegate.BpmnError;
 import org.camunda.bpm.engine.delegate.DelegateExecution;
-import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.Reference;
 import org.hl7.fhir.r4.model.Task;
@@ -14,23 +13,25 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.ReportReceivePipeline;
 import de.medizininformatik_initiative.process.report.util.ReportStatusGenerator;
-import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Variables;
-import dev.dsf.fhir.client.BasicFhirWebserviceClient;
 
-public class DownloadReport extends AbstractServiceDelegate implements InitializingBean
+public class DownloadReport extends AbstractReportServiceDelegate implements InitializingBean
 {
 	private static final Logger logger = LoggerFactory.getLogger(DownloadReport.class);
 
 	private final ReportStatusGenerator statusGenerator;
+	private final ReportReceivePipeline receivePipeline;
 
-	public DownloadReport(ProcessPluginApi api, ReportStatusGenerator statusGenerator)
+	public DownloadReport(ProcessPluginApi api, ReportMetrics metrics, ReportStatusGenerator statusGenerator,
+			ReportReceivePipeline receivePipeline)
 	{
-		super(api);
+		super(api, metrics);
 		this.statusGenerator = statusGenerator;
+		this.receivePipeline = receivePipeline;
 	}
 
 	@Override
@@ -38,10 +39,11 @@ public class DownloadReport extends AbstractServiceDelegate implements Initializ
 	{
 		super.afterPropertiesSet();
 		Objects.requireNonNull(statusGenerator, "reportStatusGenerator");
+		Objects.requireNonNull(receivePipeline, "receivePipeline");
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution execution, Variables variables)
+	protected void doExecuteTask(DelegateExecution execution, Variables variables)
 	{
 		logger.info("DownloadReport doExecute");
 
@@ -56,8 +58,7 @@ public class DownloadReport extends AbstractServiceDelegate implements Initializ
 
 		try
 		{
-			Bundle reportBundle = downloadReportBundle(reportReference);
-			variables.setResource(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_SEARCH_BUNDLE, reportBundle);
+			receivePipeline.receive(task.getId(), reportReference);
 		}
 		catch (Exception exception)
 		{
@@ -91,16 +92,4 @@ public class DownloadReport extends AbstractServiceDelegate implements Initializ
 
 		return new IdType(reportReferences.get(0));
 	}
-
-	private Bundle downloadReportBundle(IdType reportReference)
-	{
-		BasicFhirWebserviceClient client = api.getFhirWebserviceClientProvider()
-				.getWebserviceClient(reportReference.getBaseUrl())
-				.withRetry(ConstantsBase.DSF_CLIENT_RETRY_6_TIMES, ConstantsBase.DSF_CLIENT_RETRY_INTERVAL_5MIN);
-
-		if (reportReference.hasVersionIdPart())
-			return client.read(Bundle.class, reportReference.getIdPart(), reportReference.getVersionIdPart());
-		else
-			return client.read(Bundle.class, reportReference.getIdPart());
-	}
 }
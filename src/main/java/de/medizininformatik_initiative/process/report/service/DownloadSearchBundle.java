@@ -12,18 +12,18 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
 import de.medizininformatik_initiative.process.report.util.ReportStatusGenerator;
 import de.medizininformatik_initiative.processes.common.fhir.client.logging.DataLogger;
 import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Target;
 import dev.dsf.bpe.v1.variables.Variables;
 import dev.dsf.fhir.client.BasicFhirWebserviceClient;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
 
-public class DownloadSearchBundle extends AbstractServiceDelegate implements InitializingBean
+public class DownloadSearchBundle extends AbstractReportServiceDelegate implements InitializingBean
 {
 	private static final Logger logger = LoggerFactory.getLogger(DownloadSearchBundle.class);
 
@@ -32,10 +32,10 @@ public class DownloadSearchBundle extends AbstractServiceDelegate implements Ini
 
 	private final String processVersion;
 
-	public DownloadSearchBundle(ProcessPluginApi api, ReportStatusGenerator statusGenerator, DataLogger dataLogger,
-			String processVersion)
+	public DownloadSearchBundle(ProcessPluginApi api, ReportMetrics metrics, ReportStatusGenerator statusGenerator,
+			DataLogger dataLogger, String processVersion)
 	{
-		super(api);
+		super(api, metrics);
 
 		this.statusGenerator = statusGenerator;
 		this.dataLogger = dataLogger;
@@ -53,7 +53,7 @@ public class DownloadSearchBundle extends AbstractServiceDelegate implements Ini
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution execution, Variables variables)
+	protected void doExecuteTask(DelegateExecution execution, Variables variables)
 	{
 		logger.info("DownloadSearchBundle doExecute");
 
@@ -1,27 +1,41 @@
 package de.medizininformatik_initiative.process.report.service;
 
+import java.util.Objects;
+
 import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.hl7.fhir.r4.model.Task;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.ReportNotificationQueue;
 import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Variables;
 
-public class HandleError extends AbstractServiceDelegate
+public class HandleError extends AbstractReportServiceDelegate implements InitializingBean
 {
 	private static final Logger logger = LoggerFactory.getLogger(HandleError.class);
 
-	public HandleError(ProcessPluginApi api)
+	private final ReportNotificationQueue notificationQueue;
+
+	public HandleError(ProcessPluginApi api, ReportMetrics metrics, ReportNotificationQueue notificationQueue)
+	{
+		super(api, metrics);
+		this.notificationQueue = notificationQueue;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception
 	{
-		super(api);
+		super.afterPropertiesSet();
+		Objects.requireNonNull(notificationQueue, "notificationQueue");
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution delegateExecution, Variables variables)
+	protected void doExecuteTask(DelegateExecution delegateExecution, Variables variables)
 	{
 		logger.info("HandleError doExecute");
 
@@ -49,6 +63,6 @@ public class HandleError extends AbstractServiceDelegate
 				+ "- status code: " + ConstantsReport.CODESYSTEM_REPORT_STATUS_VALUE_RECEIVE_ERROR + "\n" + "- error: "
 				+ (error == null ? "none" : error);
 
-		api.getMailService().send(subject, message);
+		notificationQueue.notifyError(subject, message);
 	}
 }
@@ -1,7 +1,5 @@
 package de.medizininformatik_initiative.process.report.service;
 
-import java.util.Collections;
-import java.util.Map;
 import java.util.Objects;
 
 import org.camunda.bpm.engine.delegate.BpmnError;
@@ -16,34 +14,56 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.jfr.ReportWriteEvent;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.store.ReportStatisticsIndex;
+import de.medizininformatik_initiative.process.report.store.ReportTimeSeriesStore;
+import de.medizininformatik_initiative.process.report.util.ReportNotificationQueue;
+import de.medizininformatik_initiative.process.report.util.ReportReceivePipeline;
 import de.medizininformatik_initiative.process.report.util.ReportStatusGenerator;
-import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Variables;
-import dev.dsf.fhir.client.PreferReturnMinimal;
 
-public class InsertReport extends AbstractServiceDelegate implements InitializingBean
+public class InsertReport extends AbstractReportServiceDelegate implements InitializingBean
 {
 	private static final Logger logger = LoggerFactory.getLogger(InsertReport.class);
 
+	private final ReportEventResourceSize eventResourceSize;
 	private final ReportStatusGenerator statusGenerator;
-
-	public InsertReport(ProcessPluginApi api, ReportStatusGenerator statusGenerator)
+	private final ReportReceivePipeline receivePipeline;
+	private final ReportNotificationQueue notificationQueue;
+	private final ReportStatisticsIndex statisticsIndex;
+	private final ReportTimeSeriesStore timeSeriesStore;
+
+	public InsertReport(ProcessPluginApi api, ReportMetrics metrics, ReportEventResourceSize eventResourceSize,
+			ReportStatusGenerator statusGenerator, ReportReceivePipeline receivePipeline,
+			ReportNotificationQueue notificationQueue, ReportStatisticsIndex statisticsIndex,
+			ReportTimeSeriesStore timeSeriesStore)
 	{
-		super(api);
+		super(api, metrics);
+		this.eventResourceSize = eventResourceSize;
 		this.statusGenerator = statusGenerator;
+		this.receivePipeline = receivePipeline;
+		this.notificationQueue = notificationQueue;
+		this.statisticsIndex = statisticsIndex;
+		this.timeSeriesStore = timeSeriesStore;
 	}
 
 	@Override
 	public void afterPropertiesSet() throws Exception
 	{
 		super.afterPropertiesSet();
+		Objects.requireNonNull(eventResourceSize, "eventResourceSize");
 		Objects.requireNonNull(statusGenerator, "reportStatusGenerator");
+		Objects.requireNonNull(receivePipeline, "receivePipeline");
+		Objects.requireNonNull(notificationQueue, "notificationQueue");
+		Objects.requireNonNull(statisticsIndex, "statisticsIndex");
+		Objects.requireNonNull(timeSeriesStore, "timeSeriesStore");
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution execution, Variables variables)
+	protected void doExecuteTask(DelegateExecution execution, Variables variables)
 	{
 		logger.info("InsertReport doExecute");
 
@@ -51,20 +71,33 @@ public class InsertReport extends AbstractServiceDelegate implements Initializin
 		String sendingOrganization = task.getRequester().getIdentifier().getValue();
 		Identifier reportIdentifier = getReportIdentifier(task);
 
-		Bundle report = variables.getResource(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_SEARCH_BUNDLE);
-		report.setId("").getMeta().setVersionId("").setTag(null);
-		report.setIdentifier(reportIdentifier);
+		IdType reportReference = new IdType(
+				variables.getString(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_SEARCH_BUNDLE_RESPONSE_REFERENCE));
 
-		api.getReadAccessHelper().addLocal(report);
-		api.getReadAccessHelper().addOrganization(report, task.getRequester().getIdentifier().getValue());
+		String identifier = reportIdentifier.getSystem() + "|" + reportIdentifier.getValue();
 
-		PreferReturnMinimal client = api.getFhirWebserviceClientProvider().getLocalWebserviceClient()
-				.withMinimalReturn()
-				.withRetry(ConstantsBase.DSF_CLIENT_RETRY_6_TIMES, ConstantsBase.DSF_CLIENT_RETRY_INTERVAL_5MIN);
+		Bundle report;
 		try
 		{
-			IdType reportId = client.updateConditionaly(report, Map.of("identifier",
-					Collections.singletonList(reportIdentifier.getSystem() + "|" + reportIdentifier.getValue())));
+			report = receivePipeline.takeReceived(task.getId(), reportReference);
+			report.setIdentifier(reportIdentifier);
+
+			api.getReadAccessHelper().addLocal(report);
+			api.getReadAccessHelper().addOrganization(report, sendingOrganization);
+
+			// batched with concurrently received reports, returns once the report is committed
+			ReportWriteEvent writeEvent = new ReportWriteEvent();
+			writeEvent.begin();
+			IdType reportId;
+			try
+			{
+				reportId = receivePipeline.insert(report, reportIdentifier);
+			}
+			finally
+			{
+				writeEvent.finish(eventResourceSize, report, task.getId(), sendingOrganization,
+						ResourceType.Bundle.name() + "?identifier=" + identifier);
+			}
 
 			task.addOutput(statusGenerator
 					.createReportStatusOutput(ConstantsReport.CODESYSTEM_REPORT_STATUS_VALUE_RECEIVE_OK));
@@ -79,6 +112,8 @@ public class InsertReport extends AbstractServiceDelegate implements Initializin
 		}
 		catch (Exception exception)
 		{
+			receivePipeline.discardReceived(task.getId());
+
 			task.setStatus(Task.TaskStatus.FAILED);
 			task.addOutput(statusGenerator.createReportStatusOutput(
 					ConstantsReport.CODESYSTEM_REPORT_STATUS_VALUE_RECEIVE_ERROR, "Insert report failed"));
@@ -89,6 +124,36 @@ public class InsertReport extends AbstractServiceDelegate implements Initializin
 			throw new BpmnError(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_RECEIVE_ERROR,
 					"Insert report failed - " + exception.getMessage());
 		}
+
+		updateStatisticsIndex(sendingOrganization, report);
+		appendTimeSeries(sendingOrganization, report);
+	}
+
+	// the report is already stored, failures of the index do not fail the Task
+	private void updateStatisticsIndex(String sendingOrganization, Bundle report)
+	{
+		try
+		{
+			statisticsIndex.update(sendingOrganization, report);
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Could not update statistics index with report from organization '{}' - {}",
+					sendingOrganization, exception.getMessage());
+		}
+	}
+
+	private void appendTimeSeries(String sendingOrganization, Bundle report)
+	{
+		try
+		{
+			timeSeriesStore.append(ReportTimeSeriesStore.SERIES_RECEIVED, sendingOrganization, report);
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Could not append report from organization '{}' to time series - {}", sendingOrganization,
+					exception.getMessage());
+		}
 	}
 
 	private Identifier getReportIdentifier(Task task)
@@ -104,6 +169,6 @@ public class InsertReport extends AbstractServiceDelegate implements Initializin
 				+ "' from organization '" + sendingOrganization + "' and can be accessed using the following link:\n"
 				+ "- " + reportLocation;
 
-		api.getMailService().send(subject, message);
+		notificationQueue.notify(subject, message);
 	}
 }
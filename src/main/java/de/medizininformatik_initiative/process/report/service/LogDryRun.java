@@ -9,21 +9,25 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.ReportNotificationQueue;
 import de.medizininformatik_initiative.process.report.util.ReportStatusGenerator;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Variables;
 
-public class LogDryRun extends AbstractServiceDelegate implements InitializingBean
+public class LogDryRun extends AbstractReportServiceDelegate implements InitializingBean
 {
 	private static final Logger logger = LoggerFactory.getLogger(LogDryRun.class);
 
 	private final ReportStatusGenerator statusGenerator;
+	private final ReportNotificationQueue notificationQueue;
 
-	public LogDryRun(ProcessPluginApi api, ReportStatusGenerator statusGenerator)
+	public LogDryRun(ProcessPluginApi api, ReportMetrics metrics, ReportStatusGenerator statusGenerator,
+			ReportNotificationQueue notificationQueue)
 	{
-		super(api);
+		super(api, metrics);
 		this.statusGenerator = statusGenerator;
+		this.notificationQueue = notificationQueue;
 	}
 
 	@Override
@@ -31,10 +35,11 @@ public class LogDryRun extends AbstractServiceDelegate implements InitializingBe
 	{
 		super.afterPropertiesSet();
 		Objects.requireNonNull(statusGenerator, "statusGenerator");
+		Objects.requireNonNull(notificationQueue, "notificationQueue");
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution delegateExecution, Variables variables)
+	protected void doExecuteTask(DelegateExecution delegateExecution, Variables variables)
 	{
 		String recipient = variables.getTarget().getOrganizationIdentifierValue();
 		String reportLocation = variables
@@ -55,7 +60,7 @@ public class LogDryRun extends AbstractServiceDelegate implements InitializingBe
 				+ "' in process '" + ConstantsReport.PROCESS_NAME_FULL_REPORT_SEND
 				+ "' and can be accessed using the following link:\n" + "- " + reportLocation;
 
-		api.getMailService().send(subject, message);
+		notificationQueue.notify(subject, message);
 	}
 
 	private void addOutputToStartTask(Variables variables)
@@ -7,26 +7,36 @@ import org.hl7.fhir.r4.model.Identifier;
 import org.hl7.fhir.r4.model.Task;
 
 import de.medizininformatik_initiative.process.report.HrpExtracter;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.DirectoryCache;
 import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.constants.NamingSystems;
 import dev.dsf.bpe.v1.variables.Target;
 import dev.dsf.bpe.v1.variables.Variables;
 
-public class SelectTargetDic extends AbstractServiceDelegate implements HrpExtracter
+public class SelectTargetDic extends AbstractReportServiceDelegate implements HrpExtracter
 {
 	private final String reportReceiveOrganizationIdentifier;
+	private final DirectoryCache directoryCache;
 
-	public SelectTargetDic(ProcessPluginApi api, String reportReceiveOrganizationIdentifier)
+	public SelectTargetDic(ProcessPluginApi api, ReportMetrics metrics, DirectoryCache directoryCache,
+			String reportReceiveOrganizationIdentifier)
 	{
-		super(api);
+		super(api, metrics);
+		this.directoryCache = directoryCache;
 		this.reportReceiveOrganizationIdentifier = reportReceiveOrganizationIdentifier;
 
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution execution, Variables variables)
+	public DirectoryCache getDirectoryCache()
+	{
+		return directoryCache;
+	}
+
+	@Override
+	protected void doExecuteTask(DelegateExecution execution, Variables variables)
 	{
 		logger.info("SelectTargetDic doExecute");
 
@@ -54,7 +64,7 @@ public class SelectTargetDic extends AbstractServiceDelegate implements HrpExtra
 		Coding role = new Coding().setSystem(ConstantsBase.CODESYSTEM_DSF_ORGANIZATION_ROLE)
 				.setCode(ConstantsBase.CODESYSTEM_DSF_ORGANIZATION_ROLE_VALUE_DIC);
 
-		return getEndpoint(api, parentIdentifier, dicIdentifier, role);
+		return getEndpoint(parentIdentifier, dicIdentifier, role);
 	}
 
 	private Target createTarget(Variables variables, Identifier dicIdentifier, Endpoint dicEndpoint)
@@ -7,42 +7,39 @@ import org.slf4j.LoggerFactory;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
 import de.medizininformatik_initiative.process.report.HrpExtracter;
-import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.DirectoryCache;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.constants.NamingSystems;
 import dev.dsf.bpe.v1.variables.Target;
 import dev.dsf.bpe.v1.variables.Variables;
 
-public class SelectTargetHrp extends AbstractServiceDelegate implements HrpExtracter
+public class SelectTargetHrp extends AbstractReportServiceDelegate implements HrpExtracter
 {
 	private static final Logger logger = LoggerFactory.getLogger(SelectTargetHrp.class);
 
 	private final String hrpIdentifierEnvVariable;
 	private final String reportSendOrganizationIdentifier;
+	private final DirectoryCache directoryCache;
 
-	public SelectTargetHrp(ProcessPluginApi api, String hrpIdentifierEnvVariable,
-			String reportSendOrganizationIdentifier)
+	public SelectTargetHrp(ProcessPluginApi api, ReportMetrics metrics, DirectoryCache directoryCache,
+			String hrpIdentifierEnvVariable, String reportSendOrganizationIdentifier)
 	{
-		super(api);
+		super(api, metrics);
+		this.directoryCache = directoryCache;
 		this.hrpIdentifierEnvVariable = hrpIdentifierEnvVariable;
 		this.reportSendOrganizationIdentifier = reportSendOrganizationIdentifier;
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution execution, Variables variables)
+	protected void doExecuteTask(DelegateExecution execution, Variables variables)
 	{
 		logger.info("SelectTargetHrp doExecute");
 
 		Task startTask = variables.getStartTask();
 
-		Identifier parentIdentifier = NamingSystems.OrganizationIdentifier
-				.withValue(reportSendOrganizationIdentifier != null && !reportSendOrganizationIdentifier.isEmpty()
-						? reportSendOrganizationIdentifier
-						: ConstantsBase.NAMINGSYSTEM_DSF_ORGANIZATION_IDENTIFIER_MEDICAL_INFORMATICS_INITIATIVE_CONSORTIUM);
-
-		Coding hrpRole = new Coding().setSystem(ConstantsBase.CODESYSTEM_DSF_ORGANIZATION_ROLE)
-				.setCode(ConstantsBase.CODESYSTEM_DSF_ORGANIZATION_ROLE_VALUE_HRP);
+		Identifier parentIdentifier = getParentIdentifier(reportSendOrganizationIdentifier);
+		Coding hrpRole = getHrpRole();
 		// 1. use hrp-identifier provided from task, if not present
 		// 2. use hrp-identifier provided from ENV variable, if not present
 		// 3. search hrp-identifier for mii-parent-organization and use first found
@@ -50,7 +47,7 @@ public class SelectTargetHrp extends AbstractServiceDelegate implements HrpExtra
 
 		Identifier organizationIdentifier = NamingSystems.OrganizationIdentifier.withValue(hrpIdentifier);
 
-		Endpoint endpoint = getEndpoint(api, parentIdentifier, organizationIdentifier, hrpRole);
+		Endpoint endpoint = getEndpoint(parentIdentifier, organizationIdentifier, hrpRole);
 
 		String endpointIdentifier = extractEndpointIdentifier(endpoint);
 
@@ -64,6 +61,12 @@ public class SelectTargetHrp extends AbstractServiceDelegate implements HrpExtra
 		variables.setBoolean(ConstantsReport.BPMN_EXECUTION_VARIABLE_IS_DRY_RUN, isDryRun);
 	}
 
+	@Override
+	public DirectoryCache getDirectoryCache()
+	{
+		return directoryCache;
+	}
+
 
 	private boolean isDryRun(Variables variables)
 	{
@@ -2,6 +2,7 @@ package de.medizininformatik_initiative.process.report.service;
 
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Objects;
 import java.util.Optional;
 
 import org.camunda.bpm.engine.delegate.DelegateExecution;
@@ -12,22 +13,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.ReportSchedule;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Target;
 import dev.dsf.bpe.v1.variables.Variables;
 
-public class SetTimer extends AbstractServiceDelegate
+public class SetTimer extends AbstractReportServiceDelegate
 {
 	private static final Logger logger = LoggerFactory.getLogger(SetTimer.class);
 
-	public SetTimer(ProcessPluginApi api)
+	private final ReportSchedule schedule;
+
+	public SetTimer(ProcessPluginApi api, ReportMetrics metrics, ReportSchedule schedule)
+	{
+		super(api, metrics);
+		this.schedule = schedule;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception
 	{
-		super(api);
+		super.afterPropertiesSet();
+		Objects.requireNonNull(schedule, "schedule");
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution execution, Variables variables)
+	protected void doExecuteTask(DelegateExecution execution, Variables variables)
 	{
 		logger.info("SetTimer doExecute");
 
@@ -38,10 +50,15 @@ public class SetTimer extends AbstractServiceDelegate
 				task.getId());
 		variables.setString(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_TIMER_INTERVAL, timerInterval);
 
+		String organizationIdentifier = api.getOrganizationProvider().getLocalOrganizationIdentifierValue()
+				.orElse(null);
 		Optional<TimeType> firstExecutionTime = getFirstExecution(variables);
-		if (firstExecutionTime.isPresent())
+		if (firstExecutionTime.isPresent() || ReportSchedule.isCronExpression(timerInterval))
 		{
-			String firstExecutionDateTime = calculateFirstExecutionDateTime(firstExecutionTime.get());
+			String firstExecutionDateTime = firstExecutionTime.isPresent()
+					? schedule.getFirstExecution(calculateFirstExecutionDateTime(firstExecutionTime.get()),
+							organizationIdentifier).toString()
+					: schedule.getNextExecution(timerInterval, LocalDateTime.now(), organizationIdentifier).toString();
 			variables.setString(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_FIRST_EXECUTION, firstExecutionDateTime);
 			variables.setBoolean(ConstantsReport.BPMN_EXECUTION_VARIABLE_REPORT_FIRST_EXECUTION_DELAYED, true);
 
@@ -74,14 +91,14 @@ public class SetTimer extends AbstractServiceDelegate
 				TimeType.class);
 	}
 
-	private String calculateFirstExecutionDateTime(TimeType time)
+	private LocalDateTime calculateFirstExecutionDateTime(TimeType time)
 	{
 		LocalDateTime dateTime = LocalDateTime.now().with(LocalTime.parse(time.getValue()));
 
 		if (dateTime.isBefore(LocalDateTime.now()))
 			dateTime = dateTime.plusDays(1);
 
-		return dateTime.toString();
+		return dateTime;
 	}
 
 	private Target createLocalTarget(Variables variables)
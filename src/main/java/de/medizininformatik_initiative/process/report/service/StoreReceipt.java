@@ -10,23 +10,27 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.ReportNotificationQueue;
 import de.medizininformatik_initiative.process.report.util.ReportStatusGenerator;
 import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Target;
 import dev.dsf.bpe.v1.variables.Variables;
 
-public class StoreReceipt extends AbstractServiceDelegate implements InitializingBean
+public class StoreReceipt extends AbstractReportServiceDelegate implements InitializingBean
 {
 	private static final Logger logger = LoggerFactory.getLogger(StoreReceipt.class);
 
 	private final ReportStatusGenerator statusGenerator;
+	private final ReportNotificationQueue notificationQueue;
 
-	public StoreReceipt(ProcessPluginApi api, ReportStatusGenerator statusGenerator)
+	public StoreReceipt(ProcessPluginApi api, ReportMetrics metrics, ReportStatusGenerator statusGenerator,
+			ReportNotificationQueue notificationQueue)
 	{
-		super(api);
+		super(api, metrics);
 		this.statusGenerator = statusGenerator;
+		this.notificationQueue = notificationQueue;
 	}
 
 	@Override
@@ -34,10 +38,11 @@ public class StoreReceipt extends AbstractServiceDelegate implements Initializin
 	{
 		super.afterPropertiesSet();
 		Objects.requireNonNull(statusGenerator, "statusGenerator");
+		Objects.requireNonNull(notificationQueue, "notificationQueue");
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution execution, Variables variables)
+	protected void doExecuteTask(DelegateExecution execution, Variables variables)
 	{
 		logger.info("StoreReceipt doExecute");
 
@@ -118,7 +123,7 @@ public class StoreReceipt extends AbstractServiceDelegate implements Initializin
 				+ "' with status code '" + code + "' in process '" + ConstantsReport.PROCESS_NAME_FULL_REPORT_SEND
 				+ "' and can be accessed using the following link:\n" + "- " + reportLocation;
 
-		api.getMailService().send(subject, message);
+		notificationQueue.notify(subject, message);
 	}
 
 	private void sendErrorMail(String startTaskId, String reportLocation, String code, String error,
@@ -130,6 +135,6 @@ public class StoreReceipt extends AbstractServiceDelegate implements Initializin
 				+ reportLocation + "' in process '" + ConstantsReport.PROCESS_NAME_FULL_REPORT_SEND
 				+ "' in Task with id '" + startTaskId + "':\n" + "- status code: " + code + "\n" + "- error: " + error;
 
-		api.getMailService().send(subject, message);
+		notificationQueue.notifyError(subject, message);
 	}
 }
@@ -3,32 +3,38 @@ package de.medizininformatik_initiative.process.report.service;
 import org.camunda.bpm.engine.delegate.BpmnError;
 import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.ResourceType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 import de.medizininformatik_initiative.process.report.ConstantsReport;
 import de.medizininformatik_initiative.process.report.SaveOrUpdateBundle;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.jfr.ReportWriteEvent;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
 import dev.dsf.bpe.v1.ProcessPluginApi;
-import dev.dsf.bpe.v1.activity.AbstractServiceDelegate;
 import dev.dsf.bpe.v1.variables.Variables;
 import dev.dsf.fhir.client.FhirWebserviceClient;
 
-public class StoreSearchBundle extends AbstractServiceDelegate implements InitializingBean, SaveOrUpdateBundle
+public class StoreSearchBundle extends AbstractReportServiceDelegate implements InitializingBean, SaveOrUpdateBundle
 {
 	private static final Logger logger = LoggerFactory.getLogger(StoreSearchBundle.class);
 
 
+	private final ReportEventResourceSize eventResourceSize;
+
 	private FhirWebserviceClient localWebserviceClient;
 
-	public StoreSearchBundle(ProcessPluginApi api)
+	public StoreSearchBundle(ProcessPluginApi api, ReportMetrics metrics, ReportEventResourceSize eventResourceSize)
 	{
-		super(api);
+		super(api, metrics);
+		this.eventResourceSize = eventResourceSize;
 		this.localWebserviceClient = api.getFhirWebserviceClientProvider().getLocalWebserviceClient();
 	}
 
 	@Override
-	protected void doExecute(DelegateExecution delegateExecution, Variables variables) throws BpmnError, Exception
+	protected void doExecuteTask(DelegateExecution delegateExecution, Variables variables) throws BpmnError, Exception
 	{
 		logger.info("StoreSearchBundle doExecute");
 
@@ -38,7 +44,18 @@ public class StoreSearchBundle extends AbstractServiceDelegate implements Initia
 
 		logger.info("Search for bundle on the local DSF FHIR: {}", searchBundleIdentifier);
 
-		saveOrUpdate(localWebserviceClient, bundle, searchBundleIdentifier);
+		ReportWriteEvent writeEvent = new ReportWriteEvent();
+		writeEvent.begin();
+		try
+		{
+			saveOrUpdate(localWebserviceClient, bundle, searchBundleIdentifier);
+		}
+		finally
+		{
+			writeEvent.finish(eventResourceSize, bundle, variables.getStartTask().getId(),
+					bundle.getIdentifier().getValue(),
+					ResourceType.Bundle.name() + "?identifier=" + searchBundleIdentifier);
+		}
 
 	}
 
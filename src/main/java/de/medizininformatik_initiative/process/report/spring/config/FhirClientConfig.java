@@ -4,11 +4,20 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IRestfulClientFactory;
+import de.medizininformatik_initiative.process.report.util.AsyncDataLogger;
+import de.medizininformatik_initiative.process.report.util.FhirStoreContext;
+import de.medizininformatik_initiative.process.report.util.RefreshingTokenProvider;
 import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
 import de.medizininformatik_initiative.processes.common.fhir.client.logging.DataLogger;
 import de.medizininformatik_initiative.processes.common.fhir.client.token.OAuth2TokenClient;
@@ -21,6 +30,10 @@ import dev.dsf.bpe.v1.documentation.ProcessDocumentation;
 @Configuration
 public class FhirClientConfig
 {
+	private static final Logger logger = LoggerFactory.getLogger(FhirClientConfig.class);
+
+	private static final int RESERVED_CONNECTIONS = 4;
+
 	@Autowired
 	private FhirContext fhirContext;
 
@@ -157,11 +170,36 @@ public class FhirClientConfig
 	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.oauth2.discovery.validation.lenient:false}")
 	private boolean fhirStoreOAuth2DiscoveryValidationLenient;
 
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Fraction of the access token lifetime after which the token is renewed in the background, set to `0` to request new tokens only when the current token expired", recommendation = "Change default value only if the oidc provider issues tokens with very short lifetimes", example = "0.5")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.oauth2.refresh.fraction:0.75}")
+	private double fhirStoreOAuth2RefreshFraction;
+
 	@ProcessDocumentation(processNames = {
 			"medizininformatik-initiativede_reportSend" }, description = "To enable debug logging of FHIR resources set to `true`")
 	@Value("${de.medizininformatik.initiative.report.dic.fhir.dataLoggingEnabled:false}")
 	private boolean fhirDataLoggingEnabled;
 
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "To serialize and write logged FHIR resources on a background thread instead of the service task thread set to `true`, resources are not logged if the queue is full", recommendation = "Disable only if logged resources have to appear in order with other log messages")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.dataLogging.async:true}")
+	private boolean fhirDataLoggingAsync;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Maximum number of FHIR resources waiting to be logged in async data logging mode")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.dataLogging.queue.capacity:16}")
+	private int fhirDataLoggingQueueCapacity;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Maximum number of characters logged per FHIR resource, longer resources are truncated, set to `0` to log complete resources", example = "100000")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.dataLogging.max.size:1000000}")
+	private int fhirDataLoggingMaxSize;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Fraction of FHIR resources logged, between `0` and `1`", example = "0.1")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.dataLogging.sample.rate:1.0}")
+	private double fhirDataLoggingSampleRate;
+
 	@ProcessDocumentation(processNames = {
 			"medizininformatik-initiativede_reportSend" }, description = "Initial result polling interval in milliseconds for asynchronous request pattern when executing search bundle requests, the interval will double after every check if a result is not ready")
 	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.async.polling.interval:100}")
@@ -172,11 +210,27 @@ public class FhirClientConfig
 	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.async.client.connection.test.enabled:false}")
 	private boolean fhirAsyncClientConnectionTestEnabled;
 
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Maximum number of pooled connections to the FHIR server kept alive and reused between requests and report executions, set to `0` to size the pool for `de.medizininformatik.initiative.report.dic.fhir.server.search.parallelism`", recommendation = "Change default value only if connection request timeouts occur", example = "32")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.connection.pool.max:0}")
+	private int fhirStoreConnectionPoolMax;
+
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.search.parallelism:1}")
+	private int fhirStoreSearchParallelism;
+
 	@Value("${dev.dsf.bpe.fhir.server.organization.identifier.value}")
 	private String localIdentifierValue;
 
+	// one factory shared by all report executions, connections and TLS sessions to the FHIR server are reused
+	// instead of being established for every Task
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
 	public FhirClientFactory fhirClientFactory()
 	{
+		int poolMax = getConnectionPoolMax(fhirStoreConnectionPoolMax, fhirStoreSearchParallelism);
+		logger.info("FHIR server connection pool sized to {} connections for {} parallel search requests", poolMax,
+				fhirStoreSearchParallelism);
+
 		Path trustStorePath = checkExists(fhirStoreTrustStore);
 		Path certificatePath = checkExists(fhirStoreCertificate);
 		Path privateKeyPath = checkExists(fhirStorePrivateKey);
@@ -196,15 +250,35 @@ public class FhirClientConfig
 		return new FhirClientFactory(trustStorePath, certificatePath, privateKeyPath, fhirStorePrivateKeyPassword,
 				fhirStoreConnectTimeout, fhirStoreSocketTimeout, fhirStoreConnectionRequestTimeout, fhirStoreBaseUrl,
 				fhirStoreUsername, fhirStorePassword, fhirStoreBearerToken, tokenProvider(), proxyUrl, proxyUsername,
-				proxyPassword, fhirStoreHapiClientVerbose, fhirAsyncInitialPollingIntervalMilliseconds, fhirContext,
-				localIdentifierValue, dataLogger(), fhirAsyncClientConnectionTestEnabled, false);
+				proxyPassword, fhirStoreHapiClientVerbose, fhirAsyncInitialPollingIntervalMilliseconds,
+				new FhirStoreContext(api.getFhirContext(), poolMax), localIdentifierValue, dataLogger(),
+				fhirAsyncClientConnectionTestEnabled, false);
 	}
 
+	// health probe, incremental report probes and interim reports use connections besides the search requests
+	public static int getConnectionPoolMax(int configuredPoolMax, int searchParallelism)
+	{
+		return configuredPoolMax > 0 ? configuredPoolMax
+				: Math.max(IRestfulClientFactory.DEFAULT_POOL_MAX_PER_ROUTE, searchParallelism + RESERVED_CONNECTIONS);
+	}
+
+	// tokens are renewed in the background before they expire, search requests do not wait for the oidc provider
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
 	public TokenProvider tokenProvider()
 	{
-		return new OAuth2TokenProvider(tokenClient());
+		TokenClient tokenClient = tokenClient();
+
+		if (fhirStoreOAuth2IssuerUrl == null || fhirStoreOAuth2RefreshFraction <= 0)
+			return new OAuth2TokenProvider(tokenClient);
+		else
+			return new RefreshingTokenProvider(() -> new OAuth2TokenProvider(tokenClient),
+					fhirStoreOAuth2RefreshFraction);
 	}
 
+	// one client shared by all report executions, the oidc discovery document is only requested once
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
 	public TokenClient tokenClient()
 	{
 		Path trustStoreOAuth2Path = checkExists(fhirStoreOAuth2TrustStore);
@@ -226,9 +300,12 @@ public class FhirClientConfig
 				fhirStoreOAuth2DiscoveryValidationLenient);
 	}
 
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
 	public DataLogger dataLogger()
 	{
-		return new DataLogger(fhirDataLoggingEnabled, fhirContext);
+		return new AsyncDataLogger(fhirDataLoggingEnabled, fhirContext, fhirDataLoggingAsync,
+				fhirDataLoggingQueueCapacity, fhirDataLoggingMaxSize, fhirDataLoggingSampleRate);
 	}
 
 	private Path checkExists(String file)
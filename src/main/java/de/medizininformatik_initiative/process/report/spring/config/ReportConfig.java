@@ -1,5 +1,10 @@
 package de.medizininformatik_initiative.process.report.spring.config;
 
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
@@ -9,9 +14,12 @@ import org.springframework.context.annotation.Scope;
 
 import de.medizininformatik_initiative.process.report.ReportProcessPluginDefinition;
 import de.medizininformatik_initiative.process.report.ReportProcessPluginDeploymentStateListener;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
 import de.medizininformatik_initiative.process.report.message.SendReceipt;
 import de.medizininformatik_initiative.process.report.message.SendReport;
 import de.medizininformatik_initiative.process.report.message.StartSendReport;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetricsLogger;
 import de.medizininformatik_initiative.process.report.service.*;
 import de.medizininformatik_initiative.process.report.service.CheckSearchBundle;
 import de.medizininformatik_initiative.process.report.service.CreateReport;
@@ -24,8 +32,24 @@ import de.medizininformatik_initiative.process.report.service.SelectTargetDic;
 import de.medizininformatik_initiative.process.report.service.SelectTargetHrp;
 import de.medizininformatik_initiative.process.report.service.SetTimer;
 import de.medizininformatik_initiative.process.report.service.StoreReceipt;
+import de.medizininformatik_initiative.process.report.store.MetadataMigrationState;
+import de.medizininformatik_initiative.process.report.store.ReportCheckpointStore;
+import de.medizininformatik_initiative.process.report.store.ReportStatisticsIndex;
+import de.medizininformatik_initiative.process.report.store.ReportTimeSeriesStore;
+import de.medizininformatik_initiative.process.report.util.CapabilityStatementCache;
+import de.medizininformatik_initiative.process.report.util.DirectoryCache;
+import de.medizininformatik_initiative.process.report.util.DsfClientRetry;
+import de.medizininformatik_initiative.process.report.util.FhirStoreCircuitBreaker;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.process.report.util.IncrementalReportPlanner;
+import de.medizininformatik_initiative.process.report.util.ReportBundleStore;
+import de.medizininformatik_initiative.process.report.util.ReportNotificationQueue;
+import de.medizininformatik_initiative.process.report.util.ReportReceivePipeline;
+import de.medizininformatik_initiative.process.report.util.ReportSchedule;
 import de.medizininformatik_initiative.process.report.util.ReportStatusGenerator;
 import de.medizininformatik_initiative.process.report.util.SearchQueryCheckService;
+import de.medizininformatik_initiative.process.report.util.SearchResultCache;
+import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
 import de.medizininformatik_initiative.processes.common.util.MetadataResourceConverter;
 import dev.dsf.bpe.v1.ProcessPluginApi;
 import dev.dsf.bpe.v1.ProcessPluginDeploymentStateListener;
@@ -45,6 +69,16 @@ public class ReportConfig
 	@Value("${de.medizininformatik.initiative.report.dic.hrp.identifier:#{null}}")
 	private String hrpIdentifier;
 
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportAutostart",
+			"medizininformatik-initiativede_reportSend" }, description = "To create and send a report to every HRP of the parent organization from one autostart execution set to `true`, report send processes for all HRPs run in parallel and search requests contained in more than one search Bundle are executed once and every HRP gets its own report Bundle with identifier `<local organization>:<HRP>`. If `de.medizininformatik.initiative.report.dic.hrp.identifier` is set, it is used as comma separated list of HRPs. Report send processes started without autostart process and without HRP input fail if more than one HRP is configured", recommendation = "Only enable if more than one HRP exists in your network")
+	@Value("${de.medizininformatik.initiative.report.dic.hrp.multi.target.enabled:false}")
+	private boolean hrpMultiTargetEnabled;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Time successful search results are shared between report send processes for different HRPs in multi target mode after the search request completed as ISO 8601 duration. Running search requests are always shared. Report send processes sending a search request later, e.g. because they were deferred, execute it again. Default: `PT30M`", example = "PT1H")
+	@Value("${de.medizininformatik.initiative.report.dic.hrp.multi.target.result.ttl:PT30M}")
+	private String hrpMultiTargetResultTtl;
+
 	@ProcessDocumentation(processNames = {
 			"medizininformatik-initiativede_reportSend" }, description = "Parent organization for which the send process is running. Default: `medizininformatik-initiative.de`", example = "medizininformatik-initiative.de")
 	@Value("${edu.ubi.medfak.report.dsf.process.send.organization.identifier.value:medizininformatik-initiative.de}")
@@ -70,6 +104,169 @@ public class ReportConfig
 	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.async.enabled:false}")
 	private boolean fhirAsyncEnabled;
 
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Number of search Bundle requests executed concurrently against the FHIR store, combine with execution windows to run reports at full parallelism while the FHIR store is idle. Default: `1`", example = "4")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.search.parallelism:1}")
+	private int fhirSearchParallelism;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportAutostart" }, description = "Window the scheduled report executions are spread over as ISO 8601 duration, every organization gets a fixed offset within the window derived from its identifier, `PT0S` starts at exactly the configured time. Default: `PT0S`", example = "PT1H")
+	@Value("${de.medizininformatik.initiative.report.autostart.stagger.window:PT0S}")
+	private String autostartStaggerWindow;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportAutostart" }, description = "Maximum random delay added to every scheduled report execution on top of the stagger offset as ISO 8601 duration. Default: `PT0S`", example = "PT10M")
+	@Value("${de.medizininformatik.initiative.report.autostart.jitter:PT0S}")
+	private String autostartJitter;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportAutostart" }, description = "Comma separated list of daily time windows in local time scheduled report executions may start in, executions due outside of a window are deferred to the start of the next window. If empty, executions may start at any time", example = "20:00-06:00,12:00-13:00")
+	@Value("${de.medizininformatik.initiative.report.autostart.execution.windows:}")
+	private String autostartExecutionWindows;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportAutostart" }, description = "Interval after which a scheduled report execution deferred because the FHIR store is busy is checked again as ISO 8601 duration. Default: `PT15M`", example = "PT30M")
+	@Value("${de.medizininformatik.initiative.report.autostart.defer.interval:PT15M}")
+	private String autostartDeferInterval;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportAutostart" }, description = "Maximum time a scheduled report execution is deferred because of execution windows or a busy FHIR store as ISO 8601 duration, the execution starts afterwards regardless. Default: `PT24H`", example = "PT12H")
+	@Value("${de.medizininformatik.initiative.report.autostart.defer.max:PT24H}")
+	private String autostartDeferMax;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportAutostart",
+			"medizininformatik-initiativede_reportSend" }, description = "Number of consecutive failed requests to the FHIR store after which further search requests fail fast without being sent, set to `0` to disable. Default: `5`", example = "3")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.circuit.breaker.failure.threshold:5}")
+	private int fhirCircuitBreakerFailureThreshold;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportAutostart",
+			"medizininformatik-initiativede_reportSend" }, description = "Time search requests fail fast after the FHIR store became unavailable before a single trial request is sent as ISO 8601 duration. Default: `PT5M`", example = "PT10M")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.circuit.breaker.open.duration:PT5M}")
+	private String fhirCircuitBreakerOpenDuration;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportAutostart",
+			"medizininformatik-initiativede_reportSend" }, description = "Interval of the background health probe requesting `metadata?_summary=true` from the FHIR store as ISO 8601 duration, scheduled report runs are not started while the FHIR store is unavailable, set to `PT0S` to disable. Default: `PT1M`", example = "PT5M")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.probe.interval:PT1M}")
+	private String fhirProbeInterval;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportAutostart" }, description = "Smoothed latency of the search request sent with the FHIR store health probe above which the FHIR store is considered busy and scheduled report executions are deferred as ISO 8601 duration, requires the health probe, set to `PT0S` to disable. Default: `PT0S`", example = "PT2S")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.probe.latency.threshold:PT0S}")
+	private String fhirProbeLatencyThreshold;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportAutostart" }, description = "Search request relative to the FHIR base URL sent with the FHIR store health probe to measure the latency compared with the latency threshold, should be cheap but answered from the database. Default: `Patient?_summary=count`", example = "Encounter?_summary=count")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.probe.latency.search:Patient?_summary=count}")
+	private String fhirProbeLatencySearch;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Format requested from the FHIR store with the `_format` parameter, one of `json`, `xml` or `none` to use the FHIR store default. With `auto` JSON is requested if listed as supported format in the FHIR store CapabilityStatement. Default: `auto`", example = "json")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.format:auto}")
+	private String fhirStoreFormat;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "To cache the CapabilityStatement of the FHIR store as contained in reports set to `true`, the full CapabilityStatement is only downloaded again if software name, version or date of `metadata?_summary=true` changed")
+	@Value("${de.medizininformatik.initiative.report.dic.fhir.server.metadata.cache.enabled:true}")
+	private boolean fhirMetadataCacheEnabled;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Comma separated list of percentages of completed search requests at which an interim report is stored, search requests not yet completed are marked with status `pending`, the final report replaces the interim report. If empty, only the final report is stored", example = "25,50,75")
+	@Value("${de.medizininformatik.initiative.report.interim.milestones:}")
+	private String interimReportMilestones;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "To re-execute only search requests for resource types changed since the previous report set to `true`, changes are detected with `_lastUpdated` count requests against the FHIR store, deleted resources are not detected and results are therefore re-executed after `de.medizininformatik.initiative.report.incremental.max.age`")
+	@Value("${de.medizininformatik.initiative.report.incremental.enabled:false}")
+	private boolean incrementalEnabled;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Maximum age of a search result copied forward from the previous report in incremental mode as ISO 8601 duration. Default: `P28D`", example = "P7D")
+	@Value("${de.medizininformatik.initiative.report.incremental.max.age:P28D}")
+	private String incrementalMaxAge;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportAutostart",
+			"medizininformatik-initiativede_reportSend",
+			"medizininformatik-initiativede_reportReceive" }, description = "Interval in which collected task durations, search request latencies and response status counts are written to the log as ISO 8601 duration, set to `PT0S` to disable. Default: `PT1H`", example = "PT15M")
+	@Value("${de.medizininformatik.initiative.report.metrics.log.interval:PT1H}")
+	private String metricsLogInterval;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportAutostart",
+			"medizininformatik-initiativede_reportSend",
+			"medizininformatik-initiativede_reportReceive" }, description = "To record the size of handled resources in the `bytes` field of the report Java Flight Recorder events set to `true`, resources are encoded to JSON only for counting their bytes", recommendation = "Enable only while analyzing recordings, encoding large reports is expensive")
+	@Value("${de.medizininformatik.initiative.report.jfr.resource.size.enabled:false}")
+	private boolean jfrResourceSizeEnabled;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportSend",
+			"medizininformatik-initiativede_reportReceive" }, description = "Time to live of cached organization and endpoint lookups from the local DSF FHIR server as ISO 8601 duration, set to `PT0S` to disable caching. Default: `PT15M`", example = "PT5M")
+	@Value("${de.medizininformatik.initiative.report.directory.cache.ttl:PT15M}")
+	private String directoryCacheTtl;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportSend",
+			"medizininformatik-initiativede_reportReceive" }, description = "Maximum number of cached organization and endpoint lookups. Default: `100`", example = "100")
+	@Value("${de.medizininformatik.initiative.report.directory.cache.max.entries:100}")
+	private int directoryCacheMaxEntries;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportSend",
+			"medizininformatik-initiativede_reportReceive" }, description = "Interval of the background check for changed Organization, OrganizationAffiliation and Endpoint resources on the local DSF FHIR server as ISO 8601 duration, the cache is cleared if changes are found, set to `PT0S` to disable. Default: `PT1M`", example = "PT5M")
+	@Value("${de.medizininformatik.initiative.report.directory.cache.invalidation.interval:PT1M}")
+	private String directoryCacheInvalidationInterval;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportReceive" }, description = "Maximum number of reports downloaded concurrently from the same sending DSF FHIR server. Default: `2`", example = "4")
+	@Value("${de.medizininformatik.initiative.report.receive.download.parallelism:2}")
+	private int receiveDownloadParallelism;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportReceive" }, description = "Maximum number of received reports inserted into the local DSF FHIR server in one transaction Bundle, set to `1` to insert every report on its own. Default: `10`", example = "20")
+	@Value("${de.medizininformatik.initiative.report.receive.insert.batch.size:10}")
+	private int receiveInsertBatchSize;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportReceive" }, description = "Time to wait for further received reports before a transaction Bundle is inserted as ISO 8601 duration. Default: `PT0.5S`", example = "PT1S")
+	@Value("${de.medizininformatik.initiative.report.receive.insert.batch.window:PT0.5S}")
+	private String receiveInsertBatchWindow;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportReceive" }, description = "Maximum time to wait for the batched insert of a received report as ISO 8601 duration, the report is inserted on its own afterwards. Default: `PT5M`", example = "PT10M")
+	@Value("${de.medizininformatik.initiative.report.receive.insert.timeout:PT5M}")
+	private String receiveInsertTimeout;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportReceive" }, description = "Maximum number of downloaded reports kept in memory until they are inserted, further reports are downloaded again by the insert step, set to `0` to always download again. Default: `10`", example = "20")
+	@Value("${de.medizininformatik.initiative.report.receive.memory.max:10}")
+	private int receiveMemoryMax;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportReceive" }, description = "To write the search result totals of the latest report of every organization as tab separated file per organization to the `statistics` folder of the data directory, set to `true`. Requires a data directory. Default: `false`")
+	@Value("${de.medizininformatik.initiative.report.receive.statistics.index.enabled:false}")
+	private boolean receiveStatisticsIndexEnabled;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportSend",
+			"medizininformatik-initiativede_reportReceive" }, description = "Window in which report notification mails are collected and sent as one digest mail as ISO 8601 duration, set to `PT0S` to send every notification on its own. Mails are always sent asynchronously. Default: `PT0S`", example = "PT15M")
+	@Value("${de.medizininformatik.initiative.report.mail.digest.window:PT0S}")
+	private String mailDigestWindow;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportSend",
+			"medizininformatik-initiativede_reportReceive" }, description = "To send error notification mails immediately instead of adding them to the digest set to `true`. Default: `true`")
+	@Value("${de.medizininformatik.initiative.report.mail.errors.immediate:true}")
+	private boolean mailErrorsImmediate;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportAutostart",
+			"medizininformatik-initiativede_reportSend",
+			"medizininformatik-initiativede_reportReceive" }, description = "Writable directory for state of the report processes kept across BPE restarts, e.g. the fingerprint of already migrated CodeSystems and ValueSets used to skip the migration at startup. If not set, no state is persisted", example = "/opt/bpe/data/report")
+	@Value("${de.medizininformatik.initiative.report.data.directory:#{null}}")
+	private String dataDirectory;
+
+	@ProcessDocumentation(processNames = {
+			"medizininformatik-initiativede_reportSend" }, description = "Maximum age of checkpoints of completed search requests kept in the data directory to resume an interrupted report creation as ISO 8601 duration, older checkpoints are deleted on startup. Only used if a data directory is configured. Default: `P7D`", example = "P1D")
+	@Value("${de.medizininformatik.initiative.report.checkpoint.max.age:P7D}")
+	private String checkpointMaxAge;
+
+	@ProcessDocumentation(processNames = { "medizininformatik-initiativede_reportSend",
+			"medizininformatik-initiativede_reportReceive" }, description = "To append the search result totals of every created and received report to time series files in the `timeseries` folder of the data directory, set to `true`. Only totals changed since the previous report are written. Requires a data directory. Default: `false`")
+	@Value("${de.medizininformatik.initiative.report.timeseries.enabled:false}")
+	private boolean timeSeriesEnabled;
+
 	// all Processes
 
 	@Bean
@@ -87,6 +284,28 @@ public class ReportConfig
 		return new MetadataResourceConverter(api, resourcesVersion);
 	}
 
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public MetadataMigrationState metadataMigrationState()
+	{
+		return new MetadataMigrationState(dataDirectory == null ? null : Paths.get(dataDirectory));
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportTimeSeriesStore reportTimeSeriesStore()
+	{
+		return new ReportTimeSeriesStore(dataDirectory == null ? null : Paths.get(dataDirectory), timeSeriesEnabled);
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportCheckpointStore reportCheckpointStore()
+	{
+		return new ReportCheckpointStore(dataDirectory == null ? null : Paths.get(dataDirectory), api.getFhirContext(),
+				Duration.parse(checkpointMaxAge));
+	}
+
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
 	public ProcessPluginDeploymentStateListener reportProcessPluginDeploymentStateListener()
@@ -94,7 +313,99 @@ public class ReportConfig
 		String resourcesVersion = new ReportProcessPluginDefinition().getResourceVersion();
 
 		return new ReportProcessPluginDeploymentStateListener(api, fhirClientConfig.fhirClientFactory(),
-				metadataResourceConverter(), resourcesVersion, reportDistributeAsBroker);
+				metadataResourceConverter(), metadataMigrationState(), resourcesVersion, reportDistributeAsBroker);
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportMetrics reportMetrics()
+	{
+		return new ReportMetrics();
+	}
+
+	// JFR events are created per step and not managed by Spring, the services pass this to the events they finish
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportEventResourceSize reportEventResourceSize()
+	{
+		return new ReportEventResourceSize(api.getFhirContext(), jfrResourceSizeEnabled);
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportMetricsLogger reportMetricsLogger()
+	{
+		return new ReportMetricsLogger(reportMetrics(), Duration.parse(metricsLogInterval));
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public DirectoryCache directoryCache()
+	{
+		return new DirectoryCache(api, reportMetrics(), Duration.parse(directoryCacheTtl), directoryCacheMaxEntries,
+				Duration.parse(directoryCacheInvalidationInterval));
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportNotificationQueue reportNotificationQueue()
+	{
+		return new ReportNotificationQueue(api, Duration.parse(mailDigestWindow), mailErrorsImmediate);
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public FhirStoreCircuitBreaker fhirStoreCircuitBreaker()
+	{
+		// the FHIR store is not queried in broker mode
+		Duration probeInterval = reportDistributeAsBroker ? Duration.ZERO : Duration.parse(fhirProbeInterval);
+
+		return new FhirStoreCircuitBreaker(fhirClientConfig.fhirClientFactory(), reportMetrics(),
+				fhirCircuitBreakerFailureThreshold, Duration.parse(fhirCircuitBreakerOpenDuration), probeInterval,
+				Duration.parse(fhirProbeLatencyThreshold), fhirProbeLatencySearch);
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public FhirStoreFormat fhirStoreFormat()
+	{
+		return new FhirStoreFormat(fhirClientConfig.fhirClientFactory(), fhirStoreFormat);
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public CapabilityStatementCache capabilityStatementCache()
+	{
+		return new CapabilityStatementCache(fhirClientConfig.fhirClientFactory(), fhirStoreFormat(),
+				fhirMetadataCacheEnabled);
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public SearchResultCache searchResultCache()
+	{
+		// search results are only shared between report executions for different HRPs
+		Duration timeToLive = hrpMultiTargetEnabled ? Duration.parse(hrpMultiTargetResultTtl) : Duration.ZERO;
+		return new SearchResultCache(timeToLive, reportMetrics());
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public IncrementalReportPlanner incrementalReportPlanner()
+	{
+		return new IncrementalReportPlanner(fhirClientConfig.fhirClientFactory(), fhirStoreFormat(), reportMetrics(),
+				incrementalEnabled, Duration.parse(incrementalMaxAge));
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportSchedule reportSchedule()
+	{
+		List<ReportSchedule.ExecutionWindow> executionWindows = Arrays.stream(autostartExecutionWindows.split(","))
+				.map(String::trim).filter(w -> !w.isEmpty()).map(ReportSchedule.ExecutionWindow::parse).toList();
+
+		return new ReportSchedule(Duration.parse(autostartStaggerWindow), Duration.parse(autostartJitter),
+				executionWindows, Duration.parse(autostartDeferInterval), Duration.parse(autostartDeferMax));
 	}
 
 	// reportAutostart Process
@@ -103,14 +414,15 @@ public class ReportConfig
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public SetTimer setTimer()
 	{
-		return new SetTimer(api);
+		return new SetTimer(api, reportMetrics(), reportSchedule());
 	}
 
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public StartSendReport startSendReport()
 	{
-		return new StartSendReport(api);
+		return new StartSendReport(api, fhirStoreCircuitBreaker(), reportSchedule(), directoryCache(), hrpIdentifier,
+				reportSendOrganizationIdentifier, hrpMultiTargetEnabled);
 	}
 
 	// reportSend Process
@@ -119,7 +431,8 @@ public class ReportConfig
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public SelectTargetHrp selectTargetHrp()
 	{
-		return new SelectTargetHrp(api, hrpIdentifier, reportSendOrganizationIdentifier);
+		return new SelectTargetHrp(api, reportMetrics(), directoryCache(), hrpIdentifier,
+				reportSendOrganizationIdentifier);
 	}
 
 	@Bean
@@ -127,15 +440,16 @@ public class ReportConfig
 	public DownloadSearchBundle downloadSearchBundle()
 	{
 		String processVersion = new ReportProcessPluginDefinition().getResourceVersion();
-		return new DownloadSearchBundle(api, reportStatusGenerator(), fhirClientConfig.dataLogger(), processVersion);
+		return new DownloadSearchBundle(api, reportMetrics(), reportStatusGenerator(), fhirClientConfig.dataLogger(),
+				processVersion);
 	}
 
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public CheckSearchBundle checkSearchBundle()
 	{
-		return new CheckSearchBundle(api, searchQueryCheckService(), reportDistributeAsBroker,
-				reportDistributeWaitInterval);
+		return new CheckSearchBundle(api, reportMetrics(), reportEventResourceSize(), searchQueryCheckService(),
+				reportDistributeAsBroker, reportDistributeWaitInterval);
 	}
 
 
@@ -151,15 +465,40 @@ public class ReportConfig
 	public CreateReport createReport()
 	{
 		String resourceVersion = new ReportProcessPluginDefinition().getResourceVersion();
-		return new CreateReport(api, resourceVersion, fhirClientConfig.fhirClientFactory(), fhirAsyncEnabled,
-				fhirClientConfig.dataLogger());
+		return new CreateReport(api, reportMetrics(), reportEventResourceSize(), resourceVersion,
+				fhirClientConfig.fhirClientFactory(), fhirAsyncEnabled, fhirSearchParallelism, fhirStoreFormat(),
+				capabilityStatementCache(), searchResultCache(), fhirClientConfig.dataLogger(),
+				fhirStoreCircuitBreaker(), reportCheckpointStore(), reportStatusGenerator(),
+				parseInterimReportMilestones(), incrementalReportPlanner(), reportTimeSeriesStore(),
+				reportBundleStore());
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public DsfClientRetry dsfClientRetry()
+	{
+		return new DsfClientRetry(reportMetrics(), ConstantsBase.DSF_CLIENT_RETRY_6_TIMES,
+				Duration.ofMillis(ConstantsBase.DSF_CLIENT_RETRY_INTERVAL_5MIN));
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportBundleStore reportBundleStore()
+	{
+		return new ReportBundleStore(api, hrpMultiTargetEnabled, dsfClientRetry(), reportEventResourceSize());
+	}
+
+	private List<Integer> parseInterimReportMilestones()
+	{
+		return Arrays.stream(interimReportMilestones.split(",")).map(String::trim).filter(m -> !m.isEmpty())
+				.map(Integer::valueOf).toList();
 	}
 
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public LogDryRun logDryRun()
 	{
-		return new LogDryRun(api, reportStatusGenerator());
+		return new LogDryRun(api, reportMetrics(), reportStatusGenerator(), reportNotificationQueue());
 	}
 
 	@Bean
@@ -173,51 +512,70 @@ public class ReportConfig
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public StoreReceipt storeReceipt()
 	{
-		return new StoreReceipt(api, reportStatusGenerator());
+		return new StoreReceipt(api, reportMetrics(), reportStatusGenerator(), reportNotificationQueue());
 	}
 
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public StoreSearchBundle storeSearchBundle()
 	{
-		return new StoreSearchBundle(api);
+		return new StoreSearchBundle(api, reportMetrics(), reportEventResourceSize());
 	}
 
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public AggregateReports aggregateReports()
 	{
-		return new AggregateReports(api, hrpIdentifier, reportReceiveOrganizationIdentifier);
+		return new AggregateReports(api, reportMetrics(), reportEventResourceSize(), directoryCache(), hrpIdentifier,
+				reportReceiveOrganizationIdentifier);
 	}
 
 	// reportReceive Process
 
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportReceivePipeline reportReceivePipeline()
+	{
+		return new ReportReceivePipeline(api, reportMetrics(), dsfClientRetry(), receiveDownloadParallelism,
+				receiveInsertBatchSize, Duration.parse(receiveInsertBatchWindow), Duration.parse(receiveInsertTimeout),
+				receiveMemoryMax);
+	}
+
+	@Bean
+	@Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public ReportStatisticsIndex reportStatisticsIndex()
+	{
+		return new ReportStatisticsIndex(dataDirectory == null ? null : Paths.get(dataDirectory),
+				receiveStatisticsIndexEnabled);
+	}
+
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public DownloadReport downloadReport()
 	{
-		return new DownloadReport(api, reportStatusGenerator());
+		return new DownloadReport(api, reportMetrics(), reportStatusGenerator(), reportReceivePipeline());
 	}
 
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public InsertReport insertReport()
 	{
-		return new InsertReport(api, reportStatusGenerator());
+		return new InsertReport(api, reportMetrics(), reportEventResourceSize(), reportStatusGenerator(),
+				reportReceivePipeline(), reportNotificationQueue(), reportStatisticsIndex(), reportTimeSeriesStore());
 	}
 
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public HandleError handleError()
 	{
-		return new HandleError(api);
+		return new HandleError(api, reportMetrics(), reportNotificationQueue());
 	}
 
 	@Bean
 	@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 	public SelectTargetDic selectTargetDic()
 	{
-		return new SelectTargetDic(api, reportReceiveOrganizationIdentifier);
+		return new SelectTargetDic(api, reportMetrics(), directoryCache(), reportReceiveOrganizationIdentifier);
 	}
 
 	@Bean
@@ -0,0 +1,103 @@
+package de.medizininformatik_initiative.process.report.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MetadataMigrationState
+{
+	private static final Logger logger = LoggerFactory.getLogger(MetadataMigrationState.class);
+
+	private static final String FILE_NAME = "metadata-migration.fingerprint";
+
+	private final Path dataDirectory;
+
+	// dataDirectory may be null, the migration state is then not persisted
+	public MetadataMigrationState(Path dataDirectory)
+	{
+		this.dataDirectory = dataDirectory;
+	}
+
+	// the raw bytes of the classpath resources are hashed, the files still contain placeholders like #{version} and
+	// can not be parsed as FHIR resources
+	public static String createFingerprint(String resourcesVersion, List<String> resourceFiles)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(resourcesVersion.getBytes(StandardCharsets.UTF_8));
+
+			for (String file : resourceFiles)
+			{
+				try (InputStream in = MetadataMigrationState.class.getClassLoader().getResourceAsStream(file))
+				{
+					if (in == null)
+						throw new RuntimeException("Resource '" + file + "' not found");
+
+					digest.update(("\n" + file + "\n").getBytes(StandardCharsets.UTF_8));
+					digest.update(in.readAllBytes());
+				}
+			}
+
+			return HexFormat.of().formatHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException exception)
+		{
+			throw new RuntimeException(exception);
+		}
+		catch (IOException exception)
+		{
+			throw new RuntimeException("Could not read resources " + resourceFiles, exception);
+		}
+	}
+
+	public boolean isMigrated(String fingerprint)
+	{
+		if (dataDirectory == null)
+			return false;
+
+		Path file = dataDirectory.resolve(FILE_NAME);
+		if (!Files.isReadable(file))
+			return false;
+
+		try
+		{
+			return fingerprint.equals(Files.readString(file, StandardCharsets.UTF_8).trim());
+		}
+		catch (IOException exception)
+		{
+			logger.warn("Could not read metadata migration fingerprint from {} - {}", file, exception.getMessage());
+			return false;
+		}
+	}
+
+	public void markMigrated(String fingerprint)
+	{
+		if (dataDirectory == null)
+			return;
+
+		Path file = dataDirectory.resolve(FILE_NAME);
+		try
+		{
+			Files.createDirectories(dataDirectory);
+
+			Path temp = Files.createTempFile(dataDirectory, FILE_NAME, ".tmp");
+			Files.writeString(temp, fingerprint, StandardCharsets.UTF_8);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException exception)
+		{
+			logger.warn("Could not write metadata migration fingerprint to {} - {}", file, exception.getMessage());
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package de.medizininformatik_initiative.process.report.store;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import ca.uhn.fhir.context.FhirContext;
+
+public class ReportCheckpointStore implements InitializingBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(ReportCheckpointStore.class);
+
+	private static final String DIRECTORY_NAME = "checkpoints";
+	private static final String FILE_SUFFIX = ".checkpoint";
+	private static final String SEPARATOR = "\t";
+
+	private final Path directory;
+	private final FhirContext fhirContext;
+	private final Duration maxAge;
+
+	// dataDirectory may be null, checkpoints are then not persisted
+	public ReportCheckpointStore(Path dataDirectory, FhirContext fhirContext, Duration maxAge)
+	{
+		this.directory = dataDirectory == null ? null : dataDirectory.resolve(DIRECTORY_NAME);
+		this.fhirContext = fhirContext;
+		this.maxAge = maxAge;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		if (directory == null || !Files.isDirectory(directory))
+			return;
+
+		// checkpoints of runs that were never resumed
+		Instant oldest = Instant.now().minus(maxAge);
+		try (Stream<Path> files = Files.list(directory))
+		{
+			files.filter(f -> f.getFileName().toString().endsWith(FILE_SUFFIX)).filter(f -> isOlderThan(f, oldest))
+					.forEach(this::deleteFile);
+		}
+		catch (IOException exception)
+		{
+			logger.warn("Could not clean up report checkpoints in {} - {}", directory, exception.getMessage());
+		}
+	}
+
+	public Checkpoint open(String taskId, List<String> urls)
+	{
+		if (directory == null)
+			return new Checkpoint(null, Map.of());
+
+		Path file = getFile(taskId, urls);
+		Map<Integer, Bundle.BundleEntryComponent> entries = read(file);
+		if (!entries.isEmpty())
+			logger.info("Resuming report creation for Task with id '{}', {} of {} search requests already completed",
+					taskId, entries.size(), urls.size());
+
+		return new Checkpoint(file, entries);
+	}
+
+	public void delete(String taskId, List<String> urls)
+	{
+		if (directory != null)
+			deleteFile(getFile(taskId, urls));
+	}
+
+	private Path getFile(String taskId, List<String> urls)
+	{
+		String safeTaskId = taskId == null ? "none" : taskId.replaceAll("[^A-Za-z0-9-]", "_");
+		return directory.resolve(safeTaskId + "-" + hash(urls) + FILE_SUFFIX);
+	}
+
+	private String hash(List<String> urls)
+	{
+		try
+		{
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+					.digest(urls.stream().collect(Collectors.joining("\n")).getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException exception)
+		{
+			throw new RuntimeException(exception);
+		}
+	}
+
+	private Map<Integer, Bundle.BundleEntryComponent> read(Path file)
+	{
+		Map<Integer, Bundle.BundleEntryComponent> entries = new HashMap<>();
+		if (!Files.isReadable(file))
+			return entries;
+
+		try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8))
+		{
+			lines.forEach(line ->
+			{
+				String[] parts = line.split(SEPARATOR, 3);
+				if (parts.length != 3)
+					return;
+
+				try
+				{
+					Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent();
+					entry.setResponse(new Bundle.BundleEntryResponseComponent().setStatus(parts[1]));
+					if (!parts[2].isEmpty())
+						entry.setResource((Resource) fhirContext.newJsonParser().parseResource(parts[2]));
+
+					entries.put(Integer.valueOf(parts[0]), entry);
+				}
+				catch (Exception exception)
+				{
+					// last line may be incomplete after a crash
+					logger.debug("Ignoring unreadable report checkpoint line in {} - {}", file, exception.getMessage());
+				}
+			});
+		}
+		catch (IOException exception)
+		{
+			logger.warn("Could not read report checkpoint {} - {}", file, exception.getMessage());
+		}
+
+		return entries;
+	}
+
+	private boolean isOlderThan(Path file, Instant oldest)
+	{
+		try
+		{
+			return Files.getLastModifiedTime(file).compareTo(FileTime.from(oldest)) < 0;
+		}
+		catch (IOException exception)
+		{
+			return false;
+		}
+	}
+
+	private void deleteFile(Path file)
+	{
+		try
+		{
+			Files.deleteIfExists(file);
+		}
+		catch (IOException exception)
+		{
+			logger.warn("Could not delete report checkpoint {} - {}", file, exception.getMessage());
+		}
+	}
+
+	public final class Checkpoint implements Closeable
+	{
+		private final Path file;
+		private final Map<Integer, Bundle.BundleEntryComponent> entries;
+
+		private BufferedWriter writer;
+
+		private Checkpoint(Path file, Map<Integer, Bundle.BundleEntryComponent> entries)
+		{
+			this.file = file;
+			this.entries = entries;
+		}
+
+		public Optional<Bundle.BundleEntryComponent> get(int index)
+		{
+			return Optional.ofNullable(entries.get(index));
+		}
+
+		public void save(int index, Bundle.BundleEntryComponent entry)
+		{
+			if (file == null)
+				return;
+
+			String resource = entry.hasResource()
+					? fhirContext.newJsonParser().encodeResourceToString(entry.getResource())
+					: "";
+
+			try
+			{
+				if (writer == null)
+				{
+					Files.createDirectories(file.getParent());
+					writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+							StandardOpenOption.APPEND);
+				}
+
+				writer.write(index + SEPARATOR + entry.getResponse().getStatus() + SEPARATOR + resource);
+				writer.newLine();
+				writer.flush();
+			}
+			catch (IOException exception)
+			{
+				logger.warn("Could not write report checkpoint {} - {}", file, exception.getMessage());
+			}
+		}
+
+		@Override
+		public void close()
+		{
+			if (writer == null)
+				return;
+
+			try
+			{
+				writer.close();
+			}
+			catch (IOException exception)
+			{
+				logger.warn("Could not close report checkpoint {} - {}", file, exception.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package de.medizininformatik_initiative.process.report.store;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ReportStatisticsIndex
+{
+	private static final Logger logger = LoggerFactory.getLogger(ReportStatisticsIndex.class);
+
+	private static final String DIRECTORY_NAME = "statistics";
+	private static final String FILE_SUFFIX = ".statistics";
+	private static final String SEPARATOR = "\t";
+	private static final Pattern YEAR = Pattern.compile("=eq(20\\d{2})\\b");
+	private static final String YEAR_PLACEHOLDER = "=eq{year}";
+
+	// query is the search request URL with the year replaced by a placeholder, year is null for search requests not
+	// limited to a year
+	private record Row(String query, Integer year, String dic, long total, Instant timestamp)
+	{
+	}
+
+	private final Path directory;
+	private final boolean enabled;
+
+	// the index is only written to the data directory, it is disabled if no data directory is configured
+	public ReportStatisticsIndex(Path dataDirectory, boolean enabled)
+	{
+		this.directory = dataDirectory == null ? null : dataDirectory.resolve(DIRECTORY_NAME);
+		this.enabled = enabled && directory != null;
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	// every received report replaces the file of the sending organization, pending and failed search requests are
+	// not indexed
+	public void update(String dic, Bundle report)
+	{
+		if (!enabled)
+			return;
+
+		List<Row> rows = ReportTotals.of(report, Instant.now()).stream()
+				.map(t -> toRow(t.url(), dic, t.total(), t.timestamp())).toList();
+
+		synchronized (this)
+		{
+			write(dic, rows);
+		}
+
+		logger.debug("Indexed {} search results of report from organization '{}'", rows.size(), dic);
+	}
+
+	public Path getFile(String dic)
+	{
+		return directory == null ? null : directory.resolve(dic.replaceAll("[^A-Za-z0-9.-]", "_") + FILE_SUFFIX);
+	}
+
+	private Row toRow(String url, String dic, long total, Instant timestamp)
+	{
+		Matcher matcher = YEAR.matcher(url);
+		List<String> years = matcher.results().map(m -> m.group(1)).distinct().toList();
+
+		if (years.size() != 1)
+			return new Row(url, null, dic, total, timestamp);
+
+		return new Row(matcher.replaceAll(Matcher.quoteReplacement(YEAR_PLACEHOLDER)), Integer.valueOf(years.get(0)),
+				dic, total, timestamp);
+	}
+
+	private void write(String dic, List<Row> rows)
+	{
+		Path file = getFile(dic);
+		try
+		{
+			Files.createDirectories(directory);
+
+			Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			Files.write(temp,
+					rows.stream()
+							.map(r -> String.join(SEPARATOR, r.dic(), r.year() == null ? "" : r.year().toString(),
+									String.valueOf(r.total()), r.timestamp().toString(), r.query()))
+							.toList(),
+					StandardCharsets.UTF_8);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException exception)
+		{
+			logger.warn("Could not write report statistics {} - {}", file, exception.getMessage());
+		}
+	}
+}
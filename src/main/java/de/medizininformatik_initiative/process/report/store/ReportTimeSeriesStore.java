@@ -0,0 +1,299 @@
+package de.medizininformatik_initiative.process.report.store;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ReportTimeSeriesStore
+{
+	private static final Logger logger = LoggerFactory.getLogger(ReportTimeSeriesStore.class);
+
+	public static final String SERIES_CREATED = "created";
+	public static final String SERIES_RECEIVED = "received";
+
+	private static final String DIRECTORY_NAME = "timeseries";
+	private static final String FILE_SUFFIX = ".timeseries";
+	private static final String SEPARATOR = "\t";
+	private static final String QUERY_LINE = "Q";
+	private static final String RUN_LINE = "R";
+	private static final String TOTAL_SEPARATOR = ",";
+	private static final String DELTA_SEPARATOR = ":";
+	private static final String ABSENT = "-";
+
+	public record Run(Instant timestamp, Map<String, Long> totals)
+	{
+	}
+
+	// query URLs are interned, runs only contain the change of totals since the previous run. Queries missing or
+	// failed in a run are marked absent, a later total is encoded as change from 0. Only the latest totals are kept in
+	// memory, runs are read from the file when queried
+	private static final class Series
+	{
+		final Map<String, Integer> queryIds = new HashMap<>();
+		final Map<Integer, Long> lastTotals = new HashMap<>();
+	}
+
+	private final Path directory;
+	private final boolean enabled;
+
+	private final Map<String, Series> series = new HashMap<>();
+
+	// time series are only written to the data directory, the store is disabled if no data directory is configured
+	public ReportTimeSeriesStore(Path dataDirectory, boolean enabled)
+	{
+		this.directory = dataDirectory == null ? null : dataDirectory.resolve(DIRECTORY_NAME);
+		this.enabled = enabled && directory != null;
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	// seriesName is SERIES_CREATED with the target HRP or SERIES_RECEIVED with the sending DIC as organization
+	public synchronized void append(String seriesName, String organization, Bundle report)
+	{
+		if (!enabled)
+			return;
+
+		Instant timestamp = report.getMeta().hasLastUpdated() ? report.getMeta().getLastUpdated().toInstant()
+				: Instant.now();
+
+		String key = getKey(seriesName, organization);
+		Series current = getSeries(key);
+
+		Map<String, Long> totals = new LinkedHashMap<>();
+		ReportTotals.of(report, timestamp).forEach(t -> totals.put(t.url(), t.total()));
+
+		List<String> lines = new ArrayList<>();
+		List<String> deltas = new ArrayList<>();
+		for (Map.Entry<String, Long> total : totals.entrySet())
+		{
+			Integer id = current.queryIds.get(total.getKey());
+			if (id == null)
+			{
+				id = current.queryIds.size();
+				current.queryIds.put(total.getKey(), id);
+				lines.add(String.join(SEPARATOR, QUERY_LINE, id.toString(), total.getKey()));
+			}
+
+			Long last = current.lastTotals.put(id, total.getValue());
+			if (last == null || !last.equals(total.getValue()))
+				deltas.add(id + DELTA_SEPARATOR + (total.getValue() - (last == null ? 0 : last)));
+		}
+
+		current.queryIds.forEach((url, id) ->
+		{
+			if (!totals.containsKey(url) && current.lastTotals.remove(id) != null)
+				deltas.add(id + DELTA_SEPARATOR + ABSENT);
+		});
+
+		lines.add(String.join(SEPARATOR, RUN_LINE, String.valueOf(timestamp.toEpochMilli()),
+				String.join(TOTAL_SEPARATOR, deltas)));
+		write(key, lines);
+
+		logger.debug("Appended report run with {} changed totals to time series '{}'", deltas.size(), key);
+	}
+
+	// returns all runs with timestamp in [from, to), totals of queries not changed in a run are carried over, queries
+	// missing or failed in a run are not contained
+	public synchronized List<Run> getRuns(String seriesName, String organization, Instant from, Instant to)
+	{
+		List<Run> runs = new ArrayList<>();
+		if (!enabled)
+			return runs;
+
+		Map<Integer, String> queries = new HashMap<>();
+		Map<Integer, Long> totals = new HashMap<>();
+
+		readLines(getFile(getKey(seriesName, organization)), (queryId, url) -> queries.put(queryId, url),
+				(timestamp, deltas) ->
+				{
+					applyDeltas(totals, timestamp, deltas);
+
+					Instant runTimestamp = Instant.ofEpochMilli(Long.parseLong(timestamp));
+					if (runTimestamp.isBefore(to) && !runTimestamp.isBefore(from))
+						runs.add(new Run(runTimestamp, totals.entrySet().stream()
+								.collect(Collectors.toMap(e -> queries.get(e.getKey()), Map.Entry::getValue))));
+				});
+
+		return runs;
+	}
+
+	public NavigableMap<Instant, Long> getTotals(String seriesName, String organization, String url, Instant from,
+			Instant to)
+	{
+		NavigableMap<Instant, Long> totals = new TreeMap<>();
+		getRuns(seriesName, organization, from, to).stream().filter(r -> r.totals().containsKey(url))
+				.forEach(r -> totals.put(r.timestamp(), r.totals().get(url)));
+
+		return totals;
+	}
+
+	// parses the complete run line before changing totals, unreadable lines do not change totals
+	private void applyDeltas(Map<Integer, Long> totals, String timestamp, String deltas)
+	{
+		Long.parseLong(timestamp);
+
+		// null marks a query absent in the run
+		Map<Integer, Long> parsed = new HashMap<>();
+		if (!deltas.isEmpty())
+			for (String delta : deltas.split(TOTAL_SEPARATOR))
+			{
+				String[] d = delta.split(DELTA_SEPARATOR, 2);
+				parsed.put(Integer.valueOf(d[0]), ABSENT.equals(d[1]) ? null : Long.valueOf(d[1]));
+			}
+
+		parsed.forEach((id, d) ->
+		{
+			if (d == null)
+				totals.remove(id);
+			else
+				totals.merge(id, d, Long::sum);
+		});
+	}
+
+	private String getKey(String seriesName, String organization)
+	{
+		return seriesName + "-" + organization.replaceAll("[^A-Za-z0-9.-]", "_");
+	}
+
+	private Series getSeries(String key)
+	{
+		return series.computeIfAbsent(key, this::read);
+	}
+
+	private Path getFile(String key)
+	{
+		return directory.resolve(key + FILE_SUFFIX);
+	}
+
+	private Series read(String key)
+	{
+		Series read = new Series();
+		readLines(getFile(key), (queryId, url) -> read.queryIds.put(url, queryId),
+				(timestamp, deltas) -> applyDeltas(read.lastTotals, timestamp, deltas));
+
+		return read;
+	}
+
+	// a last line without line separator is incomplete after a crash and ignored
+	private void readLines(Path file, BiConsumer<Integer, String> queryLine, BiConsumer<String, String> runLine)
+	{
+		if (!Files.isReadable(file))
+			return;
+
+		boolean complete = endsWithLineSeparator(file);
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+		{
+			String line = reader.readLine();
+			while (line != null)
+			{
+				String next = reader.readLine();
+				if (next == null && !complete)
+				{
+					logger.debug("Ignoring incomplete last report time series line in {}", file);
+					break;
+				}
+
+				String[] parts = line.split(SEPARATOR, 3);
+				try
+				{
+					if (parts.length == 3 && QUERY_LINE.equals(parts[0]))
+						queryLine.accept(Integer.valueOf(parts[1]), parts[2]);
+					else if (parts.length == 3 && RUN_LINE.equals(parts[0]))
+						runLine.accept(parts[1], parts[2]);
+				}
+				catch (RuntimeException exception)
+				{
+					logger.debug("Ignoring unreadable report time series line in {} - {}", file,
+							exception.getMessage());
+				}
+
+				line = next;
+			}
+		}
+		catch (IOException exception)
+		{
+			logger.warn("Could not read report time series {} - {}", file, exception.getMessage());
+		}
+	}
+
+	private boolean endsWithLineSeparator(Path file)
+	{
+		try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ))
+		{
+			if (channel.size() == 0)
+				return true;
+
+			ByteBuffer last = ByteBuffer.allocate(1);
+			channel.position(channel.size() - 1).read(last);
+			return last.get(0) == '\n';
+		}
+		catch (IOException exception)
+		{
+			logger.warn("Could not read report time series {} - {}", file, exception.getMessage());
+			return true;
+		}
+	}
+
+	// appended lines always start on a new line, an incomplete last line of an interrupted write is removed
+	private void write(String key, List<String> lines)
+	{
+		Path file = getFile(key);
+		try
+		{
+			Files.createDirectories(directory);
+
+			if (Files.exists(file) && !endsWithLineSeparator(file))
+				removeIncompleteLine(file);
+
+			Files.write(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		}
+		catch (IOException exception)
+		{
+			logger.warn("Could not write report time series {} - {}", file, exception.getMessage());
+		}
+	}
+
+	private void removeIncompleteLine(Path file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			ByteBuffer last = ByteBuffer.allocate(1);
+			long position = channel.size();
+			while (position > 0)
+			{
+				last.clear();
+				channel.read(last, position - 1);
+				if (last.get(0) == '\n')
+					break;
+
+				position--;
+			}
+
+			logger.debug("Removing incomplete last report time series line in {}", file);
+			channel.truncate(position);
+		}
+	}
+}
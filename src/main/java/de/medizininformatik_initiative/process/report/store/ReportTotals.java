@@ -0,0 +1,39 @@
+package de.medizininformatik_initiative.process.report.store;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hl7.fhir.r4.model.Bundle;
+
+final class ReportTotals
+{
+	private static final String RESPONSE_OK = "200";
+	private static final String SELF_LINK = "self";
+
+	record Total(String url, long total, Instant timestamp)
+	{
+	}
+
+	private ReportTotals()
+	{
+	}
+
+	// pending and failed search requests have no total, timestamp is used for results without lastUpdated
+	static List<Total> of(Bundle report, Instant timestamp)
+	{
+		List<Total> totals = new ArrayList<>();
+		for (Bundle.BundleEntryComponent entry : report.getEntry())
+		{
+			if (!entry.getResponse().hasStatus() || !entry.getResponse().getStatus().startsWith(RESPONSE_OK)
+					|| !(entry.getResource() instanceof Bundle result) || !result.hasTotal()
+					|| result.getLink(SELF_LINK) == null)
+				continue;
+
+			totals.add(new Total(result.getLink(SELF_LINK).getUrl(), result.getTotal(),
+					result.getMeta().hasLastUpdated() ? result.getMeta().getLastUpdated().toInstant() : timestamp));
+		}
+
+		return totals;
+	}
+}
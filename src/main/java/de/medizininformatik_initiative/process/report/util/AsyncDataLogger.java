@@ -0,0 +1,185 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.processes.common.fhir.client.logging.DataLogger;
+
+public class AsyncDataLogger extends DataLogger implements InitializingBean, DisposableBean
+{
+	// same logger as the common DataLogger, existing log level configurations stay valid
+	private static final Logger logger = LoggerFactory.getLogger(DataLogger.class);
+
+	private final boolean enabled;
+	private final FhirContext fhirContext;
+	private final boolean async;
+	private final int queueCapacity;
+	private final int maxSize;
+	private final double sampleRate;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private ThreadPoolExecutor executor;
+
+	public AsyncDataLogger(boolean enabled, FhirContext fhirContext, boolean async, int queueCapacity, int maxSize,
+			double sampleRate)
+	{
+		super(enabled, fhirContext);
+
+		this.enabled = enabled;
+		this.fhirContext = fhirContext;
+		this.async = async;
+		this.queueCapacity = queueCapacity;
+		this.maxSize = maxSize;
+		this.sampleRate = sampleRate;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(fhirContext, "fhirContext");
+
+		if (!enabled || !async)
+			return;
+
+		// resources are dropped instead of blocking the service task thread if the queue is full
+		executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable ->
+				{
+					Thread thread = new Thread(runnable, "report-data-logger");
+					thread.setDaemon(true);
+					return thread;
+				}, (runnable, pool) -> dropped.incrementAndGet());
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (executor != null)
+			executor.shutdown();
+	}
+
+	// resources are only serialized if debug logging is enabled, sampled and dropped resources are skipped before
+	// copying
+	@Override
+	public void logResource(String message, Resource resource)
+	{
+		if (!enabled || resource == null || !isLogEnabled())
+			return;
+
+		if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)
+			return;
+
+		if (executor == null)
+			write(message, resource);
+		else if (executor.getQueue().remainingCapacity() == 0)
+			dropped.incrementAndGet();
+		else
+		{
+			// resources are modified after logging, e.g. when stored
+			Resource copy = resource.copy();
+			executor.execute(() -> write(message, copy));
+		}
+	}
+
+	protected boolean isLogEnabled()
+	{
+		return logger.isDebugEnabled();
+	}
+
+	protected void log(String message, String encoded, boolean truncated)
+	{
+		if (truncated)
+			logger.debug("{} (truncated to {} characters): {}", message, maxSize, encoded);
+		else
+			logger.debug("{}: {}", message, encoded);
+	}
+
+	private void write(String message, Resource resource)
+	{
+		long skipped = dropped.getAndSet(0);
+		if (skipped > 0)
+			logger.debug("{} resources not logged, data logging queue full", skipped);
+
+		// encoding stops at the size limit, large resources are not encoded completely only to be truncated
+		SizeLimitedWriter writer = new SizeLimitedWriter(maxSize);
+		try
+		{
+			fhirContext.newJsonParser().encodeResourceToWriter(resource, writer);
+		}
+		catch (SizeLimitReachedException exception)
+		{
+			log(message, writer.toString(), true);
+			return;
+		}
+		catch (IOException exception)
+		{
+			logger.debug("Unable to encode resource - {}", exception.getMessage());
+			return;
+		}
+
+		log(message, writer.toString(), false);
+	}
+
+	private static final class SizeLimitReachedException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		SizeLimitReachedException()
+		{
+			super("Size limit reached");
+		}
+	}
+
+	private static final class SizeLimitedWriter extends Writer
+	{
+		private final int maxSize;
+		private final StringBuilder encoded = new StringBuilder();
+
+		SizeLimitedWriter(int maxSize)
+		{
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public void write(char[] buffer, int offset, int length) throws IOException
+		{
+			if (maxSize > 0 && encoded.length() + length > maxSize)
+			{
+				encoded.append(buffer, offset, maxSize - encoded.length());
+				throw new SizeLimitReachedException();
+			}
+
+			encoded.append(buffer, offset, length);
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
+
+		@Override
+		public String toString()
+		{
+			return encoded.toString();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.util.Objects;
+
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class CapabilityStatementCache implements InitializingBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(CapabilityStatementCache.class);
+
+	public static final String METADATA = "metadata";
+
+	private static final String SUMMARY = METADATA + "?_summary=true";
+	private static final String SUBSETTED_SYSTEM = "http://terminology.hl7.org/CodeSystem/v3-ObservationValue";
+	private static final String SUBSETTED_CODE = "SUBSETTED";
+
+	private record Summary(String key, CapabilityStatement capabilityStatement)
+	{
+	}
+
+	private final FhirClientFactory fhirClientFactory;
+	private final FhirStoreFormat fhirStoreFormat;
+	private final boolean enabled;
+
+	private final ReportEntryTransformer reportEntryTransformer = new ReportEntryTransformer(false);
+
+	private volatile Summary summary;
+
+	public CapabilityStatementCache(FhirClientFactory fhirClientFactory, FhirStoreFormat fhirStoreFormat,
+			boolean enabled)
+	{
+		this.fhirClientFactory = fhirClientFactory;
+		this.fhirStoreFormat = fhirStoreFormat;
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		if (enabled)
+		{
+			Objects.requireNonNull(fhirClientFactory, "fhirClientFactory");
+			Objects.requireNonNull(fhirStoreFormat, "fhirStoreFormat");
+		}
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	// returns the CapabilityStatement as contained in reports. The full CapabilityStatement is only downloaded if
+	// software name, version or date of the summary differ from the cached CapabilityStatement
+	public CapabilityStatement get()
+	{
+		CapabilityStatement probe = read(SUMMARY);
+		String key = getKey(probe);
+
+		Summary cached = summary;
+		if (key != null && cached != null && key.equals(cached.key()))
+		{
+			logger.debug("CapabilityStatement of FHIR store unchanged, using cached summary");
+			return cached.capabilityStatement().copy();
+		}
+
+		// servers not supporting _summary for metadata return the full CapabilityStatement
+		CapabilityStatement full = isSubsetted(probe) ? read(METADATA) : probe;
+		CapabilityStatement reportCapabilityStatement = reportEntryTransformer.toReportCapabilityStatement(full);
+
+		String fullKey = getKey(full);
+		summary = fullKey == null ? null : new Summary(fullKey, reportCapabilityStatement.copy());
+
+		logger.debug("CapabilityStatement of FHIR store with key '{}' downloaded", fullKey);
+		return reportCapabilityStatement;
+	}
+
+	private CapabilityStatement read(String url)
+	{
+		Resource result = fhirClientFactory.getStandardFhirClient().search(fhirStoreFormat.apply(url));
+		if (result instanceof CapabilityStatement capabilityStatement)
+			return capabilityStatement;
+		else
+			throw new RuntimeException("Request '" + url + "' did not return a CapabilityStatement but "
+					+ (result == null ? "null" : result.getResourceType().name()));
+	}
+
+	private boolean isSubsetted(CapabilityStatement capabilityStatement)
+	{
+		return capabilityStatement.getMeta().getTag(SUBSETTED_SYSTEM, SUBSETTED_CODE) != null;
+	}
+
+	// without date, CapabilityStatement changes can not be detected
+	private String getKey(CapabilityStatement capabilityStatement)
+	{
+		if (!capabilityStatement.hasDate())
+			return null;
+
+		return capabilityStatement.getSoftware().getName() + "|" + capabilityStatement.getSoftware().getVersion() + "|"
+				+ capabilityStatement.getDateElement().getValueAsString();
+	}
+}
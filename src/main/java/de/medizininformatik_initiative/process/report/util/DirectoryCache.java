@@ -0,0 +1,229 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Endpoint;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.OrganizationAffiliation;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import dev.dsf.bpe.v1.ProcessPluginApi;
+
+public class DirectoryCache implements InitializingBean, DisposableBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(DirectoryCache.class);
+
+	private static final String RESULT_HIT = "hit";
+	private static final String RESULT_MISS = "miss";
+
+	// margin for clock differences between the BPE and the local DSF FHIR server
+	private static final Duration LAST_UPDATED_SKEW = Duration.ofSeconds(5);
+
+	private static final List<Class<? extends Resource>> DIRECTORY_RESOURCES = List.of(Organization.class,
+			OrganizationAffiliation.class, Endpoint.class);
+
+	private record CacheEntry(Object value, Instant expires)
+	{
+	}
+
+	private final ProcessPluginApi api;
+	private final ReportMetrics metrics;
+	private final Duration ttl;
+	private final int maxEntries;
+	private final Duration invalidationCheckInterval;
+
+	private final Map<String, CacheEntry> entries;
+
+	private volatile Instant lastInvalidationCheck = Instant.now();
+
+	private ScheduledExecutorService executor;
+
+	public DirectoryCache(ProcessPluginApi api, ReportMetrics metrics, Duration ttl, int maxEntries,
+			Duration invalidationCheckInterval)
+	{
+		this.api = api;
+		this.metrics = metrics;
+		this.ttl = ttl;
+		this.maxEntries = maxEntries;
+		this.invalidationCheckInterval = invalidationCheckInterval;
+
+		this.entries = new LinkedHashMap<>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest)
+			{
+				return size() > DirectoryCache.this.maxEntries;
+			}
+		};
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception
+	{
+		Objects.requireNonNull(api, "api");
+		Objects.requireNonNull(metrics, "metrics");
+		Objects.requireNonNull(ttl, "ttl");
+		Objects.requireNonNull(invalidationCheckInterval, "invalidationCheckInterval");
+
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("maxEntries < 1");
+
+		if (ttl.isZero() || ttl.isNegative() || invalidationCheckInterval.isZero()
+				|| invalidationCheckInterval.isNegative())
+		{
+			logger.debug("Background check for Organization or Endpoint changes disabled");
+			return;
+		}
+
+		// lookups do not wait for the change searches on the local DSF FHIR server
+		executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "report-directory-cache-invalidation");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::checkInvalidation, invalidationCheckInterval.toMillis(),
+				invalidationCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	public List<Organization> getOrganizations(Identifier parentIdentifier, Coding role)
+	{
+		List<Organization> organizations = get("organizations|" + toKey(parentIdentifier) + "|" + toKey(role),
+				() -> api.getOrganizationProvider().getOrganizations(parentIdentifier, role));
+
+		// cached resources are shared, callers get their own copies
+		return organizations.stream().map(Organization::copy).toList();
+	}
+
+	public Optional<Endpoint> getEndpoint(Identifier parentIdentifier, Identifier organizationIdentifier, Coding role)
+	{
+		Optional<Endpoint> endpoint = get(
+				"endpoint|" + toKey(parentIdentifier) + "|" + toKey(organizationIdentifier) + "|" + toKey(role),
+				() -> api.getEndpointProvider().getEndpoint(parentIdentifier, organizationIdentifier, role));
+
+		return endpoint.map(Endpoint::copy);
+	}
+
+	public void invalidate()
+	{
+		synchronized (entries)
+		{
+			entries.clear();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T get(String key, Supplier<T> loader)
+	{
+		if (ttl.isZero() || ttl.isNegative())
+			return loader.get();
+
+		Instant now = Instant.now();
+		synchronized (entries)
+		{
+			CacheEntry entry = entries.get(key);
+			if (entry != null && now.isBefore(entry.expires()))
+			{
+				metrics.increment(ReportMetrics.DIRECTORY_CACHE_REQUESTS, ReportMetrics.TAG_RESULT, RESULT_HIT);
+				return (T) entry.value();
+			}
+		}
+
+		metrics.increment(ReportMetrics.DIRECTORY_CACHE_REQUESTS, ReportMetrics.TAG_RESULT, RESULT_MISS);
+
+		// loaded outside the lock, concurrent misses for the same key may load twice
+		T value = loader.get();
+
+		// empty results are not cached, a newly registered organization is found on the next lookup
+		if (!isEmpty(value))
+		{
+			synchronized (entries)
+			{
+				entries.put(key, new CacheEntry(value, now.plus(ttl)));
+			}
+		}
+
+		return value;
+	}
+
+	private boolean isEmpty(Object value)
+	{
+		return value == null || (value instanceof List<?> list && list.isEmpty())
+				|| (value instanceof Optional<?> optional && optional.isEmpty());
+	}
+
+	public void checkInvalidation()
+	{
+		Instant lastCheck = lastInvalidationCheck;
+
+		try
+		{
+			Instant checkStart = Instant.now();
+			String since = "gt" + DateTimeFormatter.ISO_INSTANT
+					.format(lastCheck.minus(LAST_UPDATED_SKEW).truncatedTo(ChronoUnit.SECONDS));
+
+			boolean changed = DIRECTORY_RESOURCES.stream().anyMatch(type -> hasChanges(type, since));
+			if (changed)
+			{
+				logger.debug("Organization or Endpoint resources changed since {}, clearing directory cache",
+						lastCheck);
+				invalidate();
+			}
+
+			lastInvalidationCheck = checkStart;
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Could not check for Organization or Endpoint changes, clearing directory cache - {}",
+					exception.getMessage());
+			invalidate();
+		}
+	}
+
+	private boolean hasChanges(Class<? extends Resource> type, String since)
+	{
+		Bundle result = api.getFhirWebserviceClientProvider().getLocalWebserviceClient().searchWithStrictHandling(type,
+				Map.of("_lastUpdated", List.of(since), "_summary", List.of("count")));
+
+		return result.getTotal() > 0;
+	}
+
+	private String toKey(Identifier identifier)
+	{
+		return identifier == null ? "" : identifier.getSystem() + "|" + identifier.getValue();
+	}
+
+	private String toKey(Coding coding)
+	{
+		return coding == null ? "" : coding.getSystem() + "|" + coding.getCode();
+	}
+}
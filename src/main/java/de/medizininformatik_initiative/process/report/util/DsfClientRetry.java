@@ -0,0 +1,101 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+// retries the same failures as withRetry of the DSF webservice client, status 502, 503, 504 and failed connections,
+// but every retry is counted in the metrics
+public class DsfClientRetry implements InitializingBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(DsfClientRetry.class);
+
+	public static final String OPERATION_STORE_REPORT = "store-report";
+	public static final String OPERATION_INSERT_REPORT = "insert-report";
+
+	private static final Set<Integer> RETRY_STATUS = Set.of(Response.Status.BAD_GATEWAY.getStatusCode(),
+			Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), Response.Status.GATEWAY_TIMEOUT.getStatusCode());
+
+	private final ReportMetrics metrics;
+	private final int times;
+	private final Duration interval;
+
+	public DsfClientRetry(ReportMetrics metrics, int times, Duration interval)
+	{
+		this.metrics = metrics;
+		this.times = times;
+		this.interval = interval;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(metrics, "metrics");
+		Objects.requireNonNull(interval, "interval");
+
+		if (times < 0)
+			throw new IllegalArgumentException("times < 0");
+	}
+
+	public <T> T execute(String operation, Supplier<T> request)
+	{
+		for (int retry = 1;; retry++)
+		{
+			try
+			{
+				return request.get();
+			}
+			catch (RuntimeException exception)
+			{
+				if (retry > times || !shouldRetry(exception))
+					throw exception;
+
+				metrics.increment(ReportMetrics.CLIENT_RETRIES, ReportMetrics.TAG_OPERATION, operation);
+				logger.warn("Request {} failed, retry {} of {} in {} - {}", operation, retry, times, interval,
+						exception.getMessage());
+
+				try
+				{
+					Thread.sleep(interval.toMillis());
+				}
+				catch (InterruptedException interrupted)
+				{
+					Thread.currentThread().interrupt();
+					throw exception;
+				}
+			}
+		}
+	}
+
+	private boolean shouldRetry(RuntimeException exception)
+	{
+		// other server errors like 500 are not expected to go away by sending the same request again
+		if (exception instanceof WebApplicationException webApplicationException)
+			return RETRY_STATUS.contains(webApplicationException.getResponse().getStatus());
+
+		if (exception instanceof ProcessingException)
+		{
+			for (Throwable cause = exception; cause != null; cause = cause.getCause())
+			{
+				if (cause instanceof ConnectTimeoutException || cause instanceof ConnectException
+						|| cause instanceof UnknownHostException)
+					return true;
+			}
+		}
+
+		return false;
+	}
+}
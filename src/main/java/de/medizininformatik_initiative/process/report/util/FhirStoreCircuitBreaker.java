@@ -0,0 +1,239 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class FhirStoreCircuitBreaker implements InitializingBean, DisposableBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(FhirStoreCircuitBreaker.class);
+
+	// the summary of the CapabilityStatement is enough to see if the FHIR store responds
+	private static final String METADATA_SUMMARY = CapabilityStatementCache.METADATA + "?_summary=true";
+
+	// weight of the latest probe in the smoothed probe latency
+	private static final double LATENCY_SMOOTHING = 0.3;
+
+	public enum State
+	{
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final FhirClientFactory fhirClientFactory;
+	private final ReportMetrics metrics;
+	private final int failureThreshold;
+	private final Duration openDuration;
+	private final Duration probeInterval;
+	private final Duration latencyThreshold;
+	private final String latencySearch;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private Instant openUntil = Instant.MIN;
+	private boolean halfOpenTrialRunning;
+	private volatile Duration probeLatency;
+
+	private ScheduledExecutorService executor;
+
+	public FhirStoreCircuitBreaker(FhirClientFactory fhirClientFactory, ReportMetrics metrics, int failureThreshold,
+			Duration openDuration, Duration probeInterval, Duration latencyThreshold, String latencySearch)
+	{
+		this.fhirClientFactory = fhirClientFactory;
+		this.metrics = metrics;
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration;
+		this.probeInterval = probeInterval;
+		this.latencyThreshold = latencyThreshold;
+		this.latencySearch = latencySearch;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(fhirClientFactory, "fhirClientFactory");
+		Objects.requireNonNull(metrics, "metrics");
+		Objects.requireNonNull(openDuration, "openDuration");
+		Objects.requireNonNull(probeInterval, "probeInterval");
+		Objects.requireNonNull(latencyThreshold, "latencyThreshold");
+
+		if (probeInterval.isZero() || probeInterval.isNegative() || fhirClientFactory.getFhirBaseUrl() == null)
+		{
+			logger.debug("Background health probe of FHIR store disabled");
+			return;
+		}
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "report-fhir-store-probe");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::probe, 0, probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	public boolean isEnabled()
+	{
+		return failureThreshold > 0;
+	}
+
+	public synchronized State getState()
+	{
+		return state;
+	}
+
+	// in half-open state only one trial request is sent, concurrent requests wait for its result and are let through
+	// if the trial succeeded
+	public synchronized boolean tryAcquire()
+	{
+		if (!isEnabled())
+			return true;
+
+		while (State.HALF_OPEN.equals(state) && halfOpenTrialRunning)
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		switch (state)
+		{
+			case CLOSED:
+				return true;
+
+			case OPEN:
+				if (Instant.now().isBefore(openUntil))
+					return false;
+
+				transition(State.HALF_OPEN);
+				halfOpenTrialRunning = true;
+				return true;
+
+			case HALF_OPEN:
+			default:
+				halfOpenTrialRunning = true;
+				return true;
+		}
+	}
+
+	public synchronized void recordSuccess()
+	{
+		consecutiveFailures = 0;
+		halfOpenTrialRunning = false;
+
+		if (state != State.CLOSED)
+			transition(State.CLOSED);
+
+		notifyAll();
+	}
+
+	public synchronized void recordFailure()
+	{
+		if (!isEnabled())
+			return;
+
+		consecutiveFailures++;
+		halfOpenTrialRunning = false;
+
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold)
+		{
+			openUntil = Instant.now().plus(openDuration);
+
+			if (state != State.OPEN)
+				transition(State.OPEN);
+		}
+
+		notifyAll();
+	}
+
+	public synchronized boolean isAvailable()
+	{
+		return state != State.OPEN || !Instant.now().isBefore(openUntil);
+	}
+
+	// busy if the smoothed latency of the probe search exceeds the threshold, never busy without probe samples
+	public boolean isBusy()
+	{
+		Duration latency = probeLatency;
+		return isLatencyProbeEnabled() && latency != null && latency.compareTo(latencyThreshold) > 0;
+	}
+
+	private boolean isLatencyProbeEnabled()
+	{
+		return latencyThreshold.toMillis() > 0 && latencySearch != null && !latencySearch.isBlank();
+	}
+
+	public Duration getProbeLatency()
+	{
+		return probeLatency;
+	}
+
+	public void probe()
+	{
+		try
+		{
+			fhirClientFactory.getStandardFhirClient().search(METADATA_SUMMARY);
+
+			// the metadata endpoint is served without touching the database, a real search shows the load
+			if (isLatencyProbeEnabled())
+			{
+				long start = System.nanoTime();
+				fhirClientFactory.getStandardFhirClient().search(latencySearch);
+				recordProbeLatency(Duration.ofNanos(System.nanoTime() - start));
+			}
+
+			recordSuccess();
+		}
+		catch (Exception exception)
+		{
+			logger.debug("Health probe of FHIR store at '{}' failed - {}", fhirClientFactory.getFhirBaseUrl(),
+					exception.getMessage());
+			recordFailure();
+		}
+	}
+
+	private void recordProbeLatency(Duration latency)
+	{
+		Duration previous = probeLatency;
+		probeLatency = previous == null ? latency
+				: Duration.ofNanos(
+						(long) (LATENCY_SMOOTHING * latency.toNanos() + (1 - LATENCY_SMOOTHING) * previous.toNanos()));
+	}
+
+	private void transition(State newState)
+	{
+		if (State.OPEN.equals(newState))
+			logger.warn("FHIR store at '{}' unavailable after {} consecutive failures, failing requests fast until {}",
+					fhirClientFactory.getFhirBaseUrl(), consecutiveFailures, openUntil);
+		else
+			logger.info("FHIR store at '{}' circuit {}", fhirClientFactory.getFhirBaseUrl(),
+					newState.name().toLowerCase().replace('_', '-'));
+
+		state = newState;
+		metrics.increment(ReportMetrics.STORE_CIRCUIT_TRANSITIONS, ReportMetrics.TAG_STATE,
+				newState.name().toLowerCase());
+	}
+}
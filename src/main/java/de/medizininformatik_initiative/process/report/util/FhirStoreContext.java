@@ -0,0 +1,44 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IRestfulClientFactory;
+
+// the FhirClientFactory of mii-processes-common replaces the restful client factory of the given context with its own
+// TLS and proxy aware factory and builds the FHIR server clients from it. Passing the FhirContext of the DSF BPE would
+// replace the factory of a context shared with other process plugins, this context takes over the settings of the
+// DSF BPE context and sizes the connection pool of every restful client factory set on it before clients are built
+public class FhirStoreContext extends FhirContext
+{
+	private final int poolMax;
+
+	public FhirStoreContext(FhirContext dsfFhirContext, int poolMax)
+	{
+		super(dsfFhirContext.getVersion().getVersion());
+		this.poolMax = poolMax;
+
+		setParserOptions(dsfFhirContext.getParserOptions());
+		setPerformanceOptions(dsfFhirContext.getPerformanceOptions());
+		setNarrativeGenerator(dsfFhirContext.getNarrativeGenerator());
+		setValidationSupport(dsfFhirContext.getValidationSupport());
+		setLocalizer(dsfFhirContext.getLocalizer());
+		setAddProfileTagWhenEncoding(dsfFhirContext.getAddProfileTagWhenEncoding());
+
+		applyPoolMax(getRestfulClientFactory());
+	}
+
+	@Override
+	public void setRestfulClientFactory(IRestfulClientFactory restfulClientFactory)
+	{
+		applyPoolMax(restfulClientFactory);
+		super.setRestfulClientFactory(restfulClientFactory);
+	}
+
+	private void applyPoolMax(IRestfulClientFactory restfulClientFactory)
+	{
+		if (restfulClientFactory == null)
+			return;
+
+		restfulClientFactory.setPoolMaxPerRoute(poolMax);
+		restfulClientFactory.setPoolMaxTotal(poolMax);
+	}
+}
@@ -0,0 +1,119 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class FhirStoreFormat implements InitializingBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(FhirStoreFormat.class);
+
+	public static final String FORMAT_AUTO = "auto";
+	public static final String FORMAT_JSON = "json";
+	public static final String FORMAT_XML = "xml";
+	public static final String FORMAT_NONE = "none";
+
+	private static final List<String> FORMATS = List.of(FORMAT_AUTO, FORMAT_JSON, FORMAT_XML, FORMAT_NONE);
+	private static final String METADATA = "metadata";
+	private static final String FORMAT_PARAMETER = "_format";
+	private static final Duration NEGOTIATION_RETRY_INTERVAL = Duration.ofMinutes(1);
+
+	private final FhirClientFactory fhirClientFactory;
+	private final String configuredFormat;
+
+	private volatile String format;
+	private Instant nextNegotiation = Instant.MIN;
+
+	public FhirStoreFormat(FhirClientFactory fhirClientFactory, String configuredFormat)
+	{
+		this.fhirClientFactory = fhirClientFactory;
+		this.configuredFormat = configuredFormat;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(fhirClientFactory, "fhirClientFactory");
+		Objects.requireNonNull(configuredFormat, "configuredFormat");
+
+		if (!FORMATS.contains(configuredFormat))
+			throw new IllegalArgumentException(
+					"FHIR store format '" + configuredFormat + "' not one of " + String.join(", ", FORMATS));
+	}
+
+	// adds the _format parameter, search request URLs from the HRP that already specify a format are not changed
+	public String apply(String url)
+	{
+		String wireFormat = getFormat();
+		if (FORMAT_NONE.equals(wireFormat) || url.contains(FORMAT_PARAMETER + "="))
+			return url;
+
+		return url + (url.indexOf('?') < 0 ? "?" : "&") + FORMAT_PARAMETER + "=" + wireFormat;
+	}
+
+	public String getFormat()
+	{
+		if (!FORMAT_AUTO.equals(configuredFormat))
+			return configuredFormat;
+
+		String negotiated = format;
+		return negotiated == null ? negotiateOnce() : negotiated;
+	}
+
+	private synchronized String negotiateOnce()
+	{
+		if (format != null)
+			return format;
+
+		if (Instant.now().isBefore(nextNegotiation))
+			return FORMAT_NONE;
+
+		String negotiated = negotiate();
+		if (negotiated == null)
+		{
+			nextNegotiation = Instant.now().plus(NEGOTIATION_RETRY_INTERVAL);
+			return FORMAT_NONE;
+		}
+
+		format = negotiated;
+		return negotiated;
+	}
+
+	// JSON is smaller on the wire and cheaper to parse than XML, XML is only requested if the FHIR store does not
+	// support JSON. Without a readable CapabilityStatement the FHIR store default is used and negotiated again later
+	private String negotiate()
+	{
+		try
+		{
+			Resource result = fhirClientFactory.getStandardFhirClient().search(METADATA);
+			if (!(result instanceof CapabilityStatement capabilityStatement))
+				return null;
+
+			List<String> formats = capabilityStatement.getFormat().stream().map(CodeType::getValue)
+					.filter(Objects::nonNull).toList();
+
+			String negotiated = formats.stream().anyMatch(f -> f.contains(FORMAT_JSON)) ? FORMAT_JSON
+					: formats.stream().anyMatch(f -> f.contains(FORMAT_XML)) ? FORMAT_XML : FORMAT_NONE;
+
+			logger.info("FHIR store at '{}' supports formats {}, requesting format '{}'",
+					fhirClientFactory.getFhirBaseUrl(), formats, negotiated);
+			return negotiated;
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Could not negotiate format with FHIR store at '{}', using FHIR store default - {}",
+					fhirClientFactory.getFhirBaseUrl(), exception.getMessage());
+			return null;
+		}
+	}
+}
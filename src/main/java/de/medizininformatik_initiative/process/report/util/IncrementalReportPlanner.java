@@ -0,0 +1,164 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class IncrementalReportPlanner implements InitializingBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(IncrementalReportPlanner.class);
+
+	private static final String RESPONSE_OK = "200";
+	private static final String METADATA = "metadata";
+	private static final String RESULT_REUSED = "reused";
+	private static final String RESULT_REQUERIED = "requeried";
+
+	// resources written while the previous search request was running may not have been counted
+	private static final Duration LAST_UPDATED_SKEW = Duration.ofMinutes(1);
+
+	private record PreviousEntry(int index, String resource, Bundle result, Instant searched)
+	{
+	}
+
+	private final FhirClientFactory fhirClientFactory;
+	private final FhirStoreFormat fhirStoreFormat;
+	private final ReportMetrics metrics;
+	private final boolean enabled;
+	private final Duration maxEntryAge;
+
+	public IncrementalReportPlanner(FhirClientFactory fhirClientFactory, FhirStoreFormat fhirStoreFormat,
+			ReportMetrics metrics, boolean enabled, Duration maxEntryAge)
+	{
+		this.fhirClientFactory = fhirClientFactory;
+		this.fhirStoreFormat = fhirStoreFormat;
+		this.metrics = metrics;
+		this.enabled = enabled;
+		this.maxEntryAge = maxEntryAge;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(fhirClientFactory, "fhirClientFactory");
+		Objects.requireNonNull(fhirStoreFormat, "fhirStoreFormat");
+		Objects.requireNonNull(metrics, "metrics");
+		Objects.requireNonNull(maxEntryAge, "maxEntryAge");
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	// returns the entries of the previous report that can be copied forward by index of the search request, an entry
+	// is only reused if no resource of its type changed since it was searched and it is younger than maxEntryAge
+	public Map<Integer, Bundle.BundleEntryComponent> plan(Bundle searchBundle, Bundle previousReport)
+	{
+		if (!enabled || previousReport == null)
+			return Map.of();
+
+		Map<String, Bundle> previousResults = previousReport.getEntry().stream()
+				.filter(e -> e.hasResponse() && RESPONSE_OK.equals(e.getResponse().getStatus()))
+				.filter(e -> e.getResource() instanceof Bundle b && b.getLink("self") != null
+						&& b.getMeta().getLastUpdated() != null)
+				.map(e -> (Bundle) e.getResource())
+				.collect(Collectors.toMap(b -> b.getLink("self").getUrl(), Function.identity(), (a, b) -> a));
+
+		Instant oldest = Instant.now().minus(maxEntryAge);
+		Map<Integer, PreviousEntry> candidates = new HashMap<>();
+		for (int i = 0; i < searchBundle.getEntry().size(); i++)
+		{
+			Bundle.BundleEntryComponent entry = searchBundle.getEntry().get(i);
+			if (!entry.hasRequest() || !entry.getRequest().hasUrl())
+				continue;
+
+			String url = entry.getRequest().getUrl();
+			Bundle previous = previousResults.get(url);
+			if (previous == null || !isIncrementable(url))
+				continue;
+
+			Instant searched = previous.getMeta().getLastUpdated().toInstant();
+			if (searched.isAfter(oldest))
+				candidates.put(i, new PreviousEntry(i, getSearchResource(url), previous, searched));
+		}
+
+		Map<String, Instant> changedSince = candidates.values().stream().collect(
+				Collectors.toMap(PreviousEntry::resource, PreviousEntry::searched, (a, b) -> a.isBefore(b) ? a : b));
+		Map<String, Boolean> changed = changedSince.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, e -> hasChanged(e.getKey(), e.getValue())));
+
+		Map<Integer, Bundle.BundleEntryComponent> reused = candidates.values().stream()
+				.filter(c -> !changed.get(c.resource()))
+				.collect(Collectors.toMap(PreviousEntry::index,
+						c -> new Bundle.BundleEntryComponent().setResource(c.result().copy())
+								.setResponse(new Bundle.BundleEntryResponseComponent().setStatus(RESPONSE_OK))));
+
+		logger.info("Incremental report: reusing {} of {} search results, changed resource types {}", reused.size(),
+				searchBundle.getEntry().size(),
+				changed.entrySet().stream().filter(Map.Entry::getValue).map(Map.Entry::getKey).sorted().toList());
+
+		metrics.increment(ReportMetrics.INCREMENTAL_ENTRIES, reused.size(), ReportMetrics.TAG_RESULT, RESULT_REUSED);
+		metrics.increment(ReportMetrics.INCREMENTAL_ENTRIES, searchBundle.getEntry().size() - reused.size(),
+				ReportMetrics.TAG_RESULT, RESULT_REQUERIED);
+
+		return reused;
+	}
+
+	// _lastUpdated only covers the searched resource type, chained and reverse chained parameters may depend on
+	// other resources and are always re-executed
+	private boolean isIncrementable(String url)
+	{
+		int queryStart = url.indexOf('?');
+		if (queryStart < 0)
+			return !METADATA.equals(url) && !url.contains("/");
+
+		String resource = url.substring(0, queryStart);
+		String query = url.substring(queryStart + 1);
+
+		return !METADATA.equals(resource) && !resource.contains("/") && !query.contains("_has")
+				&& !query.contains("_include") && !query.contains("_revinclude")
+				&& Arrays.stream(query.split("&")).map(p -> p.split("=", 2)[0]).noneMatch(p -> p.contains("."));
+	}
+
+	private String getSearchResource(String url)
+	{
+		int queryStart = url.indexOf('?');
+		return queryStart < 0 ? url : url.substring(0, queryStart);
+	}
+
+	private boolean hasChanged(String resource, Instant since)
+	{
+		String url = fhirStoreFormat.apply(resource + "?_lastUpdated=gt"
+				+ DateTimeFormatter.ISO_INSTANT.format(since.minus(LAST_UPDATED_SKEW)) + "&_summary=count");
+
+		try
+		{
+			Resource result = fhirClientFactory.getStandardFhirClient().search(url);
+			boolean changed = !(result instanceof Bundle bundle) || !bundle.hasTotal() || bundle.getTotal() > 0;
+
+			logger.debug("Incremental report probe '{}' - {}", url, changed ? "changed" : "unchanged");
+			return changed;
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Incremental report probe '{}' failed, re-executing search requests for {} - {}", url, resource,
+					exception.getMessage());
+			return true;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.hl7.fhir.r4.model.Bundle;
+
+// receives the entries of completed search requests, interimReport is called with the interim report entries once for
+// every milestone in percent of completed search requests, several milestones crossed by one completed search request
+// only create one interim report. No interim report is created once all search requests completed
+public class InterimReportProgress implements BiConsumer<Integer, Bundle>
+{
+	private final Bundle searchBundle;
+	private final ReportEntryTransformer reportEntryTransformer;
+	private final ReportStatusGenerator statusGenerator;
+	private final Consumer<Bundle> interimReport;
+	private final int requests;
+	private final Iterator<Integer> milestones;
+
+	private Integer nextMilestone;
+
+	public InterimReportProgress(List<Integer> milestones, Bundle searchBundle,
+			ReportEntryTransformer reportEntryTransformer, ReportStatusGenerator statusGenerator,
+			Consumer<Bundle> interimReport)
+	{
+		this.searchBundle = searchBundle;
+		this.reportEntryTransformer = reportEntryTransformer;
+		this.statusGenerator = statusGenerator;
+		this.interimReport = interimReport;
+		this.requests = searchBundle.getEntry().size();
+		this.milestones = milestones.stream().filter(m -> m > 0 && m < 100).sorted().distinct().iterator();
+
+		nextMilestone = this.milestones.hasNext() ? this.milestones.next() : null;
+	}
+
+	@Override
+	public void accept(Integer completed, Bundle reportEntries)
+	{
+		if (nextMilestone == null || completed >= requests || completed * 100 < nextMilestone * requests)
+			return;
+
+		while (nextMilestone != null && completed * 100 >= nextMilestone * requests)
+			nextMilestone = milestones.hasNext() ? milestones.next() : null;
+
+		interimReport.accept(createInterimReportEntries(reportEntries));
+	}
+
+	// entries of completed search requests are only referenced, the interim report is stored before further entries
+	// are added. Search requests not completed get an entry with status pending and without total
+	private Bundle createInterimReportEntries(Bundle reportEntries)
+	{
+		Bundle interimReportEntries = new Bundle().setType(reportEntries.getType());
+		interimReportEntries.getEntry().addAll(reportEntries.getEntry());
+		for (int i = reportEntries.getEntry().size(); i < requests; i++)
+			interimReportEntries.addEntry(
+					reportEntryTransformer.transformEntry(searchBundle.getEntry().get(i).getRequest().getUrl(),
+							new Bundle.BundleEntryComponent().setResponse(statusGenerator.createPendingResponse())));
+
+		return interimReportEntries;
+	}
+}
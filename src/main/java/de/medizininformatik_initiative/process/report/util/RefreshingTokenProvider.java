@@ -0,0 +1,240 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.processes.common.fhir.client.token.TokenProvider;
+
+public class RefreshingTokenProvider implements TokenProvider, InitializingBean, DisposableBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(RefreshingTokenProvider.class);
+
+	private static final Pattern EXPIRES_AT = Pattern.compile("\"exp\"\\s*:\\s*(\\d+)");
+	private static final Duration EXPIRY_SKEW = Duration.ofSeconds(10);
+	private static final Duration DEFAULT_RETRY_INTERVAL = Duration.ofSeconds(30);
+
+	private record Token(String value, Instant receivedAt, Instant expiresAt)
+	{
+		boolean isValid(Instant now)
+		{
+			return now.isBefore(expiresAt.minus(EXPIRY_SKEW));
+		}
+	}
+
+	private final Supplier<TokenProvider> tokenProviderFactory;
+	private final double refreshFraction;
+	private final Duration retryInterval;
+
+	private final Object lock = new Object();
+	private CompletableFuture<Token> refreshInFlight;
+	private ScheduledFuture<?> scheduledRefresh;
+
+	private volatile Token token;
+	private volatile TokenProvider opaqueTokenProvider;
+
+	private ScheduledExecutorService executor;
+
+	// tokenProviderFactory has to return a provider without cached token, every call requests a new token
+	public RefreshingTokenProvider(Supplier<TokenProvider> tokenProviderFactory, double refreshFraction)
+	{
+		this(tokenProviderFactory, refreshFraction, DEFAULT_RETRY_INTERVAL);
+	}
+
+	public RefreshingTokenProvider(Supplier<TokenProvider> tokenProviderFactory, double refreshFraction,
+			Duration retryInterval)
+	{
+		this.tokenProviderFactory = tokenProviderFactory;
+		this.refreshFraction = refreshFraction;
+		this.retryInterval = retryInterval;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(tokenProviderFactory, "tokenProviderFactory");
+		Objects.requireNonNull(retryInterval, "retryInterval");
+
+		if (refreshFraction <= 0 || refreshFraction >= 1)
+			throw new IllegalArgumentException("refreshFraction not in (0, 1)");
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "report-token-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	@Override
+	public String getToken()
+	{
+		// tokens without readable expiry are left to the expiry handling of the wrapped provider
+		TokenProvider opaque = opaqueTokenProvider;
+		if (opaque != null)
+			return opaque.getToken();
+
+		Token current = token;
+		if (current != null && current.isValid(Instant.now()))
+			return current.value();
+
+		return refresh().value();
+	}
+
+	@Override
+	public boolean isConfigured()
+	{
+		return tokenProviderFactory.get().isConfigured();
+	}
+
+	// concurrent callers share one request to the OIDC provider
+	private Token refresh()
+	{
+		CompletableFuture<Token> future;
+		boolean owner = false;
+
+		synchronized (lock)
+		{
+			if (refreshInFlight == null)
+			{
+				refreshInFlight = new CompletableFuture<>();
+				owner = true;
+			}
+
+			future = refreshInFlight;
+		}
+
+		if (owner)
+		{
+			try
+			{
+				future.complete(requestToken());
+			}
+			catch (RuntimeException exception)
+			{
+				future.completeExceptionally(exception);
+			}
+			finally
+			{
+				synchronized (lock)
+				{
+					refreshInFlight = null;
+				}
+			}
+		}
+
+		try
+		{
+			return future.join();
+		}
+		catch (CompletionException exception)
+		{
+			if (exception.getCause() instanceof RuntimeException runtimeException)
+				throw runtimeException;
+			else
+				throw exception;
+		}
+	}
+
+	private Token requestToken()
+	{
+		TokenProvider tokenProvider = tokenProviderFactory.get();
+		String value = tokenProvider.getToken();
+		Instant expiresAt = readExpiresAt(value);
+
+		if (expiresAt == null)
+		{
+			logger.info("OAuth2 access token without readable expiry, proactive token refresh disabled");
+			opaqueTokenProvider = tokenProvider;
+			return new Token(value, Instant.now(), Instant.MAX);
+		}
+
+		Token refreshed = new Token(value, Instant.now(), expiresAt);
+		token = refreshed;
+		scheduleRefresh(refreshed);
+
+		return refreshed;
+	}
+
+	private void scheduleRefresh(Token refreshed)
+	{
+		Duration lifetime = Duration.between(refreshed.receivedAt(), refreshed.expiresAt());
+		Duration delay = Duration.ofMillis((long) (lifetime.toMillis() * refreshFraction));
+
+		logger.debug("OAuth2 access token expires at {}, refreshing in {}", refreshed.expiresAt(), delay);
+		schedule(delay);
+	}
+
+	// foreground refreshes replace the scheduled background refresh instead of adding another one
+	private void schedule(Duration delay)
+	{
+		synchronized (lock)
+		{
+			if (scheduledRefresh != null)
+				scheduledRefresh.cancel(false);
+
+			if (executor != null && !executor.isShutdown())
+				scheduledRefresh = executor.schedule(this::refreshInBackground, Math.max(0, delay.toMillis()),
+						TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void refreshInBackground()
+	{
+		try
+		{
+			refresh();
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Could not refresh OAuth2 access token, retrying in {} - {}", retryInterval,
+					exception.getMessage());
+
+			Token current = token;
+			if (current != null && current.isValid(Instant.now().plus(retryInterval)))
+				schedule(retryInterval);
+		}
+	}
+
+	private Instant readExpiresAt(String value)
+	{
+		String[] parts = value == null ? new String[0] : value.split("\\.");
+		if (parts.length != 3)
+			return null;
+
+		try
+		{
+			String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+			Matcher matcher = EXPIRES_AT.matcher(payload);
+
+			return matcher.find() ? Instant.ofEpochSecond(Long.parseLong(matcher.group(1))) : null;
+		}
+		catch (IllegalArgumentException exception)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ReportBundleMerger
+{
+	private static final Logger logger = LoggerFactory.getLogger(ReportBundleMerger.class);
+
+	public void mergeBundles(Bundle base, Bundle nextBundle)
+	{
+		if (nextBundle != null && base != null && !nextBundle.getEntry().isEmpty() && !base.getEntry().isEmpty())
+		{
+			Map<String, Integer> nextBundleUrlsAndTotals = nextBundle.getEntry().stream()
+					.collect(Collectors.toMap(url ->
+					{
+						if (url.getResource() != null && url.getResource() instanceof Bundle bundle
+								&& !bundle.getLink().isEmpty())
+						{
+							return bundle.getLink().get(0).getUrl();
+
+						}
+						if (checkSkipEntryBundle(url))
+						{
+							return UUID.randomUUID().toString();
+						}
+						throw new RuntimeException("Bundle " + url.fhirType() + " not supported");
+					}, total ->
+					{
+						if (total.getResource() != null && total.getResource() instanceof Bundle bundle
+								&& bundle.getTotal() > -1)
+						{
+							return bundle.getTotal();
+						}
+						if (checkSkipEntryBundle(total))
+						{
+							return -1;
+						}
+						throw new RuntimeException("Bundle " + total.fhirType() + " not supported");
+					}));
+			base.getEntry().forEach(entry ->
+			{
+				if (entry.getResource() != null && entry.getResource() instanceof Bundle bundle
+						&& !bundle.getLink().isEmpty())
+				{
+					String url = bundle.getLink().get(0).getUrl();
+					if (nextBundleUrlsAndTotals.containsKey(url))
+					{
+						Integer total = nextBundleUrlsAndTotals.get(url);
+						if (total != null && total > -1)
+						{
+							int baseTotal = bundle.getTotal();
+							bundle.setTotal(baseTotal + nextBundleUrlsAndTotals.get(url));
+						}
+					}
+				}
+			});
+		}
+	}
+
+	private boolean checkSkipEntryBundle(Bundle.BundleEntryComponent entry)
+	{
+		if (entry.getResource() == null || entry.getResource() instanceof CapabilityStatement)
+		{
+			logger.debug("Skipping merge bundle with resource type CapabilityStatement or null");
+			return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,111 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.jfr.ReportWriteEvent;
+import dev.dsf.bpe.v1.ProcessPluginApi;
+import dev.dsf.fhir.client.PreferReturnMinimal;
+
+public class ReportBundleStore implements InitializingBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(ReportBundleStore.class);
+
+	private static final String HRP_SEPARATOR = ":";
+
+	private final ProcessPluginApi api;
+	private final boolean multiTargetEnabled;
+	private final DsfClientRetry clientRetry;
+	private final ReportEventResourceSize eventResourceSize;
+
+	public ReportBundleStore(ProcessPluginApi api, boolean multiTargetEnabled, DsfClientRetry clientRetry,
+			ReportEventResourceSize eventResourceSize)
+	{
+		this.api = api;
+		this.multiTargetEnabled = multiTargetEnabled;
+		this.clientRetry = clientRetry;
+		this.eventResourceSize = eventResourceSize;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(api, "api");
+		Objects.requireNonNull(clientRetry, "clientRetry");
+		Objects.requireNonNull(eventResourceSize, "eventResourceSize");
+	}
+
+	// in multi target mode report processes for different HRPs run in parallel, every HRP gets its own report Bundle
+	// with the HRP identifier appended to the report identifier
+	public Identifier createIdentifier(String hrpIdentifier)
+	{
+		String localOrganizationIdentifier = api.getOrganizationProvider().getLocalOrganizationIdentifierValue()
+				.orElseThrow(() -> new RuntimeException("LocalOrganizationIdentifierValue empty"));
+
+		return new Identifier().setSystem(ConstantsReport.NAMINGSYSTEM_CDS_REPORT_IDENTIFIER)
+				.setValue(multiTargetEnabled ? localOrganizationIdentifier + HRP_SEPARATOR + hrpIdentifier
+						: localOrganizationIdentifier);
+	}
+
+	public Optional<Bundle> readPrevious(String hrpIdentifier)
+	{
+		Bundle searchResult = api.getFhirWebserviceClientProvider().getLocalWebserviceClient().search(Bundle.class,
+				Map.of("identifier", Collections.singletonList(toSearchParameter(createIdentifier(hrpIdentifier)))));
+
+		return searchResult.getEntry().stream().map(Bundle.BundleEntryComponent::getResource)
+				.filter(r -> r instanceof Bundle).map(r -> (Bundle) r).findFirst();
+	}
+
+	// returns the absolute id of the stored report Bundle
+	public String store(Bundle report, String hrpIdentifier, String taskId, boolean retry)
+	{
+		PreferReturnMinimal client = api.getFhirWebserviceClientProvider().getLocalWebserviceClient()
+				.withMinimalReturn();
+
+		String identifier = toSearchParameter(createIdentifier(hrpIdentifier));
+		Map<String, List<String>> parameters = Map.of("identifier", Collections.singletonList(identifier));
+
+		ReportWriteEvent writeEvent = new ReportWriteEvent();
+		writeEvent.begin();
+		IdType bundleIdType;
+		try
+		{
+			// interim reports are not retried, the next milestone or the final report replaces them anyway
+			bundleIdType = retry
+					? clientRetry.execute(DsfClientRetry.OPERATION_STORE_REPORT,
+							() -> client.updateConditionaly(report, parameters))
+					: client.updateConditionaly(report, parameters);
+		}
+		finally
+		{
+			writeEvent.finish(eventResourceSize, report, taskId, hrpIdentifier,
+					ResourceType.Bundle.name() + "?identifier=" + identifier);
+		}
+
+		String absoluteId = new IdType(api.getEndpointProvider().getLocalEndpointAddress(), ResourceType.Bundle.name(),
+				bundleIdType.getIdPart(), bundleIdType.getVersionIdPart()).getValue();
+
+		logger.info("Stored report Bundle with id '{}' for HRP '{}' and Task with id '{}'", absoluteId, hrpIdentifier,
+				taskId);
+
+		return absoluteId;
+	}
+
+	private String toSearchParameter(Identifier identifier)
+	{
+		return identifier.getSystem() + "|" + identifier.getValue();
+	}
+}
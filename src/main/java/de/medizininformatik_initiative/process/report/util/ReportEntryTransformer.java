@@ -0,0 +1,122 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CapabilityStatement;
+
+public class ReportEntryTransformer
+{
+	private final boolean fhirAsyncRequestsEnabled;
+	private final ReportStatusGenerator statusGenerator = new ReportStatusGenerator();
+
+	public ReportEntryTransformer(boolean fhirAsyncRequestsEnabled)
+	{
+		this.fhirAsyncRequestsEnabled = fhirAsyncRequestsEnabled;
+	}
+
+	// transforming a report entry again returns an equal report entry
+	public Bundle.BundleEntryComponent transformEntry(String url, Bundle.BundleEntryComponent responseEntry)
+	{
+		Bundle.BundleEntryComponent reportEntry = new Bundle.BundleEntryComponent();
+
+		if (responseEntry.getResource() instanceof Bundle || !responseEntry.hasResource())
+		{
+			toEntryComponentBundleResource(responseEntry, reportEntry, url);
+		}
+
+		if (responseEntry.getResource() instanceof CapabilityStatement)
+		{
+			toEntryComponentCapabilityStatementResource(responseEntry, reportEntry);
+		}
+
+		reportEntry.setResponse(responseEntry.getResponse());
+		return reportEntry;
+	}
+
+	private void toEntryComponentBundleResource(Bundle.BundleEntryComponent responseEntry,
+			Bundle.BundleEntryComponent reportEntry, String url)
+	{
+		Bundle reportEntryBundle = new Bundle();
+		reportEntryBundle.getMeta().setLastUpdated(new Date());
+		reportEntryBundle.addLink().setRelation("self").setUrl(url);
+		reportEntryBundle.setType(Bundle.BundleType.SEARCHSET);
+		reportEntryBundle.setTotal(0);
+
+		// unknown until the search request of an interim report completes
+		if (responseEntry.hasResponse() && statusGenerator.isPending(responseEntry.getResponse()))
+			reportEntryBundle.setTotalElement(null);
+
+		if (responseEntry.getResource() instanceof Bundle responseEntryBundle)
+		{
+			if (fhirAsyncRequestsEnabled)
+				responseEntryBundle = flattenBundle(responseEntryBundle);
+			reportEntryBundle.setTotal(responseEntryBundle.getTotal());
+			reportEntryBundle.getMeta().setLastUpdated(responseEntryBundle.getMeta().getLastUpdated());
+		}
+
+		reportEntry.setResource(reportEntryBundle);
+	}
+
+	private Bundle flattenBundle(Bundle bundle)
+	{
+		// the structure of a async response is nested in multiple levels. Therefore this flattening is needed.
+		// see http://hl7.org/fhir/R5/async-bundle.html#3.2.6.2.4.0.3
+		if (bundle.hasEntry() && bundle.getEntryFirstRep().hasResource()
+				&& bundle.getEntryFirstRep().getResource() instanceof Bundle child)
+			return flattenBundle(child);
+		else
+			return bundle;
+	}
+
+	private void toEntryComponentCapabilityStatementResource(Bundle.BundleEntryComponent responseEntry,
+			Bundle.BundleEntryComponent reportEntry)
+	{
+		reportEntry.setResource(toReportCapabilityStatement((CapabilityStatement) responseEntry.getResource()));
+	}
+
+	public CapabilityStatement toReportCapabilityStatement(CapabilityStatement responseEntryCapabilityStatement)
+	{
+		CapabilityStatement reportEntryCapabilityStatement = new CapabilityStatement();
+
+		reportEntryCapabilityStatement.setKind(CapabilityStatement.CapabilityStatementKind.CAPABILITY);
+		reportEntryCapabilityStatement.setStatus(responseEntryCapabilityStatement.getStatus());
+		reportEntryCapabilityStatement.setDate(responseEntryCapabilityStatement.getDate());
+		reportEntryCapabilityStatement.setName("Server");
+
+		reportEntryCapabilityStatement.getSoftware().setName(responseEntryCapabilityStatement.getSoftware().getName());
+		reportEntryCapabilityStatement.getSoftware()
+				.setVersion(responseEntryCapabilityStatement.getSoftware().getVersion());
+
+		reportEntryCapabilityStatement.setFhirVersion(responseEntryCapabilityStatement.getFhirVersion());
+
+		reportEntryCapabilityStatement.setFormat(responseEntryCapabilityStatement.getFormat().stream()
+				.filter(f -> "application/fhir+xml".equals(f.getCode()) || "application/fhir+json".equals(f.getCode()))
+				.collect(Collectors.toList()));
+
+		for (CapabilityStatement.CapabilityStatementRestComponent oldRestComponent : responseEntryCapabilityStatement
+				.getRest())
+		{
+			List<CapabilityStatement.CapabilityStatementRestResourceComponent> resources = oldRestComponent
+					.getResource().stream().map(r -> new CapabilityStatement.CapabilityStatementRestResourceComponent()
+							.setType(r.getType()).setSearchParam(removeDocumentation(r.getSearchParam())))
+					.toList();
+
+			CapabilityStatement.CapabilityStatementRestComponent newRestComponent = new CapabilityStatement.CapabilityStatementRestComponent()
+					.setResource(resources).setMode(oldRestComponent.getMode())
+					.setSearchParam(removeDocumentation(oldRestComponent.getSearchParam()));
+
+			reportEntryCapabilityStatement.addRest(newRestComponent);
+		}
+
+		return reportEntryCapabilityStatement;
+	}
+
+	private List<CapabilityStatement.CapabilityStatementRestResourceSearchParamComponent> removeDocumentation(
+			List<CapabilityStatement.CapabilityStatementRestResourceSearchParamComponent> searchParams)
+	{
+		return searchParams.stream().map(s -> s.setDocumentation(null)).toList();
+	}
+}
@@ -0,0 +1,142 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import dev.dsf.bpe.v1.ProcessPluginApi;
+
+public class ReportNotificationQueue implements InitializingBean, DisposableBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(ReportNotificationQueue.class);
+
+	private record Notification(String subject, String message)
+	{
+	}
+
+	private final ProcessPluginApi api;
+	private final Duration digestWindow;
+	private final boolean sendErrorsImmediately;
+
+	private final ConcurrentLinkedQueue<Notification> notifications = new ConcurrentLinkedQueue<>();
+
+	private ScheduledExecutorService executor;
+
+	public ReportNotificationQueue(ProcessPluginApi api, Duration digestWindow, boolean sendErrorsImmediately)
+	{
+		this.api = api;
+		this.digestWindow = digestWindow;
+		this.sendErrorsImmediately = sendErrorsImmediately;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(api, "api");
+		Objects.requireNonNull(digestWindow, "digestWindow");
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "report-notification-queue");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		if (isDigestEnabled())
+			executor.scheduleWithFixedDelay(this::flush, digestWindow.toMillis(), digestWindow.toMillis(),
+					TimeUnit.MILLISECONDS);
+		else
+			logger.debug("Digest of report notification mails disabled");
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (executor != null)
+		{
+			executor.shutdownNow();
+			flush();
+		}
+	}
+
+	public void notify(String subject, String message)
+	{
+		if (isDigestEnabled())
+			notifications.add(new Notification(subject, message));
+		else
+			sendAsync(new Notification(subject, message));
+	}
+
+	public void notifyError(String subject, String message)
+	{
+		if (sendErrorsImmediately)
+			sendAsync(new Notification(subject, message));
+		else
+			notify(subject, message);
+	}
+
+	public void flush()
+	{
+		List<Notification> digest = new ArrayList<>();
+		for (Notification notification = notifications.poll(); notification != null; notification = notifications
+				.poll())
+			digest.add(notification);
+
+		if (digest.isEmpty())
+			return;
+		else if (digest.size() == 1)
+			send(digest.get(0));
+		else
+			send(createDigest(digest));
+	}
+
+	private boolean isDigestEnabled()
+	{
+		return !digestWindow.isZero() && !digestWindow.isNegative();
+	}
+
+	private Notification createDigest(List<Notification> digest)
+	{
+		String subject = digest.size() + " new notifications in report processes";
+		String message = digest.stream().map(n -> n.subject() + ":\n" + n.message())
+				.collect(Collectors.joining("\n\n"));
+
+		return new Notification(subject, message);
+	}
+
+	private void sendAsync(Notification notification)
+	{
+		try
+		{
+			executor.execute(() -> send(notification));
+		}
+		catch (Exception exception)
+		{
+			// executor already shut down
+			send(notification);
+		}
+	}
+
+	private void send(Notification notification)
+	{
+		try
+		{
+			api.getMailService().send(notification.subject(), notification.message());
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Could not send mail '{}' - {}", notification.subject(), exception.getMessage());
+		}
+	}
+}
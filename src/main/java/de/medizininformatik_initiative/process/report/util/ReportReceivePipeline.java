@@ -0,0 +1,401 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.processes.common.util.ConstantsBase;
+import dev.dsf.bpe.v1.ProcessPluginApi;
+import dev.dsf.fhir.client.BasicFhirWebserviceClient;
+import dev.dsf.fhir.client.PreferReturnMinimal;
+
+public class ReportReceivePipeline implements InitializingBean, DisposableBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(ReportReceivePipeline.class);
+
+	private static final String RESULT_TRANSACTION = "transaction";
+	private static final String RESULT_SINGLE = "single";
+	private static final String RESULT_FALLBACK = "fallback";
+
+	private static final Duration RECEIVED_REPORT_MAX_AGE = Duration.ofMinutes(30);
+
+	private record ReceivedReport(Instant received, Bundle report)
+	{
+	}
+
+	private record PendingInsert(Bundle report, String identifier, CompletableFuture<IdType> result)
+	{
+	}
+
+	private final ProcessPluginApi api;
+	private final ReportMetrics metrics;
+	private final DsfClientRetry clientRetry;
+	private final int downloadsPerEndpoint;
+	private final int insertBatchSize;
+	private final Duration insertBatchWindow;
+	private final Duration insertTimeout;
+	private final int receivedReportsMax;
+
+	private final Map<String, Semaphore> downloadPermits = new ConcurrentHashMap<>();
+	private final BlockingQueue<PendingInsert> pendingInserts = new LinkedBlockingQueue<>();
+	private final Map<String, ReceivedReport> receivedReports = new LinkedHashMap<>();
+
+	private Thread insertWorker;
+
+	public ReportReceivePipeline(ProcessPluginApi api, ReportMetrics metrics, DsfClientRetry clientRetry,
+			int downloadsPerEndpoint, int insertBatchSize, Duration insertBatchWindow, Duration insertTimeout,
+			int receivedReportsMax)
+	{
+		this.api = api;
+		this.metrics = metrics;
+		this.clientRetry = clientRetry;
+		this.downloadsPerEndpoint = downloadsPerEndpoint;
+		this.insertBatchSize = insertBatchSize;
+		this.insertBatchWindow = insertBatchWindow;
+		this.insertTimeout = insertTimeout;
+		this.receivedReportsMax = receivedReportsMax;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception
+	{
+		Objects.requireNonNull(api, "api");
+		Objects.requireNonNull(metrics, "metrics");
+		Objects.requireNonNull(clientRetry, "clientRetry");
+		Objects.requireNonNull(insertBatchWindow, "insertBatchWindow");
+		Objects.requireNonNull(insertTimeout, "insertTimeout");
+
+		if (downloadsPerEndpoint < 1)
+			throw new IllegalArgumentException("downloadsPerEndpoint < 1");
+
+		if (insertBatchSize < 1)
+			throw new IllegalArgumentException("insertBatchSize < 1");
+
+		if (receivedReportsMax < 0)
+			throw new IllegalArgumentException("receivedReportsMax < 0");
+
+		if (insertBatchSize == 1)
+		{
+			logger.debug("Batching of received report inserts disabled");
+			return;
+		}
+
+		insertWorker = new Thread(this::processInserts, "report-receive-insert");
+		insertWorker.setDaemon(true);
+		insertWorker.start();
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (insertWorker != null)
+			insertWorker.interrupt();
+	}
+
+	// downloaded reports are handed to the insert step in memory instead of as process variable, the report is not
+	// serialized to and parsed from the process engine database in between. At most receivedReportsMax reports are
+	// kept, reports evicted before the insert step are downloaded again
+	public void receive(String taskId, IdType reportReference)
+	{
+		Bundle report = prepare(download(reportReference), reportReference);
+		if (receivedReportsMax == 0)
+			return;
+
+		Instant now = Instant.now();
+		synchronized (receivedReports)
+		{
+			receivedReports.values().removeIf(r -> r.received().plus(RECEIVED_REPORT_MAX_AGE).isBefore(now));
+			receivedReports.put(taskId, new ReceivedReport(now, report));
+
+			Iterator<String> oldest = receivedReports.keySet().iterator();
+			while (receivedReports.size() > receivedReportsMax)
+			{
+				String evicted = oldest.next();
+				oldest.remove();
+				logger.debug("Received report for Task with id '{}' evicted from memory", evicted);
+			}
+		}
+	}
+
+	// reports not received by this instance, e.g. before a restart, are downloaded again
+	public Bundle takeReceived(String taskId, IdType reportReference)
+	{
+		ReceivedReport received = removeReceived(taskId);
+		if (received != null && received.received().plus(RECEIVED_REPORT_MAX_AGE).isAfter(Instant.now()))
+			return received.report();
+
+		logger.debug("Report '{}' for Task with id '{}' not received by this instance, downloading again",
+				reportReference.getValue(), taskId);
+		return prepare(download(reportReference), reportReference);
+	}
+
+	// called if the insert step fails before taking the report
+	public void discardReceived(String taskId)
+	{
+		removeReceived(taskId);
+	}
+
+	private ReceivedReport removeReceived(String taskId)
+	{
+		synchronized (receivedReports)
+		{
+			return receivedReports.remove(taskId);
+		}
+	}
+
+	public int getReceivedCount()
+	{
+		synchronized (receivedReports)
+		{
+			return receivedReports.size();
+		}
+	}
+
+	public Bundle download(IdType reportReference)
+	{
+		Semaphore permits = downloadPermits.computeIfAbsent(reportReference.getBaseUrl(),
+				k -> new Semaphore(downloadsPerEndpoint, true));
+
+		try
+		{
+			permits.acquire();
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"Interrupted while waiting for download of report '" + reportReference.getValue() + "'", exception);
+		}
+
+		try
+		{
+			BasicFhirWebserviceClient client = api.getFhirWebserviceClientProvider()
+					.getWebserviceClient(reportReference.getBaseUrl())
+					.withRetry(ConstantsBase.DSF_CLIENT_RETRY_6_TIMES, ConstantsBase.DSF_CLIENT_RETRY_INTERVAL_5MIN);
+
+			if (reportReference.hasVersionIdPart())
+				return client.read(Bundle.class, reportReference.getIdPart(), reportReference.getVersionIdPart());
+			else
+				return client.read(Bundle.class, reportReference.getIdPart());
+		}
+		finally
+		{
+			permits.release();
+		}
+	}
+
+	// checks the structure in the same pass that removes server assigned elements of the sending DSF FHIR server
+	private Bundle prepare(Bundle report, IdType reportReference)
+	{
+		if (report.getType() != Bundle.BundleType.SEARCHSET && report.getType() != Bundle.BundleType.BATCHRESPONSE)
+			throw new RuntimeException("Report '" + reportReference.getValue() + "' has unexpected Bundle type '"
+					+ (report.getType() == null ? null : report.getType().toCode()) + "'");
+
+		for (int i = 0; i < report.getEntry().size(); i++)
+		{
+			Bundle.BundleEntryComponent entry = report.getEntry().get(i);
+			if (!entry.hasResponse() || !entry.getResponse().hasStatus())
+				throw new RuntimeException(
+						"Report '" + reportReference.getValue() + "' entry " + i + " has no response status");
+		}
+
+		report.setId("").getMeta().setVersionId("").setTag(null);
+		return report;
+	}
+
+	public IdType insert(Bundle report, Identifier reportIdentifier)
+	{
+		String identifier = reportIdentifier.getSystem() + "|" + reportIdentifier.getValue();
+
+		if (insertWorker == null)
+		{
+			metrics.increment(ReportMetrics.RECEIVE_INSERTS, ReportMetrics.TAG_RESULT, RESULT_SINGLE);
+			return insertSingle(report, identifier);
+		}
+
+		PendingInsert pending = new PendingInsert(report, identifier, new CompletableFuture<>());
+		pendingInserts.add(pending);
+
+		try
+		{
+			return pending.result().get(insertTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException exception)
+		{
+			// worker stopped or stalled, inserting twice is safe as both are conditional updates of the same report
+			pendingInserts.remove(pending);
+			logger.warn("Insert of report '{}' not completed by batch insert within {}, inserting on its own",
+					identifier, insertTimeout);
+
+			metrics.increment(ReportMetrics.RECEIVE_INSERTS, ReportMetrics.TAG_RESULT, RESULT_SINGLE);
+			return insertSingle(report, identifier);
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for insert of report '" + identifier + "'",
+					exception);
+		}
+		catch (ExecutionException exception)
+		{
+			if (exception.getCause() instanceof RuntimeException runtimeException)
+				throw runtimeException;
+			else
+				throw new RuntimeException(exception.getCause());
+		}
+	}
+
+	private void processInserts()
+	{
+		List<PendingInsert> deferred = new ArrayList<>();
+
+		while (!Thread.currentThread().isInterrupted())
+		{
+			try
+			{
+				List<PendingInsert> batch = collectBatch(deferred);
+				if (!batch.isEmpty())
+					insertBatch(batch);
+			}
+			catch (InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (Exception exception)
+			{
+				logger.warn("Unexpected error while inserting received reports - {}", exception.getMessage());
+			}
+		}
+
+		RuntimeException stopped = new RuntimeException("Report receive pipeline stopped");
+		deferred.forEach(p -> p.result().completeExceptionally(stopped));
+		pendingInserts.forEach(p -> p.result().completeExceptionally(stopped));
+	}
+
+	private List<PendingInsert> collectBatch(List<PendingInsert> deferred) throws InterruptedException
+	{
+		List<PendingInsert> candidates = new ArrayList<>(deferred);
+		deferred.clear();
+
+		if (candidates.isEmpty())
+			candidates.add(pendingInserts.take());
+
+		long deadline = System.nanoTime() + insertBatchWindow.toNanos();
+		while (candidates.size() < insertBatchSize)
+		{
+			PendingInsert next = pendingInserts.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if (next == null)
+				break;
+
+			candidates.add(next);
+		}
+
+		// two conditional updates of the same report would conflict within one transaction
+		List<PendingInsert> batch = new ArrayList<>();
+		Set<String> identifiers = new HashSet<>();
+		for (PendingInsert candidate : candidates)
+		{
+			if (identifiers.add(candidate.identifier()))
+				batch.add(candidate);
+			else
+				deferred.add(candidate);
+		}
+
+		return batch;
+	}
+
+	private void insertBatch(List<PendingInsert> batch)
+	{
+		if (batch.size() == 1)
+		{
+			metrics.increment(ReportMetrics.RECEIVE_INSERTS, ReportMetrics.TAG_RESULT, RESULT_SINGLE);
+			completeSingle(batch.get(0));
+			return;
+		}
+
+		try
+		{
+			Bundle response = api.getFhirWebserviceClientProvider().getLocalWebserviceClient().withMinimalReturn()
+					.postBundle(createTransaction(batch));
+
+			if (response.getEntry().size() != batch.size())
+				throw new RuntimeException("Transaction response contains " + response.getEntry().size()
+						+ " entries, expected " + batch.size());
+
+			for (int i = 0; i < batch.size(); i++)
+			{
+				IdType reportId = new IdType(response.getEntry().get(i).getResponse().getLocation());
+				batch.get(i).result().complete(reportId);
+			}
+
+			metrics.increment(ReportMetrics.RECEIVE_INSERTS, batch.size(), ReportMetrics.TAG_RESULT,
+					RESULT_TRANSACTION);
+			logger.debug("Inserted {} received reports in one transaction", batch.size());
+		}
+		catch (Exception exception)
+		{
+			logger.warn("Inserting {} received reports in one transaction failed, inserting one by one - {}",
+					batch.size(), exception.getMessage());
+
+			metrics.increment(ReportMetrics.RECEIVE_INSERTS, batch.size(), ReportMetrics.TAG_RESULT, RESULT_FALLBACK);
+			batch.stream().filter(p -> !p.result().isDone()).forEach(this::completeSingle);
+		}
+	}
+
+	private Bundle createTransaction(List<PendingInsert> batch)
+	{
+		Bundle transaction = new Bundle().setType(Bundle.BundleType.TRANSACTION);
+		batch.forEach(p -> transaction.addEntry().setFullUrl("urn:uuid:" + UUID.randomUUID()).setResource(p.report())
+				.getRequest().setMethod(Bundle.HTTPVerb.PUT)
+				.setUrl(ResourceType.Bundle.name() + "?identifier=" + p.identifier()));
+
+		return transaction;
+	}
+
+	private void completeSingle(PendingInsert pending)
+	{
+		try
+		{
+			pending.result().complete(insertSingle(pending.report(), pending.identifier()));
+		}
+		catch (Exception exception)
+		{
+			pending.result().completeExceptionally(exception);
+		}
+	}
+
+	private IdType insertSingle(Bundle report, String identifier)
+	{
+		PreferReturnMinimal client = api.getFhirWebserviceClientProvider().getLocalWebserviceClient()
+				.withMinimalReturn();
+
+		return clientRetry.execute(DsfClientRetry.OPERATION_INSERT_REPORT,
+				() -> client.updateConditionaly(report, Map.of("identifier", List.of(identifier))));
+	}
+}
@@ -0,0 +1,163 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.support.CronExpression;
+
+public class ReportSchedule implements InitializingBean
+{
+	// timer-interval cron expressions have five fields without seconds: minute hour day-of-month month day-of-week
+	private static final String CRON_SECONDS = "0 ";
+	private static final int CRON_FIELDS = 5;
+
+	// daily time window, end before start spans midnight
+	public record ExecutionWindow(LocalTime start, LocalTime end)
+	{
+		// e.g. 22:00-06:00
+		public static ExecutionWindow parse(String window)
+		{
+			String[] times = window.trim().split("-");
+			if (times.length != 2)
+				throw new IllegalArgumentException("Execution window '" + window + "' not in format HH:mm-HH:mm");
+
+			return new ExecutionWindow(LocalTime.parse(times[0].trim()), LocalTime.parse(times[1].trim()));
+		}
+
+		public boolean contains(LocalTime time)
+		{
+			if (start.isBefore(end))
+				return !time.isBefore(start) && time.isBefore(end);
+			else
+				return !time.isBefore(start) || time.isBefore(end);
+		}
+
+		public LocalDateTime nextStart(LocalDateTime now)
+		{
+			LocalDateTime start = now.with(this.start);
+			return start.isAfter(now) ? start : start.plusDays(1);
+		}
+	}
+
+	private final Duration staggerWindow;
+	private final Duration maxJitter;
+	private final List<ExecutionWindow> executionWindows;
+	private final Duration deferInterval;
+	private final Duration maxDeferral;
+
+	public ReportSchedule(Duration staggerWindow, Duration maxJitter, List<ExecutionWindow> executionWindows,
+			Duration deferInterval, Duration maxDeferral)
+	{
+		this.staggerWindow = staggerWindow;
+		this.maxJitter = maxJitter;
+		this.executionWindows = executionWindows;
+		this.deferInterval = deferInterval;
+		this.maxDeferral = maxDeferral;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(staggerWindow, "staggerWindow");
+		Objects.requireNonNull(maxJitter, "maxJitter");
+		Objects.requireNonNull(executionWindows, "executionWindows");
+		Objects.requireNonNull(deferInterval, "deferInterval");
+		Objects.requireNonNull(maxDeferral, "maxDeferral");
+	}
+
+	public static boolean isCronExpression(String timerInterval)
+	{
+		return timerInterval != null && timerInterval.trim().split("\\s+").length == CRON_FIELDS;
+	}
+
+	// configured first execution moved by the stagger offset of the organization and a random jitter
+	public LocalDateTime getFirstExecution(LocalDateTime configured, String organizationIdentifier)
+	{
+		return configured.plus(getStaggerOffset(organizationIdentifier)).plus(getJitter());
+	}
+
+	// ISO 8601 durations are not staggered again, the interval keeps the offset of the first execution. Cron
+	// expressions are staggered on every execution, the stagger window should be shorter than the cron period
+	public LocalDateTime getNextExecution(String timerInterval, LocalDateTime now, String organizationIdentifier)
+	{
+		if (isCronExpression(timerInterval))
+		{
+			LocalDateTime next = CronExpression.parse(CRON_SECONDS + timerInterval.trim()).next(now);
+			if (next == null)
+				throw new IllegalArgumentException("Cron expression '" + timerInterval + "' has no next execution");
+
+			return getFirstExecution(next, organizationIdentifier);
+		}
+		else
+			return now.plus(Duration.parse(timerInterval));
+	}
+
+	public boolean isInExecutionWindow(LocalDateTime time)
+	{
+		return executionWindows.isEmpty() || executionWindows.stream().anyMatch(w -> w.contains(time.toLocalTime()));
+	}
+
+	// empty if a due execution may start now, otherwise the time to check again. Executions are deferred to the next
+	// execution window and while the FHIR store is busy, but not longer than maxDeferral after they were due
+	public Optional<LocalDateTime> getDeferral(LocalDateTime now, LocalDateTime due, boolean storeBusy)
+	{
+		LocalDateTime latest = due.plus(maxDeferral);
+		if (!now.isBefore(latest))
+			return Optional.empty();
+
+		if (!isInExecutionWindow(now))
+		{
+			LocalDateTime windowStart = executionWindows.stream().map(w -> w.nextStart(now))
+					.min(LocalDateTime::compareTo).orElse(now);
+			return Optional.of(windowStart.isBefore(latest) ? windowStart : latest);
+		}
+
+		if (storeBusy && deferInterval.toSeconds() > 0)
+		{
+			LocalDateTime retry = now.plus(deferInterval);
+			return Optional.of(retry.isBefore(latest) ? retry : latest);
+		}
+
+		return Optional.empty();
+	}
+
+	public Duration getStaggerOffset(String organizationIdentifier)
+	{
+		if (staggerWindow.toSeconds() <= 0 || organizationIdentifier == null)
+			return Duration.ZERO;
+
+		return Duration.ofSeconds(Math.floorMod(hash(organizationIdentifier), staggerWindow.toSeconds()));
+	}
+
+	private Duration getJitter()
+	{
+		if (maxJitter.toSeconds() <= 0)
+			return Duration.ZERO;
+
+		return Duration.ofSeconds(ThreadLocalRandom.current().nextLong(maxJitter.toSeconds() + 1));
+	}
+
+	private long hash(String organizationIdentifier)
+	{
+		// same offset on every start and every BPE, String.hashCode spreads similar identifiers badly
+		try
+		{
+			return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+					.digest(organizationIdentifier.getBytes(StandardCharsets.UTF_8))).getLong();
+		}
+		catch (NoSuchAlgorithmException exception)
+		{
+			throw new RuntimeException(exception);
+		}
+	}
+}
@@ -3,7 +3,9 @@ package de.medizininformatik_initiative.process.report.util;
 import java.util.stream.Stream;
 
 import org.hl7.fhir.r4.model.BackboneElement;
+import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.StringType;
 import org.hl7.fhir.r4.model.Task;
 import org.hl7.fhir.r4.model.Task.ParameterComponent;
@@ -13,6 +15,8 @@ import de.medizininformatik_initiative.process.report.ConstantsReport;
 
 public class ReportStatusGenerator
 {
+	private static final String RESPONSE_PENDING = "202";
+
 	public ParameterComponent createReportStatusInput(String statusCode)
 	{
 		return createReportStatusInput(statusCode, null);
@@ -49,6 +53,25 @@ public class ReportStatusGenerator
 		return output;
 	}
 
+	public Bundle.BundleEntryResponseComponent createPendingResponse()
+	{
+		OperationOutcome outcome = new OperationOutcome();
+		outcome.addIssue().setSeverity(OperationOutcome.IssueSeverity.INFORMATION)
+				.setCode(OperationOutcome.IssueType.INCOMPLETE).getDetails().addCoding()
+				.setSystem(ConstantsReport.CODESYSTEM_REPORT_STATUS)
+				.setCode(ConstantsReport.CODESYSTEM_REPORT_STATUS_VALUE_PENDING);
+
+		return new Bundle.BundleEntryResponseComponent().setStatus(RESPONSE_PENDING).setOutcome(outcome);
+	}
+
+	public boolean isPending(Bundle.BundleEntryResponseComponent response)
+	{
+		return response.getOutcome() instanceof OperationOutcome outcome
+				&& outcome.getIssue().stream().flatMap(i -> i.getDetails().getCoding().stream())
+						.anyMatch(c -> ConstantsReport.CODESYSTEM_REPORT_STATUS.equals(c.getSystem())
+								&& ConstantsReport.CODESYSTEM_REPORT_STATUS_VALUE_PENDING.equals(c.getCode()));
+	}
+
 	private void addErrorExtension(BackboneElement element, String errorMessage)
 	{
 		element.addExtension().setUrl(ConstantsReport.EXTENSION_REPORT_STATUS_ERROR_URL)
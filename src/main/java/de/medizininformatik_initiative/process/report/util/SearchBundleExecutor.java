@@ -0,0 +1,296 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.jfr.ReportPollingEvent;
+import de.medizininformatik_initiative.process.report.jfr.ReportSearchEvent;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.store.ReportCheckpointStore;
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class SearchBundleExecutor
+{
+	private static final Logger logger = LoggerFactory.getLogger(SearchBundleExecutor.class);
+
+	private static final String RESPONSE_OK = "200";
+	private static final String RESPONSE_EXCEPTION = "exception";
+	private static final String RESPONSE_UNAVAILABLE = "503";
+	private static final String REQUEST_PATTERN_ASYNC = "async";
+	private static final String REQUEST_PATTERN_NORMAL = "normal";
+
+	private final FhirClientFactory fhirClientFactory;
+	private final boolean fhirAsyncRequestsEnabled;
+	private final ReportMetrics metrics;
+	private final ReportEventResourceSize eventResourceSize;
+	private final FhirStoreCircuitBreaker circuitBreaker;
+	private final ReportCheckpointStore checkpointStore;
+	private final int parallelism;
+	private final FhirStoreFormat fhirStoreFormat;
+	private final CapabilityStatementCache capabilityStatementCache;
+	private final SearchResultCache searchResultCache;
+
+	public SearchBundleExecutor(FhirClientFactory fhirClientFactory, boolean fhirAsyncRequestsEnabled,
+			ReportMetrics metrics, ReportEventResourceSize eventResourceSize, FhirStoreCircuitBreaker circuitBreaker,
+			ReportCheckpointStore checkpointStore, int parallelism, FhirStoreFormat fhirStoreFormat,
+			CapabilityStatementCache capabilityStatementCache, SearchResultCache searchResultCache)
+	{
+		this.fhirClientFactory = fhirClientFactory;
+		this.fhirAsyncRequestsEnabled = fhirAsyncRequestsEnabled;
+		this.metrics = metrics;
+		this.eventResourceSize = eventResourceSize;
+		this.circuitBreaker = circuitBreaker;
+		this.checkpointStore = checkpointStore;
+		this.parallelism = Math.max(1, parallelism);
+		this.fhirStoreFormat = fhirStoreFormat;
+		this.capabilityStatementCache = capabilityStatementCache;
+		this.searchResultCache = searchResultCache;
+	}
+
+	public Bundle execute(Bundle searchBundle, String hrpIdentifier, String taskId)
+	{
+		return execute(searchBundle, hrpIdentifier, taskId, (completed, responseBundle) ->
+		{});
+	}
+
+	public Bundle execute(Bundle searchBundle, String hrpIdentifier, String taskId,
+			BiConsumer<Integer, Bundle> progress)
+	{
+		return execute(searchBundle, hrpIdentifier, taskId, Map.of(), progress);
+	}
+
+	public Bundle execute(Bundle searchBundle, String hrpIdentifier, String taskId,
+			Map<Integer, Bundle.BundleEntryComponent> reusedEntries, BiConsumer<Integer, Bundle> progress)
+	{
+		return execute(searchBundle, hrpIdentifier, taskId, reusedEntries, (url, entry) -> entry, progress);
+	}
+
+	// progress is called after every search request with the number of completed requests and the response Bundle
+	// containing their results, search requests with a reused entry are not executed. Every entry is replaced by the
+	// result of entryTransformer as soon as its response arrives, responses are not kept longer than that
+	public Bundle execute(Bundle searchBundle, String hrpIdentifier, String taskId,
+			Map<Integer, Bundle.BundleEntryComponent> reusedEntries,
+			BiFunction<String, Bundle.BundleEntryComponent, Bundle.BundleEntryComponent> entryTransformer,
+			BiConsumer<Integer, Bundle> progress)
+	{
+		logger.info(
+				"Executing search Bundle from HRP '{}' against FHIR store with base URL '{}' - this could take a while...",
+				hrpIdentifier, fhirClientFactory.getFhirBaseUrl());
+
+		Bundle responseBundle = new Bundle();
+		responseBundle.setType(Bundle.BundleType.BATCHRESPONSE);
+
+		List<String> urls = getSearchUrls(searchBundle);
+		ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism, runnable ->
+		{
+			Thread thread = new Thread(runnable, "report-search");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+
+		try (ReportCheckpointStore.Checkpoint checkpoint = checkpointStore.open(taskId, urls))
+		{
+			// requests are started in order and results are collected in order, checkpoints and progress stay
+			// sequential
+			List<Supplier<Bundle.BundleEntryComponent>> entries = new ArrayList<>();
+			for (int i = 0; i < urls.size(); i++)
+			{
+				String url = urls.get(i);
+				Optional<Bundle.BundleEntryComponent> completed = checkpoint.get(i);
+				if (completed.isPresent())
+					entries.add(() -> entryTransformer.apply(url, completed.get()));
+				else if (reusedEntries.containsKey(i))
+				{
+					Bundle.BundleEntryComponent reused = reusedEntries.get(i);
+					entries.add(() -> entryTransformer.apply(url, reused.copy()));
+				}
+				else
+					entries.add(submit(executor, url, hrpIdentifier, taskId, entryTransformer));
+			}
+
+			for (int i = 0; i < urls.size(); i++)
+			{
+				Bundle.BundleEntryComponent entry = entries.get(i).get();
+				if (!checkpoint.get(i).isPresent() && !reusedEntries.containsKey(i)
+						&& RESPONSE_OK.equals(entry.getResponse().getStatus()))
+					checkpoint.save(i, entry);
+
+				responseBundle.addEntry(entry);
+				progress.accept(i + 1, responseBundle);
+			}
+		}
+		finally
+		{
+			if (executor != null)
+				executor.shutdownNow();
+		}
+
+		return responseBundle;
+	}
+
+	private Supplier<Bundle.BundleEntryComponent> submit(ExecutorService executor, String url, String hrpIdentifier,
+			String taskId,
+			BiFunction<String, Bundle.BundleEntryComponent, Bundle.BundleEntryComponent> entryTransformer)
+	{
+		// shared entries are transformed, all report executions use the same transformation
+		Supplier<Bundle.BundleEntryComponent> request = () -> searchResultCache.get(url,
+				() -> entryTransformer.apply(url, executeRequest(url, hrpIdentifier, taskId)));
+
+		if (executor == null)
+			return request;
+
+		CompletableFuture<Bundle.BundleEntryComponent> future = CompletableFuture.supplyAsync(request, executor);
+		return () ->
+		{
+			try
+			{
+				return future.join();
+			}
+			catch (CompletionException exception)
+			{
+				if (exception.getCause() instanceof RuntimeException runtimeException)
+					throw runtimeException;
+				else
+					throw exception;
+			}
+		};
+	}
+
+	// called after the report was stored, a later execution of the same Task starts from scratch
+	public void completed(Bundle searchBundle, String taskId)
+	{
+		checkpointStore.delete(taskId, getSearchUrls(searchBundle));
+	}
+
+	private List<String> getSearchUrls(Bundle searchBundle)
+	{
+		return searchBundle.getEntry().stream().filter(Bundle.BundleEntryComponent::hasRequest)
+				.map(Bundle.BundleEntryComponent::getRequest)
+				.filter(r -> r.hasUrl() && r.hasMethod() && Bundle.HTTPVerb.GET.equals(r.getMethod()))
+				.map(Bundle.BundleEntryRequestComponent::getUrl).toList();
+	}
+
+	private Bundle.BundleEntryComponent executeRequest(String url, String hrpIdentifier, String taskId)
+	{
+		Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent();
+
+		String resource = getSearchResource(url);
+		String pattern = fhirAsyncRequestsEnabled ? REQUEST_PATTERN_ASYNC : REQUEST_PATTERN_NORMAL;
+		String status = RESPONSE_EXCEPTION;
+		ReportMetrics.Sample sample = metrics.start();
+		ReportSearchEvent searchEvent = new ReportSearchEvent();
+		searchEvent.begin();
+
+		try
+		{
+			if (!circuitBreaker.tryAcquire())
+			{
+				status = RESPONSE_UNAVAILABLE;
+				logger.debug("Not executing report search request '{}', FHIR store unavailable", url);
+				entry.setResponse(createErrorResponse(RESPONSE_UNAVAILABLE,
+						"FHIR store at '" + fhirClientFactory.getFhirBaseUrl() + "' unavailable"));
+
+				return entry;
+			}
+
+			logger.debug("Executing report search request '{}' with {}", url,
+					fhirAsyncRequestsEnabled ? "async request pattern" : "normal request pattern");
+			Resource result = doExecuteRequest(url, hrpIdentifier, taskId);
+			circuitBreaker.recordSuccess();
+
+			entry.setResource(result);
+			entry.setResponse(new Bundle.BundleEntryResponseComponent().setStatus(RESPONSE_OK));
+			status = RESPONSE_OK;
+		}
+		catch (BaseServerResponseException exception)
+		{
+			status = String.valueOf(exception.getStatusCode());
+
+			// client errors are answered by a working FHIR store, only server and connection errors count
+			if (exception.getStatusCode() >= 500 || exception.getStatusCode() <= 0)
+				circuitBreaker.recordFailure();
+			else
+				circuitBreaker.recordSuccess();
+
+			logger.warn("Could not execute report search request '{}' - {}", url, exception.getMessage());
+
+			entry.setResponse(createErrorResponse(status, exception.getMessage()));
+		}
+		catch (RuntimeException exception)
+		{
+			circuitBreaker.recordFailure();
+			throw exception;
+		}
+		finally
+		{
+			sample.stop(ReportMetrics.SEARCH_DURATION, ReportMetrics.TAG_RESOURCE, resource,
+					ReportMetrics.TAG_REQUEST_PATTERN, pattern);
+			metrics.increment(ReportMetrics.SEARCH_RESPONSES, ReportMetrics.TAG_RESOURCE, resource,
+					ReportMetrics.TAG_STATUS, status);
+
+			searchEvent.pattern = pattern;
+			searchEvent.status = status;
+			searchEvent.finish(eventResourceSize, entry.getResource(), taskId, hrpIdentifier, url);
+		}
+
+		return entry;
+	}
+
+	private Bundle.BundleEntryResponseComponent createErrorResponse(String status, String diagnostics)
+	{
+		OperationOutcome outcome = new OperationOutcome();
+		outcome.addIssue().setSeverity(OperationOutcome.IssueSeverity.ERROR)
+				.setCode(OperationOutcome.IssueType.EXCEPTION).setDiagnostics(diagnostics);
+
+		return new Bundle.BundleEntryResponseComponent().setStatus(status).setOutcome(outcome);
+	}
+
+	private String getSearchResource(String url)
+	{
+		int queryStart = url.indexOf('?');
+		return queryStart < 0 ? url : url.substring(0, queryStart);
+	}
+
+	private Resource doExecuteRequest(String url, String hrpIdentifier, String taskId)
+	{
+		if (CapabilityStatementCache.METADATA.equals(url) && capabilityStatementCache.isEnabled())
+			return capabilityStatementCache.get();
+
+		// search request URLs are only changed on the wire, report entries and checkpoints keep the original URL
+		String requestUrl = fhirStoreFormat.apply(url);
+
+		if (fhirAsyncRequestsEnabled)
+		{
+			// kick-off and status polls are handled by the async client, the event covers the whole cycle
+			ReportPollingEvent pollingEvent = new ReportPollingEvent();
+			pollingEvent.begin();
+			try
+			{
+				return fhirClientFactory.getAsyncFhirClient().search(requestUrl);
+			}
+			finally
+			{
+				pollingEvent.finish(eventResourceSize, null, taskId, hrpIdentifier, url);
+			}
+		}
+		else
+			return fhirClientFactory.getStandardFhirClient().search(requestUrl);
+	}
+}
@@ -0,0 +1,122 @@
+package de.medizininformatik_initiative.process.report.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+
+public class SearchResultCache implements InitializingBean
+{
+	private static final Logger logger = LoggerFactory.getLogger(SearchResultCache.class);
+
+	private static final String RESPONSE_OK = "200";
+	private static final String RESULT_HIT = "hit";
+	private static final String RESULT_MISS = "miss";
+
+	// completed is null while the search request is running
+	private record CachedEntry(Instant created, CompletableFuture<Bundle.BundleEntryComponent> entry,
+			AtomicReference<Instant> completed)
+	{
+	}
+
+	private final Duration timeToLive;
+	private final ReportMetrics metrics;
+
+	private final ConcurrentMap<String, CachedEntry> entries = new ConcurrentHashMap<>();
+
+	public SearchResultCache(Duration timeToLive, ReportMetrics metrics)
+	{
+		this.timeToLive = timeToLive;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		Objects.requireNonNull(timeToLive, "timeToLive");
+		Objects.requireNonNull(metrics, "metrics");
+	}
+
+	public boolean isEnabled()
+	{
+		return timeToLive.toMillis() > 0;
+	}
+
+	// report executions for different HRPs running at the same time share search requests with equal URLs, a request
+	// still running is awaited instead of being sent again. Only successful entries are kept for later executions, up
+	// to timeToLive after the request completed. Executions sending the request later, e.g. deferred report executions
+	// of a different autostart run, search again
+	public Bundle.BundleEntryComponent get(String url, Supplier<Bundle.BundleEntryComponent> request)
+	{
+		if (!isEnabled())
+			return request.get();
+
+		Instant now = Instant.now();
+		entries.values().removeIf(e -> isExpired(e, now));
+
+		CachedEntry created = new CachedEntry(now, new CompletableFuture<>(), new AtomicReference<>());
+		CachedEntry cached = entries.compute(url, (k, v) -> v != null && !isExpired(v, now) ? v : created);
+
+		if (cached != created)
+		{
+			metrics.increment(ReportMetrics.SEARCH_RESULT_CACHE, ReportMetrics.TAG_RESULT, RESULT_HIT);
+			logger.debug("Using search result of report search request '{}' from {}", url, cached.created());
+
+			return join(cached.entry()).copy();
+		}
+
+		metrics.increment(ReportMetrics.SEARCH_RESULT_CACHE, ReportMetrics.TAG_RESULT, RESULT_MISS);
+
+		Bundle.BundleEntryComponent entry;
+		try
+		{
+			entry = request.get();
+		}
+		catch (RuntimeException exception)
+		{
+			entries.remove(url, created);
+			created.entry().completeExceptionally(exception);
+			throw exception;
+		}
+
+		if (!entry.hasResponse() || !RESPONSE_OK.equals(entry.getResponse().getStatus()))
+			entries.remove(url, created);
+
+		created.completed().set(Instant.now());
+		created.entry().complete(entry.copy());
+		return entry;
+	}
+
+	private boolean isExpired(CachedEntry entry, Instant now)
+	{
+		Instant completed = entry.completed().get();
+		return completed != null && completed.plus(timeToLive).isBefore(now);
+	}
+
+	private Bundle.BundleEntryComponent join(CompletableFuture<Bundle.BundleEntryComponent> entry)
+	{
+		try
+		{
+			return entry.join();
+		}
+		catch (CompletionException exception)
+		{
+			if (exception.getCause() instanceof RuntimeException runtimeException)
+				throw runtimeException;
+			else
+				throw exception;
+		}
+	}
+}
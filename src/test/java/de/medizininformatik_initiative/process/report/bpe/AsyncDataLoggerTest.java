@@ -0,0 +1,130 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.util.AsyncDataLogger;
+
+public class AsyncDataLoggerTest
+{
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	private record Logged(String message, String encoded, boolean truncated)
+	{
+	}
+
+	private static class TestDataLogger extends AsyncDataLogger
+	{
+		final List<Logged> logged = new CopyOnWriteArrayList<>();
+		final CountDownLatch release = new CountDownLatch(1);
+
+		TestDataLogger(boolean async, int queueCapacity, int maxSize, double sampleRate)
+		{
+			super(true, fhirContext, async, queueCapacity, maxSize, sampleRate);
+		}
+
+		@Override
+		protected boolean isLogEnabled()
+		{
+			return true;
+		}
+
+		@Override
+		protected void log(String message, String encoded, boolean truncated)
+		{
+			try
+			{
+				release.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			logged.add(new Logged(message, encoded, truncated));
+		}
+	}
+
+	private static class CountingPatient extends Patient
+	{
+		private static final long serialVersionUID = 1L;
+
+		final AtomicInteger copies = new AtomicInteger();
+
+		@Override
+		public Patient copy()
+		{
+			copies.incrementAndGet();
+			return super.copy();
+		}
+	}
+
+	@Test
+	public void testSampledResourcesNotCopied() throws Exception
+	{
+		TestDataLogger dataLogger = new TestDataLogger(true, 16, 0, 0.0);
+		dataLogger.afterPropertiesSet();
+		CountingPatient patient = new CountingPatient();
+
+		dataLogger.logResource("Patient", patient);
+		dataLogger.destroy();
+
+		assertEquals(0, patient.copies.get());
+		assertTrue(dataLogger.logged.isEmpty());
+	}
+
+	@Test
+	public void testResourcesNotCopiedIfQueueFull() throws Exception
+	{
+		TestDataLogger dataLogger = new TestDataLogger(true, 1, 0, 1.0);
+		dataLogger.afterPropertiesSet();
+		CountingPatient patient = new CountingPatient();
+
+		// first resource blocks the worker thread, the second fills the queue
+		dataLogger.logResource("Patient 1", patient);
+		Thread.sleep(100);
+		dataLogger.logResource("Patient 2", patient);
+		dataLogger.logResource("Patient 3", patient);
+
+		assertEquals(2, patient.copies.get());
+
+		dataLogger.release.countDown();
+		dataLogger.destroy();
+	}
+
+	@Test
+	public void testTruncatedWhileEncoding() throws Exception
+	{
+		TestDataLogger dataLogger = new TestDataLogger(false, 16, 100, 1.0);
+		dataLogger.release.countDown();
+		dataLogger.afterPropertiesSet();
+
+		Bundle bundle = new Bundle().setType(Bundle.BundleType.SEARCHSET);
+		for (int i = 0; i < 100; i++)
+			bundle.addEntry().setResource(new Patient().setActive(true).setId("Patient/" + i));
+
+		dataLogger.logResource("Bundle", bundle);
+
+		String encoded = fhirContext.newJsonParser().encodeResourceToString(bundle);
+		assertEquals(1, dataLogger.logged.size());
+		assertTrue(dataLogger.logged.get(0).truncated());
+		assertEquals(encoded.substring(0, 100), dataLogger.logged.get(0).encoded());
+
+		dataLogger.logResource("Patient", new Patient().setActive(true));
+		assertFalse(dataLogger.logged.get(1).truncated());
+		assertEquals(fhirContext.newJsonParser().encodeResourceToString(new Patient().setActive(true)),
+				dataLogger.logged.get(1).encoded());
+	}
+}
@@ -0,0 +1,43 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.load.SearchBundleLoadDriver;
+import de.medizininformatik_initiative.process.report.load.StandInFhirServer;
+import de.medizininformatik_initiative.process.report.util.CapabilityStatementCache;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class CapabilityStatementCacheTest
+{
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	@Test
+	public void testReuseUnchangedCapabilityStatement() throws Exception
+	{
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).start())
+		{
+			FhirClientFactory fhirClientFactory = SearchBundleLoadDriver.createFhirClientFactory(fhirContext,
+					server.getBaseUrl(), 5000, 10);
+			CapabilityStatementCache cache = new CapabilityStatementCache(fhirClientFactory,
+					new FhirStoreFormat(fhirClientFactory, FhirStoreFormat.FORMAT_NONE), true);
+
+			CapabilityStatement first = cache.get();
+			assertEquals(2, server.getRequestCount());
+			assertEquals("Stand-in FHIR Server", first.getSoftware().getName());
+			assertEquals(10, first.getRestFirstRep().getResource().size());
+			assertFalse(first.getRestFirstRep().getResourceFirstRep().getSearchParamFirstRep().hasDocumentation());
+
+			// only the summary is requested again
+			CapabilityStatement second = cache.get();
+			assertEquals(3, server.getRequestCount());
+			assertTrue(first.equalsDeep(second));
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Endpoint;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Organization;
+import org.junit.After;
+import org.junit.Test;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.DirectoryCache;
+import dev.dsf.bpe.v1.ProcessPluginApi;
+import dev.dsf.bpe.v1.service.EndpointProvider;
+import dev.dsf.bpe.v1.service.FhirWebserviceClientProvider;
+import dev.dsf.bpe.v1.service.OrganizationProvider;
+import dev.dsf.fhir.client.FhirWebserviceClient;
+
+public class DirectoryCacheTest
+{
+	private static final Identifier PARENT = new Identifier().setSystem("http://dsf.dev/sid/organization-identifier")
+			.setValue("medizininformatik-initiative.de");
+	private static final Coding DIC = new Coding().setSystem("http://dsf.dev/fhir/CodeSystem/organization-role")
+			.setCode("DIC");
+	private static final Coding HRP = new Coding().setSystem("http://dsf.dev/fhir/CodeSystem/organization-role")
+			.setCode("HRP");
+	private static final Coding COS = new Coding().setSystem("http://dsf.dev/fhir/CodeSystem/organization-role")
+			.setCode("COS");
+
+	private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+	private final AtomicInteger changeSearches = new AtomicInteger();
+	private final AtomicInteger changedTotal = new AtomicInteger();
+	private final AtomicBoolean changeSearchFails = new AtomicBoolean();
+
+	private DirectoryCache cache;
+
+	@After
+	public void after()
+	{
+		if (cache != null)
+			cache.destroy();
+	}
+
+	private DirectoryCache createCache(Duration ttl, int maxEntries, Duration invalidationCheckInterval)
+			throws Exception
+	{
+		cache = new DirectoryCache(createApi(), new ReportMetrics(), ttl, maxEntries, invalidationCheckInterval);
+		cache.afterPropertiesSet();
+
+		return cache;
+	}
+
+	private int getLoads(Coding role)
+	{
+		AtomicInteger count = loads.get(role.getCode());
+		return count == null ? 0 : count.get();
+	}
+
+	@Test
+	public void testCachedUntilTtl() throws Exception
+	{
+		createCache(Duration.ofMillis(300), 10, Duration.ZERO);
+
+		cache.getOrganizations(PARENT, DIC);
+		cache.getOrganizations(PARENT, DIC);
+		assertEquals(1, getLoads(DIC));
+
+		Thread.sleep(400);
+		cache.getOrganizations(PARENT, DIC);
+		assertEquals(2, getLoads(DIC));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception
+	{
+		createCache(Duration.ofHours(1), 2, Duration.ZERO);
+
+		cache.getOrganizations(PARENT, DIC);
+		cache.getOrganizations(PARENT, HRP);
+		cache.getOrganizations(PARENT, DIC);
+		cache.getOrganizations(PARENT, COS);
+
+		cache.getOrganizations(PARENT, DIC);
+		assertEquals(1, getLoads(DIC));
+
+		cache.getOrganizations(PARENT, HRP);
+		assertEquals(2, getLoads(HRP));
+	}
+
+	@Test
+	public void testInvalidatedOnChanges() throws Exception
+	{
+		createCache(Duration.ofHours(1), 10, Duration.ZERO);
+
+		cache.getOrganizations(PARENT, DIC);
+		cache.checkInvalidation();
+		cache.getOrganizations(PARENT, DIC);
+		assertEquals(1, getLoads(DIC));
+		assertEquals(3, changeSearches.get());
+
+		changedTotal.set(1);
+		cache.checkInvalidation();
+		cache.getOrganizations(PARENT, DIC);
+		assertEquals(2, getLoads(DIC));
+
+		changedTotal.set(0);
+		changeSearchFails.set(true);
+		cache.checkInvalidation();
+		cache.getOrganizations(PARENT, DIC);
+		assertEquals(3, getLoads(DIC));
+	}
+
+	@Test
+	public void testInvalidationCheckedInBackground() throws Exception
+	{
+		createCache(Duration.ofHours(1), 10, Duration.ofMillis(100));
+
+		cache.getOrganizations(PARENT, DIC);
+		cache.getOrganizations(PARENT, DIC);
+		assertEquals(0, changeSearches.get());
+
+		changedTotal.set(1);
+		int searches = changeSearches.get();
+		for (int i = 0; i < 50 && changeSearches.get() == searches; i++)
+			Thread.sleep(50);
+		Thread.sleep(50);
+
+		cache.getOrganizations(PARENT, DIC);
+		assertEquals(2, getLoads(DIC));
+	}
+
+	@Test
+	public void testDefensiveCopies() throws Exception
+	{
+		createCache(Duration.ofHours(1), 10, Duration.ZERO);
+
+		cache.getOrganizations(PARENT, DIC).get(0).setName("modified");
+		assertEquals("DIC", cache.getOrganizations(PARENT, DIC).get(0).getName());
+
+		cache.getEndpoint(PARENT, new Identifier().setValue("dic.de"), DIC).get().setAddress("https://modified");
+		assertEquals("https://dic.de/fhir",
+				cache.getEndpoint(PARENT, new Identifier().setValue("dic.de"), DIC).get().getAddress());
+
+		// one organization and one endpoint lookup
+		assertEquals(2, getLoads(DIC));
+	}
+
+	private ProcessPluginApi createApi()
+	{
+		OrganizationProvider organizationProvider = proxy(OrganizationProvider.class, (method, args) ->
+		{
+			if (!"getOrganizations".equals(method) || args.length != 2)
+				throw new UnsupportedOperationException(method);
+
+			Coding role = (Coding) args[1];
+			loads.computeIfAbsent(role.getCode(), k -> new AtomicInteger()).incrementAndGet();
+			return List.of(new Organization().setName(role.getCode()));
+		});
+		EndpointProvider endpointProvider = proxy(EndpointProvider.class, (method, args) ->
+		{
+			if (!"getEndpoint".equals(method))
+				throw new UnsupportedOperationException(method);
+
+			Coding role = (Coding) args[2];
+			loads.computeIfAbsent(role.getCode(), k -> new AtomicInteger()).incrementAndGet();
+			return Optional.of(new Endpoint().setAddress("https://dic.de/fhir"));
+		});
+		FhirWebserviceClient localClient = proxy(FhirWebserviceClient.class, (method, args) ->
+		{
+			if (!"searchWithStrictHandling".equals(method))
+				throw new UnsupportedOperationException(method);
+
+			changeSearches.incrementAndGet();
+			if (changeSearchFails.get())
+				throw new RuntimeException("Local DSF FHIR server unavailable");
+
+			return new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(changedTotal.get());
+		});
+		FhirWebserviceClientProvider clientProvider = proxy(FhirWebserviceClientProvider.class,
+				(method, args) -> localClient);
+
+		return proxy(ProcessPluginApi.class, (method, args) -> switch (method)
+		{
+			case "getOrganizationProvider" -> organizationProvider;
+			case "getEndpointProvider" -> endpointProvider;
+			case "getFhirWebserviceClientProvider" -> clientProvider;
+			default -> throw new UnsupportedOperationException(method);
+		});
+	}
+
+	private interface Handler
+	{
+		Object invoke(String method, Object[] args);
+	}
+
+	private <T> T proxy(Class<T> type, Handler handler)
+	{
+		return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> handler.invoke(method.getName(), args)));
+	}
+}
@@ -0,0 +1,57 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.DsfClientRetry;
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.WebApplicationException;
+
+public class DsfClientRetryTest
+{
+	@Test
+	public void testGatewayAndUnavailableStatusRetried() throws Exception
+	{
+		for (int status : new int[] { 502, 503, 504 })
+			assertEquals(2, countRequests(new WebApplicationException(status)));
+	}
+
+	@Test
+	public void testOtherStatusNotRetried() throws Exception
+	{
+		for (int status : new int[] { 400, 404, 409, 412, 500, 501 })
+			assertEquals(1, countRequests(new WebApplicationException(status)));
+	}
+
+	@Test
+	public void testConnectionFailureRetried() throws Exception
+	{
+		assertEquals(2, countRequests(new ProcessingException(new ConnectException("Connection refused"))));
+		assertEquals(1, countRequests(new ProcessingException("Read timed out")));
+	}
+
+	private int countRequests(RuntimeException failure)
+	{
+		ReportMetrics metrics = new ReportMetrics();
+		DsfClientRetry retry = new DsfClientRetry(metrics, 1, Duration.ZERO);
+		retry.afterPropertiesSet();
+
+		AtomicInteger requests = new AtomicInteger();
+		assertThrows(failure.getClass(), () -> retry.execute(DsfClientRetry.OPERATION_STORE_REPORT, () ->
+		{
+			requests.incrementAndGet();
+			throw failure;
+		}));
+
+		assertEquals(requests.get() - 1, metrics.count(ReportMetrics.CLIENT_RETRIES, ReportMetrics.TAG_OPERATION,
+				DsfClientRetry.OPERATION_STORE_REPORT));
+		return requests.get();
+	}
+}
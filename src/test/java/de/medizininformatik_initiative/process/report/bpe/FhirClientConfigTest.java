@@ -0,0 +1,82 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.Set;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.context.PerformanceOptionsEnum;
+import ca.uhn.fhir.rest.client.apache.ApacheRestfulClientFactory;
+import ca.uhn.fhir.rest.client.api.IRestfulClientFactory;
+import de.medizininformatik_initiative.process.report.spring.config.FhirClientConfig;
+import de.medizininformatik_initiative.process.report.util.FhirStoreContext;
+
+public class FhirClientConfigTest
+{
+	@Test
+	public void testConnectionPoolMax() throws Exception
+	{
+		assertEquals(IRestfulClientFactory.DEFAULT_POOL_MAX_PER_ROUTE, FhirClientConfig.getConnectionPoolMax(0, 1));
+		assertEquals(36, FhirClientConfig.getConnectionPoolMax(0, 32));
+		assertEquals(8, FhirClientConfig.getConnectionPoolMax(8, 32));
+	}
+
+	@Test
+	public void testConnectionPoolOfReplacedClientFactory() throws Exception
+	{
+		FhirContext dsfFhirContext = FhirContext.forR4();
+		IRestfulClientFactory dsfClientFactory = dsfFhirContext.getRestfulClientFactory();
+		FhirStoreContext fhirStoreContext = new FhirStoreContext(dsfFhirContext, 36);
+
+		// the FhirClientFactory of mii-processes-common sets its own client factory before building clients
+		ApacheRestfulClientFactory clientFactory = new ApacheRestfulClientFactory(fhirStoreContext);
+		fhirStoreContext.setRestfulClientFactory(clientFactory);
+		fhirStoreContext.newRestfulGenericClient("https://fhir.store/fhir");
+
+		assertSame(clientFactory, fhirStoreContext.getRestfulClientFactory());
+		PoolingHttpClientConnectionManager connectionManager = getConnectionManager(clientFactory);
+		assertEquals(36, connectionManager.getMaxTotal());
+		assertEquals(36, connectionManager.getDefaultMaxPerRoute());
+
+		assertSame(dsfClientFactory, dsfFhirContext.getRestfulClientFactory());
+		assertEquals(IRestfulClientFactory.DEFAULT_POOL_MAX_PER_ROUTE, dsfClientFactory.getPoolMaxPerRoute());
+		assertEquals(IRestfulClientFactory.DEFAULT_POOL_MAX, dsfClientFactory.getPoolMaxTotal());
+	}
+
+	@Test
+	public void testSettingsOfDsfContext() throws Exception
+	{
+		FhirContext dsfFhirContext = FhirContext.forR4();
+		dsfFhirContext.getParserOptions().setStripVersionsFromReferences(false);
+		dsfFhirContext.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_MODEL_SCANNING);
+
+		FhirStoreContext fhirStoreContext = new FhirStoreContext(dsfFhirContext, 36);
+
+		assertNotSame(dsfFhirContext, fhirStoreContext);
+		assertEquals(FhirVersionEnum.R4, fhirStoreContext.getVersion().getVersion());
+		assertSame(dsfFhirContext.getParserOptions(), fhirStoreContext.getParserOptions());
+		assertEquals(Set.of(PerformanceOptionsEnum.DEFERRED_MODEL_SCANNING), fhirStoreContext.getPerformanceOptions());
+		assertSame(dsfFhirContext.getValidationSupport(), fhirStoreContext.getValidationSupport());
+		assertTrue(fhirStoreContext.newJsonParser().encodeResourceToString(new Patient()).contains("Patient"));
+	}
+
+	// the pool of the HTTP client built by the client factory
+	private PoolingHttpClientConnectionManager getConnectionManager(ApacheRestfulClientFactory clientFactory)
+			throws Exception
+	{
+		Object httpClient = clientFactory.getNativeHttpClient();
+		Field field = httpClient.getClass().getDeclaredField("connManager");
+		field.setAccessible(true);
+
+		return (PoolingHttpClientConnectionManager) field.get(httpClient);
+	}
+}
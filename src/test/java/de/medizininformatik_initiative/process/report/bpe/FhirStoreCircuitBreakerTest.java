@@ -0,0 +1,180 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.load.LatencyDistribution;
+import de.medizininformatik_initiative.process.report.load.SearchBundleLoadDriver;
+import de.medizininformatik_initiative.process.report.load.StandInFhirServer;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.store.ReportCheckpointStore;
+import de.medizininformatik_initiative.process.report.util.CapabilityStatementCache;
+import de.medizininformatik_initiative.process.report.util.FhirStoreCircuitBreaker;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.process.report.util.SearchBundleExecutor;
+import de.medizininformatik_initiative.process.report.util.SearchResultCache;
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class FhirStoreCircuitBreakerTest
+{
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	private static final String PATIENT_COUNT = "Patient?_summary=count";
+
+	@Test
+	public void testFailFastWhileOpen() throws Exception
+	{
+		Bundle searchBundle = SearchBundleLoadDriver.readSearchBundle(fhirContext);
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).withErrors(1.0, 0.0).start())
+		{
+			ReportMetrics metrics = new ReportMetrics();
+			FhirClientFactory fhirClientFactory = SearchBundleLoadDriver.createFhirClientFactory(fhirContext,
+					server.getBaseUrl(), 5000, 10);
+			FhirStoreCircuitBreaker circuitBreaker = new FhirStoreCircuitBreaker(fhirClientFactory, metrics, 3,
+					Duration.ofHours(1), Duration.ZERO, Duration.ZERO, null);
+
+			Bundle response = new SearchBundleExecutor(fhirClientFactory, false, metrics,
+					new ReportEventResourceSize(fhirContext, false), circuitBreaker,
+					new ReportCheckpointStore(null, fhirContext, Duration.ZERO), 1,
+					new FhirStoreFormat(fhirClientFactory, FhirStoreFormat.FORMAT_NONE),
+					new CapabilityStatementCache(null, null, false),
+					new SearchResultCache(Duration.ZERO, new ReportMetrics()))
+					.execute(searchBundle, "hrp.test", "task-id");
+
+			assertEquals(searchBundle.getEntry().size(), response.getEntry().size());
+			assertEquals(3, server.getRequestCount());
+			assertEquals(FhirStoreCircuitBreaker.State.OPEN, circuitBreaker.getState());
+			assertFalse(circuitBreaker.isAvailable());
+			assertEquals("503", response.getEntry().get(searchBundle.getEntry().size() - 1).getResponse().getStatus());
+		}
+	}
+
+	@Test
+	public void testProbeClosesCircuit() throws Exception
+	{
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).start())
+		{
+			FhirStoreCircuitBreaker circuitBreaker = new FhirStoreCircuitBreaker(
+					SearchBundleLoadDriver.createFhirClientFactory(fhirContext, server.getBaseUrl(), 5000, 10),
+					new ReportMetrics(), 1, Duration.ofHours(1), Duration.ZERO, Duration.ZERO, PATIENT_COUNT);
+
+			circuitBreaker.recordFailure();
+			assertFalse(circuitBreaker.tryAcquire());
+
+			circuitBreaker.probe();
+			assertEquals(FhirStoreCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+			assertTrue(circuitBreaker.tryAcquire());
+			assertEquals(List.of("metadata?_summary=true"), server.getRequestUrls());
+		}
+	}
+
+	@Test
+	public void testHalfOpenWaitsForTrialSuccess() throws Exception
+	{
+		FhirStoreCircuitBreaker circuitBreaker = createHalfOpen();
+
+		CompletableFuture<Boolean> concurrent = CompletableFuture.supplyAsync(circuitBreaker::tryAcquire);
+		Thread.sleep(100);
+		assertFalse(concurrent.isDone());
+
+		circuitBreaker.recordSuccess();
+		assertTrue(concurrent.get(1, TimeUnit.SECONDS));
+		assertEquals(FhirStoreCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void testHalfOpenWaitsForTrialFailure() throws Exception
+	{
+		FhirStoreCircuitBreaker circuitBreaker = createHalfOpen();
+
+		CompletableFuture<Boolean> concurrent = CompletableFuture.supplyAsync(circuitBreaker::tryAcquire);
+		Thread.sleep(100);
+		assertFalse(concurrent.isDone());
+
+		circuitBreaker.recordFailure();
+		assertFalse(concurrent.get(1, TimeUnit.SECONDS));
+		assertEquals(FhirStoreCircuitBreaker.State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	public void testBusyAboveLatencyThreshold() throws Exception
+	{
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42)
+				.withLatency("Patient", LatencyDistribution.fixed(Duration.ofMillis(50))).start())
+		{
+			FhirClientFactory fhirClientFactory = SearchBundleLoadDriver.createFhirClientFactory(fhirContext,
+					server.getBaseUrl(), 5000, 10);
+
+			FhirStoreCircuitBreaker busy = new FhirStoreCircuitBreaker(fhirClientFactory, new ReportMetrics(), 1,
+					Duration.ofHours(1), Duration.ZERO, Duration.ofMillis(10), PATIENT_COUNT);
+			assertFalse(busy.isBusy());
+			busy.probe();
+			assertTrue(busy.isBusy());
+			assertEquals(List.of("metadata?_summary=true", PATIENT_COUNT), server.getRequestUrls());
+
+			FhirStoreCircuitBreaker idle = new FhirStoreCircuitBreaker(fhirClientFactory, new ReportMetrics(), 1,
+					Duration.ofHours(1), Duration.ZERO, Duration.ofSeconds(10), PATIENT_COUNT);
+			idle.probe();
+			assertFalse(idle.isBusy());
+		}
+	}
+
+	@Test
+	public void testSlowMetadataNotBusy() throws Exception
+	{
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42)
+				.withLatency("metadata", LatencyDistribution.fixed(Duration.ofSeconds(1))).start())
+		{
+			FhirStoreCircuitBreaker circuitBreaker = new FhirStoreCircuitBreaker(
+					SearchBundleLoadDriver.createFhirClientFactory(fhirContext, server.getBaseUrl(), 5000, 10),
+					new ReportMetrics(), 1, Duration.ofHours(1), Duration.ZERO, Duration.ofMillis(500), PATIENT_COUNT);
+
+			circuitBreaker.probe();
+			assertFalse(circuitBreaker.isBusy());
+		}
+	}
+
+	@Test
+	public void testNoLatencySearchWithoutThreshold() throws Exception
+	{
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).start())
+		{
+			FhirStoreCircuitBreaker circuitBreaker = new FhirStoreCircuitBreaker(
+					SearchBundleLoadDriver.createFhirClientFactory(fhirContext, server.getBaseUrl(), 5000, 10),
+					new ReportMetrics(), 1, Duration.ofHours(1), Duration.ZERO, Duration.ZERO, PATIENT_COUNT);
+
+			circuitBreaker.probe();
+			assertFalse(circuitBreaker.isBusy());
+			assertEquals(List.of("metadata?_summary=true"), server.getRequestUrls());
+		}
+	}
+
+	// circuit in half-open state with the trial request acquired
+	private FhirStoreCircuitBreaker createHalfOpen() throws InterruptedException
+	{
+		FhirStoreCircuitBreaker circuitBreaker = new FhirStoreCircuitBreaker(
+				SearchBundleLoadDriver.createFhirClientFactory(fhirContext, "http://localhost/fhir", 5000, 10),
+				new ReportMetrics(), 1, Duration.ofMillis(50), Duration.ZERO, Duration.ZERO, null);
+
+		circuitBreaker.recordFailure();
+		assertFalse(circuitBreaker.tryAcquire());
+
+		Thread.sleep(100);
+		assertTrue(circuitBreaker.tryAcquire());
+		assertEquals(FhirStoreCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+		return circuitBreaker;
+	}
+}
@@ -0,0 +1,43 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.load.SearchBundleLoadDriver;
+import de.medizininformatik_initiative.process.report.load.StandInFhirServer;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class FhirStoreFormatTest
+{
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	@Test
+	public void testNegotiateJson() throws Exception
+	{
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).start())
+		{
+			FhirClientFactory fhirClientFactory = SearchBundleLoadDriver.createFhirClientFactory(fhirContext,
+					server.getBaseUrl(), 5000, 10);
+			FhirStoreFormat format = new FhirStoreFormat(fhirClientFactory, FhirStoreFormat.FORMAT_AUTO);
+
+			assertEquals("Patient?_summary=count&_format=json", format.apply("Patient?_summary=count"));
+			assertEquals("metadata?_format=json", format.apply("metadata"));
+			assertEquals("Patient?_summary=count&_format=xml", format.apply("Patient?_summary=count&_format=xml"));
+
+			// negotiated once, later requests use the cached format
+			assertEquals(1, server.getRequestCount());
+		}
+	}
+
+	@Test
+	public void testConfiguredFormat()
+	{
+		assertEquals("Patient?_summary=count&_format=xml",
+				new FhirStoreFormat(null, FhirStoreFormat.FORMAT_XML).apply("Patient?_summary=count"));
+		assertEquals("Patient?_summary=count",
+				new FhirStoreFormat(null, FhirStoreFormat.FORMAT_NONE).apply("Patient?_summary=count"));
+	}
+}
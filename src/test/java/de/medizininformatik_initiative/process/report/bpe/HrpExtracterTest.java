@@ -0,0 +1,41 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import de.medizininformatik_initiative.process.report.HrpExtracter;
+
+public class HrpExtracterTest
+{
+	private final HrpExtracter extracter = () -> null;
+
+	@Test
+	public void testSingleHrpFromEnv() throws Exception
+	{
+		assertEquals(Optional.of("hrp-a.de"), extracter.extractHrpIdentifierFromEnv("hrp-a.de").get());
+		assertEquals(Optional.of("hrp-a.de"), extracter.extractHrpIdentifierFromEnv(" hrp-a.de, ").get());
+		assertEquals(Optional.empty(), extracter.extractHrpIdentifierFromEnv(null).get());
+	}
+
+	@Test
+	public void testMultipleHrpsFromEnvRejected() throws Exception
+	{
+		RuntimeException exception = assertThrows(RuntimeException.class,
+				() -> extracter.extractHrpIdentifierFromEnv("hrp-a.de,hrp-b.de").get());
+
+		assertTrue(exception.getMessage().contains("[hrp-a.de, hrp-b.de]"));
+	}
+
+	@Test
+	public void testHrpsFromEnvForAutostart() throws Exception
+	{
+		assertEquals(List.of("hrp-a.de", "hrp-b.de"),
+				extracter.searchHrpIdentifiers("hrp-a.de, hrp-b.de,hrp-a.de", null, extracter.getHrpRole()));
+	}
+}
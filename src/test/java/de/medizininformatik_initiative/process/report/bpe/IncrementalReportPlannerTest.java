@@ -0,0 +1,110 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.load.SearchBundleLoadDriver;
+import de.medizininformatik_initiative.process.report.load.StandInFhirServer;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.store.ReportCheckpointStore;
+import de.medizininformatik_initiative.process.report.util.CapabilityStatementCache;
+import de.medizininformatik_initiative.process.report.util.FhirStoreCircuitBreaker;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.process.report.util.IncrementalReportPlanner;
+import de.medizininformatik_initiative.process.report.util.ReportEntryTransformer;
+import de.medizininformatik_initiative.process.report.util.SearchBundleExecutor;
+import de.medizininformatik_initiative.process.report.util.SearchResultCache;
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class IncrementalReportPlannerTest
+{
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	@Test
+	public void testReuseUnchangedResourceTypes() throws Exception
+	{
+		Bundle searchBundle = SearchBundleLoadDriver.readSearchBundle(fhirContext);
+		int searches = searchBundle.getEntry().size();
+		// the CapabilityStatement is always requested again
+		long changedSearches = searchBundle.getEntry().stream().map(e -> e.getRequest().getUrl())
+				.filter(u -> u.startsWith("Observation?") || "metadata".equals(u)).count();
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42)
+				.withChangedResourceTypes(Set.of("Observation")).start())
+		{
+			ReportMetrics metrics = new ReportMetrics();
+			FhirClientFactory fhirClientFactory = SearchBundleLoadDriver.createFhirClientFactory(fhirContext,
+					server.getBaseUrl(), 5000, 10);
+			FhirStoreFormat fhirStoreFormat = new FhirStoreFormat(fhirClientFactory, FhirStoreFormat.FORMAT_AUTO);
+			SearchBundleExecutor executor = new SearchBundleExecutor(fhirClientFactory, false, metrics,
+					new ReportEventResourceSize(fhirContext, false),
+					new FhirStoreCircuitBreaker(null, metrics, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, null),
+					new ReportCheckpointStore(null, fhirContext, Duration.ZERO), 1, fhirStoreFormat,
+					new CapabilityStatementCache(null, null, false),
+					new SearchResultCache(Duration.ZERO, new ReportMetrics()));
+
+			Bundle previousReport = executor.execute(searchBundle, "hrp.test", "task-id", Map.of(),
+					new ReportEntryTransformer(false)::transformEntry, (completed, entries) ->
+					{});
+
+			IncrementalReportPlanner planner = new IncrementalReportPlanner(fhirClientFactory, fhirStoreFormat, metrics,
+					true, Duration.ofDays(28));
+			Map<Integer, Bundle.BundleEntryComponent> reused = planner.plan(searchBundle, previousReport);
+
+			assertTrue(changedSearches > 0);
+			assertEquals(searches - changedSearches, reused.size());
+
+			long requestsBefore = server.getRequestCount();
+			Bundle report = executor.execute(searchBundle, "hrp.test", "task-id", reused,
+					new ReportEntryTransformer(false)::transformEntry, (completed, entries) ->
+					{});
+
+			assertEquals(changedSearches, server.getRequestCount() - requestsBefore);
+			assertEquals(searches,
+					report.getEntry().stream().filter(e -> "200".equals(e.getResponse().getStatus())).count());
+
+			for (int i = 0; i < searches; i++)
+				if (report.getEntry().get(i).getResource() instanceof Bundle result)
+					assertEquals(((Bundle) previousReport.getEntry().get(i).getResource()).getTotal(),
+							result.getTotal());
+		}
+	}
+
+	@Test
+	public void testRequeryOutdatedEntries() throws Exception
+	{
+		Bundle searchBundle = SearchBundleLoadDriver.readSearchBundle(fhirContext);
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).withChangedResourceTypes(Set.of())
+				.start())
+		{
+			ReportMetrics metrics = new ReportMetrics();
+			FhirClientFactory fhirClientFactory = SearchBundleLoadDriver.createFhirClientFactory(fhirContext,
+					server.getBaseUrl(), 5000, 10);
+			FhirStoreFormat fhirStoreFormat = new FhirStoreFormat(fhirClientFactory, FhirStoreFormat.FORMAT_AUTO);
+			SearchBundleExecutor executor = new SearchBundleExecutor(fhirClientFactory, false, metrics,
+					new ReportEventResourceSize(fhirContext, false),
+					new FhirStoreCircuitBreaker(null, metrics, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, null),
+					new ReportCheckpointStore(null, fhirContext, Duration.ZERO), 1, fhirStoreFormat,
+					new CapabilityStatementCache(null, null, false),
+					new SearchResultCache(Duration.ZERO, new ReportMetrics()));
+
+			Bundle previousReport = executor.execute(searchBundle, "hrp.test", "task-id", Map.of(),
+					new ReportEntryTransformer(false)::transformEntry, (completed, entries) ->
+					{});
+
+			assertEquals(0,
+					new IncrementalReportPlanner(fhirClientFactory, fhirStoreFormat, metrics, true, Duration.ZERO)
+							.plan(searchBundle, previousReport).size());
+		}
+	}
+}
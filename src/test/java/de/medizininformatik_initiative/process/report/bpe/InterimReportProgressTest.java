@@ -0,0 +1,117 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.junit.Test;
+
+import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.util.InterimReportProgress;
+import de.medizininformatik_initiative.process.report.util.ReportEntryTransformer;
+import de.medizininformatik_initiative.process.report.util.ReportStatusGenerator;
+
+public class InterimReportProgressTest
+{
+	private final ReportStatusGenerator statusGenerator = new ReportStatusGenerator();
+	private final List<Bundle> interimReports = new ArrayList<>();
+
+	private InterimReportProgress createProgress(List<Integer> milestones, int requests)
+	{
+		return new InterimReportProgress(milestones, createSearchBundle(requests), new ReportEntryTransformer(false),
+				statusGenerator, interimReports::add);
+	}
+
+	@Test
+	public void testMilestonesSortedAndDeduplicated() throws Exception
+	{
+		InterimReportProgress progress = createProgress(List.of(50, 25, 25, 0, 100, 120), 4);
+
+		progress.accept(1, createReportEntries(1));
+		assertEquals(1, interimReports.size());
+
+		progress.accept(2, createReportEntries(2));
+		assertEquals(2, interimReports.size());
+
+		progress.accept(3, createReportEntries(3));
+		assertEquals(2, interimReports.size());
+	}
+
+	@Test
+	public void testSeveralMilestonesCrossedInOneStep() throws Exception
+	{
+		InterimReportProgress progress = createProgress(List.of(10, 20, 30, 60), 10);
+
+		progress.accept(3, createReportEntries(3));
+		assertEquals(1, interimReports.size());
+
+		progress.accept(4, createReportEntries(4));
+		progress.accept(5, createReportEntries(5));
+		assertEquals(1, interimReports.size());
+
+		progress.accept(6, createReportEntries(6));
+		assertEquals(2, interimReports.size());
+	}
+
+	@Test
+	public void testNoInterimReportWhenCompleted() throws Exception
+	{
+		InterimReportProgress progress = createProgress(List.of(50), 2);
+
+		progress.accept(2, createReportEntries(2));
+		assertTrue(interimReports.isEmpty());
+	}
+
+	@Test
+	public void testPendingEntries() throws Exception
+	{
+		InterimReportProgress progress = createProgress(List.of(30), 3);
+		Bundle reportEntries = createReportEntries(1);
+
+		progress.accept(1, reportEntries);
+
+		Bundle interimReport = interimReports.get(0);
+		assertEquals(3, interimReport.getEntry().size());
+		assertSame(reportEntries.getEntry().get(0), interimReport.getEntry().get(0));
+		assertFalse(statusGenerator.isPending(interimReport.getEntry().get(0).getResponse()));
+
+		for (int i = 1; i < 3; i++)
+		{
+			Bundle.BundleEntryComponent entry = interimReport.getEntry().get(i);
+			assertTrue(statusGenerator.isPending(entry.getResponse()));
+			assertEquals(ConstantsReport.CODESYSTEM_REPORT_STATUS_VALUE_PENDING,
+					((OperationOutcome) entry.getResponse().getOutcome()).getIssueFirstRep().getDetails()
+							.getCodingFirstRep().getCode());
+
+			Bundle result = (Bundle) entry.getResource();
+			assertFalse(result.hasTotal());
+			assertEquals("Patient?_summary=count&request=" + i, result.getLink("self").getUrl());
+		}
+	}
+
+	private Bundle createSearchBundle(int requests)
+	{
+		Bundle searchBundle = new Bundle().setType(Bundle.BundleType.BATCH);
+		for (int i = 0; i < requests; i++)
+			searchBundle.addEntry().getRequest().setMethod(Bundle.HTTPVerb.GET)
+					.setUrl("Patient?_summary=count&request=" + i);
+
+		return searchBundle;
+	}
+
+	private Bundle createReportEntries(int completed)
+	{
+		Bundle reportEntries = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		for (int i = 0; i < completed; i++)
+			reportEntries.addEntry().setResource(new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(i))
+					.getResponse().setStatus("200");
+
+		return reportEntries;
+	}
+}
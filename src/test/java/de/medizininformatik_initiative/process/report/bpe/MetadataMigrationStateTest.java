@@ -0,0 +1,61 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.medizininformatik_initiative.process.report.store.MetadataMigrationState;
+
+public class MetadataMigrationStateTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMarkMigrated() throws Exception
+	{
+		MetadataMigrationState state = new MetadataMigrationState(folder.getRoot().toPath().resolve("report"));
+		assertFalse(state.isMigrated("a"));
+
+		state.markMigrated("a");
+		assertTrue(state.isMigrated("a"));
+		assertFalse(state.isMigrated("b"));
+
+		state.markMigrated("b");
+		assertTrue(new MetadataMigrationState(folder.getRoot().toPath().resolve("report")).isMigrated("b"));
+	}
+
+	@Test
+	public void testWithoutDataDirectory() throws Exception
+	{
+		MetadataMigrationState state = new MetadataMigrationState(null);
+		state.markMigrated("a");
+		assertFalse(state.isMigrated("a"));
+	}
+
+	@Test
+	public void testCreateFingerprintOfResourceTemplates() throws Exception
+	{
+		List<String> files = List.of("fhir/CodeSystem/report.xml", "fhir/CodeSystem/report-status.xml",
+				"fhir/ValueSet/report-status-send.xml");
+
+		String fingerprint = MetadataMigrationState.createFingerprint("1.0", files);
+		assertEquals(64, fingerprint.length());
+		assertEquals(fingerprint, MetadataMigrationState.createFingerprint("1.0", files));
+		assertNotEquals(fingerprint, MetadataMigrationState.createFingerprint("1.1", files));
+		assertNotEquals(fingerprint, MetadataMigrationState.createFingerprint("1.0", files.subList(0, 2)));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testCreateFingerprintMissingResource() throws Exception
+	{
+		MetadataMigrationState.createFingerprint("1.0", List.of("fhir/CodeSystem/missing.xml"));
+	}
+}
@@ -0,0 +1,154 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.medizininformatik_initiative.process.report.util.RefreshingTokenProvider;
+import de.medizininformatik_initiative.processes.common.fhir.client.token.TokenProvider;
+
+public class RefreshingTokenProviderTest
+{
+	private final AtomicInteger requests = new AtomicInteger();
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	private RefreshingTokenProvider provider;
+
+	@After
+	public void after()
+	{
+		executor.shutdownNow();
+		if (provider != null)
+			provider.destroy();
+	}
+
+	private RefreshingTokenProvider createProvider(double refreshFraction, Supplier<String> tokens, boolean configured)
+	{
+		provider = new RefreshingTokenProvider(() -> createTokenProvider(tokens, configured), refreshFraction,
+				Duration.ofMillis(200));
+		provider.afterPropertiesSet();
+
+		return provider;
+	}
+
+	private TokenProvider createTokenProvider(Supplier<String> tokens, boolean configured)
+	{
+		return (TokenProvider) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { TokenProvider.class }, (proxy, method, args) -> switch (method.getName())
+				{
+					case "getToken" -> {
+						requests.incrementAndGet();
+						yield tokens.get();
+					}
+					case "isConfigured" -> configured;
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	private static String createJwt(Instant expiresAt, String subject)
+	{
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+				+ encoder.encodeToString(("{\"sub\":\"" + subject + "\",\"exp\":" + expiresAt.getEpochSecond() + "}")
+						.getBytes(StandardCharsets.UTF_8))
+				+ ".signature";
+	}
+
+	@Test
+	public void testTokenCachedUntilRefresh() throws Exception
+	{
+		String jwt = createJwt(Instant.now().plus(Duration.ofHours(1)), "a");
+		createProvider(0.5, () -> jwt, true);
+
+		assertEquals(jwt, provider.getToken());
+		assertEquals(jwt, provider.getToken());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testOpaqueTokenLeftToWrappedProvider() throws Exception
+	{
+		createProvider(0.5, () -> "opaque-token", true);
+
+		assertEquals("opaque-token", provider.getToken());
+		assertEquals("opaque-token", provider.getToken());
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testIsConfiguredDelegates() throws Exception
+	{
+		assertTrue(createProvider(0.5, () -> "opaque-token", true).isConfigured());
+		provider.destroy();
+		assertFalse(createProvider(0.5, () -> "opaque-token", false).isConfigured());
+	}
+
+	@Test
+	public void testConcurrentCallersShareRefresh() throws Exception
+	{
+		String jwt = createJwt(Instant.now().plus(Duration.ofHours(1)), "a");
+		createProvider(0.5, () ->
+		{
+			sleep(200);
+			return jwt;
+		}, true);
+
+		List<Future<String>> tokens = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			tokens.add(executor.submit(provider::getToken));
+
+		for (Future<String> token : tokens)
+			assertEquals(jwt, token.get());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testBackgroundRefreshRetried() throws Exception
+	{
+		// refreshed after 10% of 15 seconds, first background refresh fails
+		AtomicInteger calls = new AtomicInteger();
+		createProvider(0.1, () -> switch (calls.incrementAndGet())
+		{
+			case 1 -> createJwt(Instant.now().plus(Duration.ofSeconds(15)), "first");
+			case 2 -> throw new RuntimeException("OIDC provider unavailable");
+			default -> createJwt(Instant.now().plus(Duration.ofHours(1)), "refreshed");
+		}, true);
+
+		String first = provider.getToken();
+
+		for (int i = 0; i < 50 && requests.get() < 3; i++)
+			Thread.sleep(100);
+
+		assertEquals(3, requests.get());
+		assertFalse(first.equals(provider.getToken()));
+		assertEquals(3, requests.get());
+	}
+
+	private static void sleep(long millis)
+	{
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.DsfClientRetry;
+import de.medizininformatik_initiative.process.report.util.ReportBundleStore;
+import jakarta.ws.rs.WebApplicationException;
+
+public class ReportBundleStoreTest
+{
+	private static final String DIC = "dic.de";
+	private static final String HRP_A = "hrp-a.de";
+	private static final String HRP_B = "hrp-b.de";
+
+	@Test
+	public void testMultiTargetReportsDoNotOverwriteEachOther() throws Exception
+	{
+		StandInDsfApi dsf = new StandInDsfApi(DIC);
+		ReportBundleStore store = createStore(dsf, true, new ReportMetrics());
+		store.afterPropertiesSet();
+
+		store.store(createReport(store, HRP_A, 10), HRP_A, "task-a", true);
+		store.store(createReport(store, HRP_B, 20), HRP_B, "task-b", false);
+		String reference = store.store(createReport(store, HRP_A, 11), HRP_A, "task-a", true);
+
+		assertEquals(2, dsf.getLocalBundles().size());
+		assertEquals(StandInDsfApi.LOCAL_ENDPOINT + "/Bundle/1/_history/2", reference);
+
+		Bundle previousA = store.readPrevious(HRP_A).orElseThrow();
+		assertEquals(11, getTotal(previousA));
+		assertEquals(HRP_A, previousA.getMeta().getTagFirstRep().getCode());
+
+		Bundle previousB = store.readPrevious(HRP_B).orElseThrow();
+		assertEquals(20, getTotal(previousB));
+		assertEquals(HRP_B, previousB.getMeta().getTagFirstRep().getCode());
+	}
+
+	@Test
+	public void testSingleTargetIdentifierUnchanged() throws Exception
+	{
+		StandInDsfApi dsf = new StandInDsfApi(DIC);
+		ReportBundleStore store = createStore(dsf, false, new ReportMetrics());
+		store.afterPropertiesSet();
+
+		assertEquals(ConstantsReport.NAMINGSYSTEM_CDS_REPORT_IDENTIFIER, store.createIdentifier(HRP_A).getSystem());
+		assertEquals(DIC, store.createIdentifier(HRP_A).getValue());
+		assertTrue(store.readPrevious(HRP_A).isEmpty());
+
+		store.store(createReport(store, HRP_A, 10), HRP_A, "task-a", true);
+		assertEquals(10, getTotal(store.readPrevious(HRP_B).orElseThrow()));
+	}
+
+	@Test
+	public void testRetriesCounted() throws Exception
+	{
+		StandInDsfApi dsf = new StandInDsfApi(DIC);
+		ReportMetrics metrics = new ReportMetrics();
+		ReportBundleStore store = createStore(dsf, false, metrics);
+		store.afterPropertiesSet();
+
+		dsf.setConditionalUpdateFailures(2, 503);
+		store.store(createReport(store, HRP_A, 10), HRP_A, "task-a", true);
+
+		assertEquals(1, dsf.getLocalBundles().size());
+		assertEquals(3, dsf.getConditionalUpdates());
+		assertEquals(2, metrics.count(ReportMetrics.CLIENT_RETRIES, ReportMetrics.TAG_OPERATION,
+				DsfClientRetry.OPERATION_STORE_REPORT));
+	}
+
+	@Test
+	public void testClientErrorsAndInterimReportsNotRetried() throws Exception
+	{
+		StandInDsfApi dsf = new StandInDsfApi(DIC);
+		ReportMetrics metrics = new ReportMetrics();
+		ReportBundleStore store = createStore(dsf, false, metrics);
+		store.afterPropertiesSet();
+
+		dsf.setConditionalUpdateFailures(1, 400);
+		assertThrows(WebApplicationException.class,
+				() -> store.store(createReport(store, HRP_A, 10), HRP_A, "task-a", true));
+
+		dsf.setConditionalUpdateFailures(1, 503);
+		assertThrows(WebApplicationException.class,
+				() -> store.store(createReport(store, HRP_A, 10), HRP_A, "task-a", false));
+
+		assertEquals(2, dsf.getConditionalUpdates());
+		assertEquals(0, metrics.count(ReportMetrics.CLIENT_RETRIES, ReportMetrics.TAG_OPERATION,
+				DsfClientRetry.OPERATION_STORE_REPORT));
+	}
+
+	private ReportBundleStore createStore(StandInDsfApi dsf, boolean multiTargetEnabled, ReportMetrics metrics)
+	{
+		return new ReportBundleStore(dsf.create(), multiTargetEnabled,
+				new DsfClientRetry(metrics, 3, Duration.ofMillis(10)),
+				new ReportEventResourceSize(FhirContext.forR4(), false));
+	}
+
+	private Bundle createReport(ReportBundleStore store, String hrp, int total)
+	{
+		Bundle report = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		report.setIdentifier(store.createIdentifier(hrp));
+		report.getMeta().addTag().setSystem("http://dsf.dev/fhir/CodeSystem/read-access-tag").setCode(hrp);
+
+		Bundle result = new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(total);
+		report.addEntry().setResource(result).getResponse().setStatus("200");
+
+		return report;
+	}
+
+	private int getTotal(Bundle report)
+	{
+		return ((Bundle) report.getEntryFirstRep().getResource()).getTotal();
+	}
+}
@@ -0,0 +1,166 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.load.SearchBundleLoadDriver;
+import de.medizininformatik_initiative.process.report.load.StandInFhirServer;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.store.ReportCheckpointStore;
+import de.medizininformatik_initiative.process.report.util.CapabilityStatementCache;
+import de.medizininformatik_initiative.process.report.util.FhirStoreCircuitBreaker;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.process.report.util.ReportEntryTransformer;
+import de.medizininformatik_initiative.process.report.util.SearchBundleExecutor;
+import de.medizininformatik_initiative.process.report.util.SearchResultCache;
+
+public class ReportCheckpointStoreTest
+{
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private SearchBundleExecutor createExecutor(StandInFhirServer server, Path dataDirectory)
+	{
+		return createExecutor(server, dataDirectory, 1);
+	}
+
+	private SearchBundleExecutor createExecutor(StandInFhirServer server, Path dataDirectory, int parallelism)
+	{
+		ReportMetrics metrics = new ReportMetrics();
+		return new SearchBundleExecutor(
+				SearchBundleLoadDriver.createFhirClientFactory(fhirContext, server.getBaseUrl(), 5000, 10), false,
+				metrics, new ReportEventResourceSize(fhirContext, false),
+				new FhirStoreCircuitBreaker(null, metrics, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, null),
+				new ReportCheckpointStore(dataDirectory, fhirContext, Duration.ofDays(1)), parallelism,
+				new FhirStoreFormat(null, FhirStoreFormat.FORMAT_NONE), new CapabilityStatementCache(null, null, false),
+				new SearchResultCache(Duration.ZERO, new ReportMetrics()));
+	}
+
+	@Test
+	public void testResume() throws Exception
+	{
+		Bundle searchBundle = SearchBundleLoadDriver.readSearchBundle(fhirContext);
+		int searches = searchBundle.getEntry().size();
+		Path dataDirectory = folder.getRoot().toPath();
+
+		int failed;
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).withErrors(0.3, 0.0).start())
+		{
+			Bundle response = createExecutor(server, dataDirectory).execute(searchBundle, "hrp.test", "task-id");
+
+			failed = (int) response.getEntry().stream().filter(e -> !"200".equals(e.getResponse().getStatus())).count();
+			assertEquals(searches, server.getRequestCount());
+		}
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).start())
+		{
+			SearchBundleExecutor executor = createExecutor(server, dataDirectory);
+			Bundle response = executor.execute(searchBundle, "hrp.test", "task-id");
+
+			assertEquals(failed, server.getRequestCount());
+			assertEquals(searches,
+					response.getEntry().stream().filter(e -> "200".equals(e.getResponse().getStatus())).count());
+
+			executor.completed(searchBundle, "task-id");
+			executor.execute(searchBundle, "hrp.test", "task-id");
+			assertEquals(failed + searches, server.getRequestCount());
+		}
+	}
+
+	@Test
+	public void testResumeParallel() throws Exception
+	{
+		Bundle searchBundle = SearchBundleLoadDriver.readSearchBundle(fhirContext);
+		int searches = searchBundle.getEntry().size();
+		Path dataDirectory = folder.getRoot().toPath();
+
+		Bundle sequential;
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).start())
+		{
+			sequential = createExecutor(server, null).execute(searchBundle, "hrp.test", "task-id");
+		}
+
+		int failed;
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).withErrors(0.3, 0.0).start())
+		{
+			Bundle response = createExecutor(server, dataDirectory, 4).execute(searchBundle, "hrp.test", "task-id");
+
+			failed = (int) response.getEntry().stream().filter(e -> !"200".equals(e.getResponse().getStatus())).count();
+			assertEquals(searches, server.getRequestCount());
+		}
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).start())
+		{
+			Bundle response = createExecutor(server, dataDirectory, 4).execute(searchBundle, "hrp.test", "task-id");
+
+			assertEquals(failed, server.getRequestCount());
+			for (int i = 0; i < searches; i++)
+				if (response.getEntry().get(i).getResource() instanceof Bundle result)
+					assertEquals(((Bundle) sequential.getEntry().get(i).getResource()).getTotal(), result.getTotal());
+		}
+	}
+
+	@Test
+	public void testResumeTransformedEntries() throws Exception
+	{
+		Bundle searchBundle = SearchBundleLoadDriver.readSearchBundle(fhirContext);
+		int searches = searchBundle.getEntry().size();
+		Path dataDirectory = folder.getRoot().toPath();
+		ReportEntryTransformer transformer = new ReportEntryTransformer(false);
+
+		Bundle expected;
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).start())
+		{
+			expected = createExecutor(server, null).execute(searchBundle, "hrp.test", "task-id", Map.of(),
+					transformer::transformEntry, (completed, entries) ->
+					{});
+		}
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).withErrors(0.3, 0.0).start())
+		{
+			createExecutor(server, dataDirectory).execute(searchBundle, "hrp.test", "task-id", Map.of(),
+					transformer::transformEntry, (completed, entries) ->
+					{});
+		}
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).start())
+		{
+			Bundle report = createExecutor(server, dataDirectory).execute(searchBundle, "hrp.test", "task-id", Map.of(),
+					transformer::transformEntry, (completed, entries) ->
+					{});
+
+			assertEquals(searches, report.getEntry().size());
+			for (int i = 0; i < searches; i++)
+			{
+				assertEquals("200", report.getEntry().get(i).getResponse().getStatus());
+				if (report.getEntry().get(i).getResource() instanceof Bundle result)
+				{
+					assertEquals(searchBundle.getEntry().get(i).getRequest().getUrl(), result.getLink("self").getUrl());
+					assertEquals(((Bundle) expected.getEntry().get(i).getResource()).getTotal(), result.getTotal());
+					assertFalse(result.hasEntry());
+				}
+				else if (report.getEntry().get(i).getResource() instanceof CapabilityStatement result)
+				{
+					CapabilityStatement reference = (CapabilityStatement) expected.getEntry().get(i).getResource();
+					assertEquals(reference.getSoftware().getName(), result.getSoftware().getName());
+					assertTrue(reference.getRestFirstRep().equalsDeep(result.getRestFirstRep()));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.jfr.ReportSearchEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class ReportEventTest
+{
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	@Test
+	public void testSearchEventRecorded() throws Exception
+	{
+		Bundle bundle = new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(42);
+		int expectedBytes = fhirContext.newJsonParser().encodeResourceToString(bundle).length();
+
+		Path file = Files.createTempFile("report-event-test", ".jfr");
+		try (Recording recording = new Recording())
+		{
+			recording.enable(ReportSearchEvent.class);
+			recording.start();
+
+			ReportSearchEvent event = new ReportSearchEvent();
+			event.begin();
+			event.pattern = "normal";
+			event.status = "200";
+			event.finish(new ReportEventResourceSize(fhirContext, true), bundle, "task-id", "Test_DIC",
+					"Patient?_summary=count");
+
+			recording.stop();
+			recording.dump(file);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+					.filter(e -> "de.medizininformatik_initiative.report.Search".equals(e.getEventType().getName()))
+					.toList();
+
+			assertEquals(1, events.size());
+			assertEquals("task-id", events.get(0).getString("taskId"));
+			assertEquals("Test_DIC", events.get(0).getString("organization"));
+			assertEquals("Patient?_summary=count", events.get(0).getString("url"));
+			assertEquals("200", events.get(0).getString("status"));
+			assertEquals(expectedBytes, events.get(0).getLong("bytes"));
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testSearchEventNotPopulatedWithoutRecording()
+	{
+		ReportSearchEvent event = new ReportSearchEvent();
+		event.begin();
+		event.finish(new ReportEventResourceSize(fhirContext, true), new Bundle(), "task-id", "Test_DIC",
+				"Patient?_summary=count");
+
+		assertTrue(event.taskId == null && event.bytes == 0);
+	}
+
+	@Test
+	public void testResourceSizeNotRecordedIfDisabled() throws Exception
+	{
+		Path file = Files.createTempFile("report-event-test", ".jfr");
+		try (Recording recording = new Recording())
+		{
+			recording.enable(ReportSearchEvent.class);
+			recording.start();
+
+			ReportSearchEvent event = new ReportSearchEvent();
+			event.begin();
+			event.finish(new ReportEventResourceSize(fhirContext, false), new Bundle().setTotal(42), "task-id",
+					"Test_DIC", "Patient?_summary=count");
+
+			recording.stop();
+			recording.dump(file);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+					.filter(e -> "de.medizininformatik_initiative.report.Search".equals(e.getEventType().getName()))
+					.toList();
+
+			assertEquals(1, events.size());
+			assertEquals("task-id", events.get(0).getString("taskId"));
+			assertEquals(0, events.get(0).getLong("bytes"));
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+}
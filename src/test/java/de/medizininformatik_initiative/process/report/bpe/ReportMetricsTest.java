@@ -0,0 +1,68 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+
+public class ReportMetricsTest
+{
+	@Test
+	public void testTimer()
+	{
+		ReportMetrics metrics = new ReportMetrics();
+		metrics.record(ReportMetrics.SEARCH_DURATION, Duration.ofMillis(40), ReportMetrics.TAG_RESOURCE, "Patient");
+		metrics.record(ReportMetrics.SEARCH_DURATION, Duration.ofMillis(400), ReportMetrics.TAG_RESOURCE, "Patient");
+		metrics.record(ReportMetrics.SEARCH_DURATION, Duration.ofMillis(4000), ReportMetrics.TAG_RESOURCE, "Patient");
+
+		ReportMetrics.Timer timer = metrics.timer(ReportMetrics.SEARCH_DURATION, ReportMetrics.TAG_RESOURCE, "Patient");
+
+		assertEquals(3, timer.getCount());
+		assertEquals(Duration.ofMillis(4440), timer.getTotal());
+		assertEquals(Duration.ofMillis(4000), timer.getMax());
+		assertEquals(Duration.ofMillis(500), timer.getPercentileUpperBound(0.5));
+		assertEquals(Duration.ofMillis(5000), timer.getPercentileUpperBound(0.95));
+	}
+
+	@Test
+	public void testCounterTagOrder()
+	{
+		ReportMetrics metrics = new ReportMetrics();
+		metrics.increment(ReportMetrics.SEARCH_RESPONSES, ReportMetrics.TAG_RESOURCE, "Encounter",
+				ReportMetrics.TAG_STATUS, "200");
+		metrics.increment(ReportMetrics.SEARCH_RESPONSES, ReportMetrics.TAG_STATUS, "200", ReportMetrics.TAG_RESOURCE,
+				"Encounter");
+
+		assertEquals(2, metrics.count(ReportMetrics.SEARCH_RESPONSES, ReportMetrics.TAG_RESOURCE, "Encounter",
+				ReportMetrics.TAG_STATUS, "200"));
+		assertEquals(0, metrics.count(ReportMetrics.SEARCH_RESPONSES, ReportMetrics.TAG_RESOURCE, "Encounter",
+				ReportMetrics.TAG_STATUS, "500"));
+	}
+
+	@Test
+	public void testFormat()
+	{
+		ReportMetrics metrics = new ReportMetrics();
+		assertTrue(metrics.isEmpty());
+
+		metrics.start().stop(ReportMetrics.TASK_DURATION, ReportMetrics.TAG_TASK, "CreateReport",
+				ReportMetrics.TAG_OUTCOME, "success");
+		metrics.increment(ReportMetrics.AGGREGATE_REPORTS);
+
+		List<String> lines = metrics.format();
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0).startsWith("report.task.duration{outcome=success,task=CreateReport} count=1"));
+		assertEquals("report.aggregate.reports count=1", lines.get(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOddTags()
+	{
+		new ReportMetrics().increment(ReportMetrics.SEARCH_RESPONSES, ReportMetrics.TAG_STATUS);
+	}
+}
@@ -0,0 +1,69 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import de.medizininformatik_initiative.process.report.util.ReportNotificationQueue;
+import dev.dsf.bpe.v1.ProcessPluginApi;
+import dev.dsf.bpe.v1.service.MailService;
+
+public class ReportNotificationQueueTest
+{
+	private final List<String> sentSubjects = new CopyOnWriteArrayList<>();
+
+	private ProcessPluginApi createApi()
+	{
+		MailService mailService = (MailService) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { MailService.class }, (proxy, method, args) ->
+				{
+					sentSubjects.add((String) args[0]);
+					return null;
+				});
+
+		return (ProcessPluginApi) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ProcessPluginApi.class },
+				(proxy, method, args) -> "getMailService".equals(method.getName()) ? mailService : null);
+	}
+
+	@Test
+	public void testDigest()
+	{
+		ReportNotificationQueue queue = new ReportNotificationQueue(createApi(), Duration.ofHours(1), true);
+		queue.afterPropertiesSet();
+
+		queue.notify("first", "message");
+		queue.notify("second", "message");
+		queue.notify("third", "message");
+		assertTrue(sentSubjects.isEmpty());
+
+		queue.flush();
+		queue.destroy();
+
+		assertEquals(List.of("3 new notifications in report processes"), sentSubjects);
+	}
+
+	@Test
+	public void testErrorImmediately() throws Exception
+	{
+		ReportNotificationQueue queue = new ReportNotificationQueue(createApi(), Duration.ofHours(1), true);
+		queue.afterPropertiesSet();
+
+		queue.notify("success", "message");
+		queue.notifyError("error", "message");
+
+		for (int i = 0; i < 50 && sentSubjects.isEmpty(); i++)
+			Thread.sleep(10);
+
+		assertEquals(List.of("error"), sentSubjects);
+
+		queue.destroy();
+		assertEquals(List.of("error", "success"), sentSubjects);
+	}
+}
@@ -0,0 +1,286 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Identifier;
+import org.junit.After;
+import org.junit.Test;
+
+import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.util.DsfClientRetry;
+import de.medizininformatik_initiative.process.report.util.ReportReceivePipeline;
+
+public class ReportReceivePipelineTest
+{
+	private static final String REMOTE_ENDPOINT = "https://dic.remote/fhir";
+
+	private final StandInDsfApi dsf = new StandInDsfApi("hrp.de");
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+	private final ReportMetrics metrics = new ReportMetrics();
+
+	private ReportReceivePipeline pipeline;
+
+	@After
+	public void after()
+	{
+		executor.shutdownNow();
+		if (pipeline != null)
+			pipeline.destroy();
+	}
+
+	private ReportReceivePipeline createPipeline(int downloadsPerEndpoint, int insertBatchSize,
+			Duration insertBatchWindow, Duration insertTimeout) throws Exception
+	{
+		return createPipeline(downloadsPerEndpoint, insertBatchSize, insertBatchWindow, insertTimeout, 10);
+	}
+
+	private ReportReceivePipeline createPipeline(int downloadsPerEndpoint, int insertBatchSize,
+			Duration insertBatchWindow, Duration insertTimeout, int receivedReportsMax) throws Exception
+	{
+		pipeline = new ReportReceivePipeline(dsf.create(), metrics,
+				new DsfClientRetry(metrics, 1, Duration.ofMillis(10)), downloadsPerEndpoint, insertBatchSize,
+				insertBatchWindow, insertTimeout, receivedReportsMax);
+		pipeline.afterPropertiesSet();
+
+		return pipeline;
+	}
+
+	@Test
+	public void testDownloadsBoundedPerEndpoint() throws Exception
+	{
+		createPipeline(2, 1, Duration.ZERO, Duration.ofMinutes(1));
+		dsf.setRemoteReadDelayMillis(50);
+		for (int i = 0; i < 6; i++)
+			dsf.addRemoteBundle("report-" + i, createReport(null));
+
+		List<Future<Bundle>> downloads = new ArrayList<>();
+		for (int i = 0; i < 6; i++)
+		{
+			IdType reference = new IdType(REMOTE_ENDPOINT, "Bundle", "report-" + i, null);
+			downloads.add(executor.submit(() -> pipeline.download(reference)));
+		}
+
+		for (Future<Bundle> download : downloads)
+			assertEquals(Bundle.BundleType.BATCHRESPONSE, download.get().getType());
+
+		assertEquals(6, dsf.getRemoteReads());
+		assertEquals(2, dsf.getMaxConcurrentRemoteReads());
+	}
+
+	@Test
+	public void testReceivedReportTakenFromMemory() throws Exception
+	{
+		createPipeline(2, 1, Duration.ZERO, Duration.ofMinutes(1));
+		dsf.addRemoteBundle("report", createRemoteReport());
+
+		pipeline.receive("task", createReference("report"));
+		Bundle report = pipeline.takeReceived("task", createReference("report"));
+
+		assertEquals(1, dsf.getRemoteReads());
+		assertServerElementsRemoved(report);
+		assertEquals(0, pipeline.getReceivedCount());
+	}
+
+	@Test
+	public void testNotReceivedReportDownloadedAgain() throws Exception
+	{
+		createPipeline(2, 1, Duration.ZERO, Duration.ofMinutes(1));
+		dsf.addRemoteBundle("report", createRemoteReport());
+
+		Bundle report = pipeline.takeReceived("task", createReference("report"));
+
+		assertEquals(1, dsf.getRemoteReads());
+		assertServerElementsRemoved(report);
+	}
+
+	@Test
+	public void testReceivedReportsBounded() throws Exception
+	{
+		createPipeline(2, 1, Duration.ZERO, Duration.ofMinutes(1), 2);
+		for (int i = 0; i < 3; i++)
+		{
+			dsf.addRemoteBundle("report-" + i, createRemoteReport());
+			pipeline.receive("task-" + i, createReference("report-" + i));
+		}
+
+		assertEquals(2, pipeline.getReceivedCount());
+
+		// oldest report evicted
+		pipeline.takeReceived("task-0", createReference("report-0"));
+		assertEquals(4, dsf.getRemoteReads());
+
+		pipeline.takeReceived("task-2", createReference("report-2"));
+		assertEquals(4, dsf.getRemoteReads());
+		assertEquals(1, pipeline.getReceivedCount());
+
+		pipeline.discardReceived("task-1");
+		assertEquals(0, pipeline.getReceivedCount());
+	}
+
+	@Test
+	public void testReceivedReportsNotKept() throws Exception
+	{
+		createPipeline(2, 1, Duration.ZERO, Duration.ofMinutes(1), 0);
+		dsf.addRemoteBundle("report", createRemoteReport());
+
+		pipeline.receive("task", createReference("report"));
+		assertEquals(0, pipeline.getReceivedCount());
+
+		pipeline.takeReceived("task", createReference("report"));
+		assertEquals(2, dsf.getRemoteReads());
+	}
+
+	@Test
+	public void testUnexpectedBundleTypeRejected() throws Exception
+	{
+		createPipeline(2, 1, Duration.ZERO, Duration.ofMinutes(1));
+		dsf.addRemoteBundle("report", createRemoteReport().setType(Bundle.BundleType.TRANSACTION));
+
+		RuntimeException exception = assertThrows(RuntimeException.class,
+				() -> pipeline.receive("task", createReference("report")));
+
+		assertTrue(exception.getMessage().contains("unexpected Bundle type 'transaction'"));
+		assertEquals(0, pipeline.getReceivedCount());
+	}
+
+	@Test
+	public void testEntryWithoutResponseStatusRejected() throws Exception
+	{
+		createPipeline(2, 1, Duration.ZERO, Duration.ofMinutes(1));
+		Bundle report = createRemoteReport();
+		report.addEntry().setResource(new Bundle().setType(Bundle.BundleType.SEARCHSET));
+		dsf.addRemoteBundle("report", report);
+
+		RuntimeException exception = assertThrows(RuntimeException.class,
+				() -> pipeline.takeReceived("task", createReference("report")));
+
+		assertTrue(exception.getMessage().contains("entry 1 has no response status"));
+	}
+
+	@Test
+	public void testBatchTransaction() throws Exception
+	{
+		createPipeline(2, 10, Duration.ofMillis(500), Duration.ofMinutes(1));
+
+		List<IdType> ids = insertConcurrently("dic-a.de", "dic-b.de", "dic-c.de");
+
+		assertEquals(3, new HashSet<>(ids).size());
+		assertEquals(1, dsf.getTransactions());
+		assertEquals(0, dsf.getConditionalUpdates());
+		assertEquals(3, dsf.getLocalBundles().size());
+	}
+
+	@Test
+	public void testFallbackToSingleInserts() throws Exception
+	{
+		createPipeline(2, 10, Duration.ofMillis(500), Duration.ofMinutes(1));
+		dsf.setFailTransactions(true);
+
+		List<IdType> ids = insertConcurrently("dic-a.de", "dic-b.de", "dic-c.de");
+
+		assertEquals(3, new HashSet<>(ids).size());
+		assertEquals(1, dsf.getTransactions());
+		assertEquals(3, dsf.getConditionalUpdates());
+		assertEquals(3, dsf.getLocalBundles().size());
+	}
+
+	@Test
+	public void testInsertAfterWorkerStopped() throws Exception
+	{
+		createPipeline(2, 10, Duration.ofMillis(500), Duration.ofMillis(200));
+		pipeline.destroy();
+		Thread.sleep(100);
+
+		Identifier identifier = createIdentifier("dic-a.de");
+		IdType id = pipeline.insert(createReport(identifier), identifier);
+
+		assertEquals("1", id.getIdPart());
+		assertEquals(1, dsf.getConditionalUpdates());
+		assertEquals(1, dsf.getLocalBundles().size());
+	}
+
+	@Test
+	public void testSingleInsertRetriesCounted() throws Exception
+	{
+		createPipeline(2, 1, Duration.ZERO, Duration.ofMinutes(1));
+		dsf.setConditionalUpdateFailures(1, 503);
+
+		Identifier identifier = createIdentifier("dic-a.de");
+		pipeline.insert(createReport(identifier), identifier);
+
+		assertEquals(2, dsf.getConditionalUpdates());
+		assertEquals(1, dsf.getLocalBundles().size());
+		assertEquals(1, metrics.count(ReportMetrics.CLIENT_RETRIES, ReportMetrics.TAG_OPERATION,
+				DsfClientRetry.OPERATION_INSERT_REPORT));
+	}
+
+	private List<IdType> insertConcurrently(String... dics) throws Exception
+	{
+		List<Future<IdType>> inserts = new ArrayList<>();
+		for (String dic : dics)
+		{
+			Identifier identifier = createIdentifier(dic);
+			inserts.add(executor.submit(() -> pipeline.insert(createReport(identifier), identifier)));
+		}
+
+		List<IdType> ids = new ArrayList<>();
+		for (Future<IdType> insert : inserts)
+			ids.add(insert.get());
+
+		return ids;
+	}
+
+	private IdType createReference(String id)
+	{
+		return new IdType(REMOTE_ENDPOINT, "Bundle", id, "1");
+	}
+
+	private Bundle createRemoteReport()
+	{
+		Bundle report = createReport(null);
+		report.setId("report");
+		report.getMeta().setVersionId("1").addTag("http://dsf.dev/fhir/CodeSystem/read-access-tag", "LOCAL", null);
+
+		return report;
+	}
+
+	private void assertServerElementsRemoved(Bundle report)
+	{
+		assertFalse(report.hasId());
+		assertFalse(report.getMeta().hasVersionId());
+		assertFalse(report.getMeta().hasTag());
+		assertEquals(Bundle.BundleType.BATCHRESPONSE, report.getType());
+		assertEquals(1, report.getEntry().size());
+	}
+
+	private Identifier createIdentifier(String dic)
+	{
+		return new Identifier().setSystem(ConstantsReport.NAMINGSYSTEM_CDS_REPORT_IDENTIFIER).setValue(dic);
+	}
+
+	private Bundle createReport(Identifier identifier)
+	{
+		Bundle report = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		if (identifier != null)
+			report.setIdentifier(identifier);
+
+		report.addEntry().setResource(new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(1)).getResponse()
+				.setStatus("200");
+
+		return report;
+	}
+}
@@ -0,0 +1,102 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import de.medizininformatik_initiative.process.report.util.ReportSchedule;
+
+public class ReportScheduleTest
+{
+	private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+	@Test
+	public void testStaggerOffsetDeterministicWithinWindow()
+	{
+		ReportSchedule schedule = new ReportSchedule(Duration.ofHours(2), Duration.ZERO, List.of(), Duration.ZERO,
+				Duration.ZERO);
+
+		Duration offset = schedule.getStaggerOffset("ukb.de");
+		assertEquals(offset,
+				new ReportSchedule(Duration.ofHours(2), Duration.ZERO, List.of(), Duration.ZERO, Duration.ZERO)
+						.getStaggerOffset("ukb.de"));
+		assertNotEquals(offset, schedule.getStaggerOffset("ukm.de"));
+		assertTrue(offset.compareTo(Duration.ZERO) >= 0 && offset.compareTo(Duration.ofHours(2)) < 0);
+
+		assertEquals(NOW.plus(offset), schedule.getFirstExecution(NOW, "ukb.de"));
+		assertEquals(Duration.ZERO,
+				new ReportSchedule(Duration.ZERO, Duration.ZERO, List.of(), Duration.ZERO, Duration.ZERO)
+						.getStaggerOffset("ukb.de"));
+	}
+
+	@Test
+	public void testJitterBounded()
+	{
+		ReportSchedule schedule = new ReportSchedule(Duration.ZERO, Duration.ofMinutes(10), List.of(), Duration.ZERO,
+				Duration.ZERO);
+
+		for (int i = 0; i < 100; i++)
+		{
+			LocalDateTime first = schedule.getFirstExecution(NOW, "ukb.de");
+			assertFalse(first.isBefore(NOW));
+			assertFalse(first.isAfter(NOW.plusMinutes(10)));
+		}
+	}
+
+	@Test
+	public void testNextExecutionDuration()
+	{
+		ReportSchedule schedule = new ReportSchedule(Duration.ofHours(2), Duration.ZERO, List.of(), Duration.ZERO,
+				Duration.ZERO);
+
+		assertFalse(ReportSchedule.isCronExpression("P7D"));
+		assertEquals(NOW.plusDays(7), schedule.getNextExecution("P7D", NOW, "ukb.de"));
+	}
+
+	@Test
+	public void testNextExecutionCron()
+	{
+		ReportSchedule schedule = new ReportSchedule(Duration.ofHours(2), Duration.ZERO, List.of(), Duration.ZERO,
+				Duration.ZERO);
+
+		// 2024-01-01 is a Monday, next Monday 02:30 is a week later
+		assertTrue(ReportSchedule.isCronExpression("30 2 * * MON"));
+		assertEquals(LocalDateTime.of(2024, 1, 8, 2, 30).plus(schedule.getStaggerOffset("ukb.de")),
+				schedule.getNextExecution("30 2 * * MON", NOW, "ukb.de"));
+	}
+
+	@Test
+	public void testDeferralOutsideExecutionWindow()
+	{
+		ReportSchedule schedule = new ReportSchedule(Duration.ZERO, Duration.ZERO,
+				List.of(ReportSchedule.ExecutionWindow.parse("22:00-06:00")), Duration.ofMinutes(15),
+				Duration.ofHours(24));
+
+		assertEquals(Optional.of(NOW.withHour(22)), schedule.getDeferral(NOW, NOW, false));
+		assertEquals(Optional.empty(), schedule.getDeferral(NOW.withHour(23), NOW, false));
+		assertEquals(Optional.empty(), schedule.getDeferral(NOW.plusDays(1).withHour(5), NOW, false));
+
+		// deferred at most until the maximum deferral
+		assertEquals(Optional.empty(), schedule.getDeferral(NOW.plusDays(1).withHour(12), NOW, false));
+	}
+
+	@Test
+	public void testDeferralWhileStoreBusy()
+	{
+		ReportSchedule schedule = new ReportSchedule(Duration.ZERO, Duration.ZERO, List.of(), Duration.ofMinutes(15),
+				Duration.ofHours(1));
+
+		assertEquals(Optional.of(NOW.plusMinutes(15)), schedule.getDeferral(NOW, NOW, true));
+		assertEquals(Optional.of(NOW.plusHours(1)), schedule.getDeferral(NOW.plusMinutes(50), NOW, true));
+		assertEquals(Optional.empty(), schedule.getDeferral(NOW.plusHours(1), NOW, true));
+		assertEquals(Optional.empty(), schedule.getDeferral(NOW, NOW, false));
+	}
+}
@@ -0,0 +1,93 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.medizininformatik_initiative.process.report.store.ReportStatisticsIndex;
+
+public class ReportStatisticsIndexTest
+{
+	private static final String ENCOUNTER_2023 = "Encounter?date=eq2023&_summary=count";
+	private static final String ENCOUNTER_2024 = "Encounter?date=eq2024&_summary=count";
+	private static final String PATIENT = "Patient?_summary=count";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRowsWritten() throws Exception
+	{
+		ReportStatisticsIndex index = new ReportStatisticsIndex(folder.getRoot().toPath(), true);
+
+		index.update("dic-a", createReport(10, 20, 5));
+		index.update("dic-b", createReport(1, 2, 3));
+
+		assertEquals(List.of("dic-a\t2023\t10\tEncounter?date=eq{year}&_summary=count",
+				"dic-a\t2024\t20\tEncounter?date=eq{year}&_summary=count", "dic-a\t\t5\tPatient?_summary=count"),
+				readRows(index.getFile("dic-a")));
+		assertEquals(3, readRows(index.getFile("dic-b")).size());
+
+		index.update("dic-a", createReport(100, 200, 50));
+		assertEquals("dic-a\t\t50\tPatient?_summary=count", readRows(index.getFile("dic-a")).get(2));
+	}
+
+	@Test
+	public void testPendingAndFailedNotIndexed() throws Exception
+	{
+		ReportStatisticsIndex index = new ReportStatisticsIndex(folder.getRoot().toPath(), true);
+
+		Bundle report = createReport(10, 20, 5);
+		report.getEntry().get(0).getResponse().setStatus("404");
+		((Bundle) report.getEntry().get(1).getResource()).setTotalElement(null);
+		index.update("dic-a", report);
+
+		assertEquals(List.of("dic-a\t\t5\tPatient?_summary=count"), readRows(index.getFile("dic-a")));
+	}
+
+	@Test
+	public void testDisabledWithoutDataDirectory() throws Exception
+	{
+		assertFalse(new ReportStatisticsIndex(null, true).isEnabled());
+
+		ReportStatisticsIndex disabled = new ReportStatisticsIndex(folder.getRoot().toPath(), false);
+		disabled.update("dic-a", createReport(10, 20, 5));
+		assertFalse(Files.exists(disabled.getFile("dic-a")));
+		assertTrue(new ReportStatisticsIndex(folder.getRoot().toPath(), true).isEnabled());
+	}
+
+	// rows without the timestamp column
+	private List<String> readRows(Path file) throws Exception
+	{
+		return Files.readAllLines(file, StandardCharsets.UTF_8).stream().map(l -> l.split("\t", 5))
+				.map(p -> String.join("\t", p[0], p[1], p[2], p[4])).toList();
+	}
+
+	private Bundle createReport(int encounters2023, int encounters2024, int patients)
+	{
+		Bundle report = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		addEntry(report, ENCOUNTER_2023, encounters2023);
+		addEntry(report, ENCOUNTER_2024, encounters2024);
+		addEntry(report, PATIENT, patients);
+
+		return report;
+	}
+
+	private void addEntry(Bundle report, String url, int total)
+	{
+		Bundle result = new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(total);
+		result.addLink().setRelation("self").setUrl(url);
+
+		report.addEntry().setResource(result).getResponse().setStatus("200");
+	}
+}
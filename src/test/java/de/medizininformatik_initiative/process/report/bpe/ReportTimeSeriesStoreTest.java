@@ -0,0 +1,157 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.medizininformatik_initiative.process.report.store.ReportTimeSeriesStore;
+import de.medizininformatik_initiative.process.report.store.ReportTimeSeriesStore.Run;
+
+public class ReportTimeSeriesStoreTest
+{
+	private static final String ENCOUNTER = "Encounter?date=eq2023&_summary=count";
+	private static final String PATIENT = "Patient?_summary=count";
+	private static final String HRP = "hrp.de";
+
+	private static final Instant WEEK_1 = Instant.parse("2024-01-01T00:00:00Z");
+	private static final Instant WEEK_2 = Instant.parse("2024-01-08T00:00:00Z");
+	private static final Instant WEEK_3 = Instant.parse("2024-01-15T00:00:00Z");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRangeQuery() throws Exception
+	{
+		ReportTimeSeriesStore store = new ReportTimeSeriesStore(folder.getRoot().toPath(), true);
+		store.append(ReportTimeSeriesStore.SERIES_CREATED, HRP, createReport(WEEK_1, 10, 5));
+		store.append(ReportTimeSeriesStore.SERIES_CREATED, HRP, createReport(WEEK_2, 12, 5));
+		store.append(ReportTimeSeriesStore.SERIES_CREATED, HRP, createReport(WEEK_3, 11, 7));
+
+		List<Run> runs = store.getRuns(ReportTimeSeriesStore.SERIES_CREATED, HRP, WEEK_2, Instant.MAX);
+		assertEquals(2, runs.size());
+		assertEquals(new Run(WEEK_2, Map.of(ENCOUNTER, 12L, PATIENT, 5L)), runs.get(0));
+		assertEquals(new Run(WEEK_3, Map.of(ENCOUNTER, 11L, PATIENT, 7L)), runs.get(1));
+
+		assertEquals(Map.of(WEEK_1, 10L, WEEK_2, 12L),
+				store.getTotals(ReportTimeSeriesStore.SERIES_CREATED, HRP, ENCOUNTER, Instant.MIN, WEEK_3));
+		assertTrue(store.getRuns(ReportTimeSeriesStore.SERIES_RECEIVED, HRP, Instant.MIN, Instant.MAX).isEmpty());
+	}
+
+	@Test
+	public void testPersistedAsDeltas() throws Exception
+	{
+		Path dataDirectory = folder.getRoot().toPath();
+
+		ReportTimeSeriesStore store = new ReportTimeSeriesStore(dataDirectory, true);
+		store.append(ReportTimeSeriesStore.SERIES_RECEIVED, "dic.de", createReport(WEEK_1, 10, 5));
+		store.append(ReportTimeSeriesStore.SERIES_RECEIVED, "dic.de", createReport(WEEK_2, 10, 6));
+
+		List<String> lines = Files.readAllLines(dataDirectory.resolve("timeseries/received-dic.de.timeseries"));
+		assertEquals(4, lines.size());
+		assertEquals("R\t" + WEEK_2.toEpochMilli() + "\t1:1", lines.get(3));
+
+		store = new ReportTimeSeriesStore(dataDirectory, true);
+		store.append(ReportTimeSeriesStore.SERIES_RECEIVED, "dic.de", createReport(WEEK_3, 8, 6));
+
+		assertEquals(Map.of(WEEK_1, 10L, WEEK_2, 10L, WEEK_3, 8L),
+				store.getTotals(ReportTimeSeriesStore.SERIES_RECEIVED, "dic.de", ENCOUNTER, Instant.MIN, Instant.MAX));
+		assertEquals(Map.of(WEEK_1, 5L, WEEK_2, 6L, WEEK_3, 6L),
+				store.getTotals(ReportTimeSeriesStore.SERIES_RECEIVED, "dic.de", PATIENT, Instant.MIN, Instant.MAX));
+	}
+
+	@Test
+	public void testGapAndRecovery() throws Exception
+	{
+		Path dataDirectory = folder.getRoot().toPath();
+
+		ReportTimeSeriesStore store = new ReportTimeSeriesStore(dataDirectory, true);
+		store.append(ReportTimeSeriesStore.SERIES_CREATED, HRP, createReport(WEEK_1, 10, 5));
+
+		Bundle failed = createReport(WEEK_2, 10, 5);
+		failed.getEntry().get(1).getResponse().setStatus("500");
+		store.append(ReportTimeSeriesStore.SERIES_CREATED, HRP, failed);
+
+		store.append(ReportTimeSeriesStore.SERIES_CREATED, HRP, createReport(WEEK_3, 10, 9));
+
+		List<String> lines = Files.readAllLines(dataDirectory.resolve("timeseries/created-hrp.de.timeseries"));
+		assertEquals("R\t" + WEEK_2.toEpochMilli() + "\t1:-", lines.get(3));
+		assertEquals("R\t" + WEEK_3.toEpochMilli() + "\t1:9", lines.get(4));
+
+		for (ReportTimeSeriesStore s : List.of(store, new ReportTimeSeriesStore(dataDirectory, true)))
+		{
+			List<Run> runs = s.getRuns(ReportTimeSeriesStore.SERIES_CREATED, HRP, Instant.MIN, Instant.MAX);
+			assertEquals(Map.of(ENCOUNTER, 10L, PATIENT, 5L), runs.get(0).totals());
+			assertEquals(Map.of(ENCOUNTER, 10L), runs.get(1).totals());
+			assertEquals(Map.of(ENCOUNTER, 10L, PATIENT, 9L), runs.get(2).totals());
+		}
+
+		assertEquals(Map.of(WEEK_1, 5L, WEEK_3, 9L),
+				store.getTotals(ReportTimeSeriesStore.SERIES_CREATED, HRP, PATIENT, Instant.MIN, Instant.MAX));
+	}
+
+	@Test
+	public void testIncompleteLastLine() throws Exception
+	{
+		Path dataDirectory = folder.getRoot().toPath();
+
+		ReportTimeSeriesStore store = new ReportTimeSeriesStore(dataDirectory, true);
+		store.append(ReportTimeSeriesStore.SERIES_CREATED, HRP, createReport(WEEK_1, 10, 5));
+
+		// run of week 2 interrupted while writing
+		Path file = dataDirectory.resolve("timeseries/created-hrp.de.timeseries");
+		Files.writeString(file, "R\t" + WEEK_2.toEpochMilli() + "\t0:2", StandardOpenOption.APPEND);
+
+		store = new ReportTimeSeriesStore(dataDirectory, true);
+		assertEquals(1, store.getRuns(ReportTimeSeriesStore.SERIES_CREATED, HRP, Instant.MIN, Instant.MAX).size());
+
+		store.append(ReportTimeSeriesStore.SERIES_CREATED, HRP, createReport(WEEK_3, 12, 5));
+
+		List<String> lines = Files.readAllLines(file);
+		assertEquals(4, lines.size());
+		assertEquals("R\t" + WEEK_3.toEpochMilli() + "\t0:2", lines.get(3));
+		assertEquals(Map.of(WEEK_1, 10L, WEEK_3, 12L),
+				store.getTotals(ReportTimeSeriesStore.SERIES_CREATED, HRP, ENCOUNTER, Instant.MIN, Instant.MAX));
+	}
+
+	@Test
+	public void testDisabledWithoutDataDirectory() throws Exception
+	{
+		ReportTimeSeriesStore store = new ReportTimeSeriesStore(null, true);
+		assertFalse(store.isEnabled());
+
+		store.append(ReportTimeSeriesStore.SERIES_CREATED, HRP, createReport(WEEK_1, 10, 5));
+		assertTrue(store.getRuns(ReportTimeSeriesStore.SERIES_CREATED, HRP, Instant.MIN, Instant.MAX).isEmpty());
+	}
+
+	private Bundle createReport(Instant created, int encounters, int patients)
+	{
+		Bundle report = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		report.getMeta().setLastUpdated(Date.from(created));
+		addEntry(report, ENCOUNTER, encounters);
+		addEntry(report, PATIENT, patients);
+
+		return report;
+	}
+
+	private void addEntry(Bundle report, String url, int total)
+	{
+		Bundle result = new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(total);
+		result.addLink().setRelation("self").setUrl(url);
+
+		report.addEntry().setResource(result).getResponse().setStatus("200");
+	}
+}
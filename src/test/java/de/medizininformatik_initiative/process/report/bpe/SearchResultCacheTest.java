@@ -0,0 +1,114 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.load.LatencyDistribution;
+import de.medizininformatik_initiative.process.report.load.SearchBundleLoadDriver;
+import de.medizininformatik_initiative.process.report.load.StandInFhirServer;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.store.ReportCheckpointStore;
+import de.medizininformatik_initiative.process.report.util.CapabilityStatementCache;
+import de.medizininformatik_initiative.process.report.util.FhirStoreCircuitBreaker;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.process.report.util.ReportEntryTransformer;
+import de.medizininformatik_initiative.process.report.util.SearchBundleExecutor;
+import de.medizininformatik_initiative.process.report.util.SearchResultCache;
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+
+public class SearchResultCacheTest
+{
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	@Test
+	public void testExpiredAfterCompletion() throws Exception
+	{
+		SearchResultCache cache = new SearchResultCache(Duration.ofMillis(200), new ReportMetrics());
+		AtomicInteger requests = new AtomicInteger();
+		Supplier<Bundle.BundleEntryComponent> request = () ->
+		{
+			requests.incrementAndGet();
+			sleep(300);
+
+			Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent();
+			entry.getResponse().setStatus("200");
+			return entry;
+		};
+
+		// request running longer than the time to live is still shared
+		CompletableFuture<Bundle.BundleEntryComponent> first = CompletableFuture
+				.supplyAsync(() -> cache.get("Patient?_summary=count", request));
+		Thread.sleep(100);
+		cache.get("Patient?_summary=count", request);
+		first.get();
+		assertEquals(1, requests.get());
+
+		cache.get("Patient?_summary=count", request);
+		assertEquals(1, requests.get());
+
+		Thread.sleep(300);
+		cache.get("Patient?_summary=count", request);
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testSharedSearchRequests() throws Exception
+	{
+		Bundle searchBundle = SearchBundleLoadDriver.readSearchBundle(fhirContext);
+		int searches = searchBundle.getEntry().size();
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42)
+				.withLatency(LatencyDistribution.fixed(Duration.ofMillis(5))).start())
+		{
+			ReportMetrics metrics = new ReportMetrics();
+			FhirClientFactory fhirClientFactory = SearchBundleLoadDriver.createFhirClientFactory(fhirContext,
+					server.getBaseUrl(), 5000, 10);
+			SearchResultCache cache = new SearchResultCache(Duration.ofMinutes(30), metrics);
+			SearchBundleExecutor executor = new SearchBundleExecutor(fhirClientFactory, false, metrics,
+					new ReportEventResourceSize(fhirContext, false),
+					new FhirStoreCircuitBreaker(null, metrics, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, null),
+					new ReportCheckpointStore(null, fhirContext, Duration.ZERO), 4,
+					new FhirStoreFormat(null, FhirStoreFormat.FORMAT_NONE),
+					new CapabilityStatementCache(null, null, false), cache);
+			ReportEntryTransformer transformer = new ReportEntryTransformer(false);
+
+			// report executions for two HRPs with the same search Bundle running at the same time
+			CompletableFuture<Bundle> first = CompletableFuture.supplyAsync(() -> executor.execute(searchBundle,
+					"hrp.first", "task-first", Map.of(), transformer::transformEntry, (completed, entries) ->
+					{}));
+			CompletableFuture<Bundle> second = CompletableFuture.supplyAsync(() -> executor.execute(searchBundle,
+					"hrp.second", "task-second", Map.of(), transformer::transformEntry, (completed, entries) ->
+					{}));
+
+			Bundle firstReport = first.get();
+			Bundle secondReport = second.get();
+
+			assertEquals(searches, server.getRequestCount());
+			for (int i = 0; i < searches; i++)
+				if (firstReport.getEntry().get(i).getResource() instanceof Bundle result)
+					assertEquals(result.getTotal(), ((Bundle) secondReport.getEntry().get(i).getResource()).getTotal());
+		}
+	}
+
+	private static void sleep(long millis)
+	{
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
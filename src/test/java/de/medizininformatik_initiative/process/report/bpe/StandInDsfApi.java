@@ -0,0 +1,271 @@
+package de.medizininformatik_initiative.process.report.bpe;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.ResourceType;
+
+import ca.uhn.fhir.context.FhirContext;
+import dev.dsf.bpe.v1.ProcessPluginApi;
+import dev.dsf.bpe.v1.service.EndpointProvider;
+import dev.dsf.bpe.v1.service.FhirWebserviceClientProvider;
+import dev.dsf.bpe.v1.service.OrganizationProvider;
+import dev.dsf.fhir.client.FhirWebserviceClient;
+import dev.dsf.fhir.client.PreferReturnMinimalWithRetry;
+import jakarta.ws.rs.WebApplicationException;
+
+// minimal local and remote DSF FHIR servers storing Bundles in memory, conditional updates match by identifier
+public class StandInDsfApi
+{
+	public static final String LOCAL_ENDPOINT = "https://dic.local/fhir";
+
+	private static final FhirContext FHIR_CONTEXT = FhirContext.forR4();
+
+	private final String localOrganizationIdentifier;
+
+	private final Map<String, Bundle> localBundles = new ConcurrentHashMap<>();
+	private final Map<String, Bundle> remoteBundles = new ConcurrentHashMap<>();
+
+	private final AtomicInteger remoteReads = new AtomicInteger();
+	private final AtomicInteger concurrentRemoteReads = new AtomicInteger();
+	private final AtomicInteger maxConcurrentRemoteReads = new AtomicInteger();
+	private final AtomicInteger conditionalUpdates = new AtomicInteger();
+	private final AtomicInteger transactions = new AtomicInteger();
+	private final AtomicBoolean failTransactions = new AtomicBoolean();
+	private final AtomicInteger conditionalUpdateFailures = new AtomicInteger();
+
+	private volatile int conditionalUpdateFailureStatus;
+
+	private volatile long remoteReadDelayMillis;
+
+	public StandInDsfApi(String localOrganizationIdentifier)
+	{
+		this.localOrganizationIdentifier = localOrganizationIdentifier;
+	}
+
+	public ProcessPluginApi create()
+	{
+		FhirWebserviceClient localClient = createClient(true);
+		FhirWebserviceClient remoteClient = createClient(false);
+
+		FhirWebserviceClientProvider clientProvider = proxy(FhirWebserviceClientProvider.class,
+				(method, args) -> switch (method)
+				{
+					case "getLocalWebserviceClient" -> localClient;
+					case "getWebserviceClient" -> remoteClient;
+					default -> null;
+				});
+		EndpointProvider endpointProvider = proxy(EndpointProvider.class,
+				(method, args) -> "getLocalEndpointAddress".equals(method) ? LOCAL_ENDPOINT : null);
+		OrganizationProvider organizationProvider = proxy(OrganizationProvider.class,
+				(method, args) -> "getLocalOrganizationIdentifierValue".equals(method)
+						? Optional.of(localOrganizationIdentifier)
+						: null);
+
+		return proxy(ProcessPluginApi.class, (method, args) -> switch (method)
+		{
+			case "getFhirWebserviceClientProvider" -> clientProvider;
+			case "getEndpointProvider" -> endpointProvider;
+			case "getOrganizationProvider" -> organizationProvider;
+			case "getFhirContext" -> FHIR_CONTEXT;
+			default -> null;
+		});
+	}
+
+	public void addRemoteBundle(String id, Bundle bundle)
+	{
+		remoteBundles.put(id, bundle);
+	}
+
+	public List<Bundle> getLocalBundles()
+	{
+		return new ArrayList<>(localBundles.values());
+	}
+
+	public int getRemoteReads()
+	{
+		return remoteReads.get();
+	}
+
+	public int getMaxConcurrentRemoteReads()
+	{
+		return maxConcurrentRemoteReads.get();
+	}
+
+	public void setRemoteReadDelayMillis(long delay)
+	{
+		remoteReadDelayMillis = delay;
+	}
+
+	public int getConditionalUpdates()
+	{
+		return conditionalUpdates.get();
+	}
+
+	public int getTransactions()
+	{
+		return transactions.get();
+	}
+
+	public void setFailTransactions(boolean fail)
+	{
+		failTransactions.set(fail);
+	}
+
+	// the next conditional updates fail with the given HTTP status
+	public void setConditionalUpdateFailures(int failures, int status)
+	{
+		conditionalUpdateFailureStatus = status;
+		conditionalUpdateFailures.set(failures);
+	}
+
+	private FhirWebserviceClient createClient(boolean local)
+	{
+		Handler handler = (method, args) -> switch (method)
+		{
+			case "withRetry", "withRetryForever" -> null;
+			case "read" -> read(local, args);
+			case "search" -> search((Map<?, ?>) args[1]);
+			case "updateConditionaly" -> updateConditionaly((Bundle) args[0], (Map<?, ?>) args[1]);
+			case "postBundle" -> postBundle((Bundle) args[0]);
+			default -> throw new UnsupportedOperationException(method);
+		};
+
+		PreferReturnMinimalWithRetry minimalClient = proxy(PreferReturnMinimalWithRetry.class, handler);
+		return proxy(FhirWebserviceClient.class,
+				(method, args) -> "withMinimalReturn".equals(method) ? minimalClient : handler.invoke(method, args));
+	}
+
+	private Bundle read(boolean local, Object[] args) throws InterruptedException
+	{
+		if (local)
+			throw new UnsupportedOperationException("read on local server");
+
+		remoteReads.incrementAndGet();
+		maxConcurrentRemoteReads.accumulateAndGet(concurrentRemoteReads.incrementAndGet(), Math::max);
+		try
+		{
+			Thread.sleep(remoteReadDelayMillis);
+
+			Bundle bundle = remoteBundles.get((String) args[1]);
+			if (bundle == null)
+				throw new RuntimeException("Bundle '" + args[1] + "' not found");
+
+			return bundle.copy();
+		}
+		finally
+		{
+			concurrentRemoteReads.decrementAndGet();
+		}
+	}
+
+	private synchronized Bundle search(Map<?, ?> parameters)
+	{
+		String identifier = getIdentifier(parameters);
+
+		Bundle result = new Bundle().setType(Bundle.BundleType.SEARCHSET);
+		localBundles.values().stream().filter(b -> identifier.equals(toString(b.getIdentifier())))
+				.forEach(b -> result.addEntry().setResource(b.copy()));
+		result.setTotal(result.getEntry().size());
+
+		return result;
+	}
+
+	private synchronized IdType updateConditionaly(Bundle bundle, Map<?, ?> parameters)
+	{
+		conditionalUpdates.incrementAndGet();
+
+		if (conditionalUpdateFailures.getAndUpdate(f -> Math.max(0, f - 1)) > 0)
+			throw new WebApplicationException(conditionalUpdateFailureStatus);
+
+		return store(bundle, getIdentifier(parameters));
+	}
+
+	private synchronized Bundle postBundle(Bundle transaction)
+	{
+		transactions.incrementAndGet();
+
+		if (failTransactions.get())
+			throw new RuntimeException("Transaction failed");
+
+		Bundle response = new Bundle().setType(Bundle.BundleType.TRANSACTIONRESPONSE);
+		for (Bundle.BundleEntryComponent entry : transaction.getEntry())
+		{
+			String url = entry.getRequest().getUrl();
+			IdType id = store((Bundle) entry.getResource(), url.substring(url.indexOf('=') + 1));
+			response.addEntry().getResponse().setStatus("200").setLocation(id.getValue());
+		}
+
+		return response;
+	}
+
+	private IdType store(Bundle bundle, String identifier)
+	{
+		if (!identifier.equals(toString(bundle.getIdentifier())))
+			throw new RuntimeException("Conditional update with identifier '" + identifier
+					+ "' not matching resource identifier '" + toString(bundle.getIdentifier()) + "'");
+
+		String id = localBundles.entrySet().stream()
+				.filter(e -> identifier.equals(toString(e.getValue().getIdentifier()))).map(Map.Entry::getKey)
+				.findFirst().orElse(String.valueOf(localBundles.size() + 1));
+		String version = localBundles.containsKey(id)
+				? String.valueOf(Integer.parseInt(localBundles.get(id).getMeta().getVersionId()) + 1)
+				: "1";
+
+		Bundle stored = bundle.copy();
+		stored.setId(new IdType(ResourceType.Bundle.name(), id, version));
+		stored.getMeta().setVersionId(version);
+		localBundles.put(id, stored);
+
+		return new IdType(ResourceType.Bundle.name(), id, version);
+	}
+
+	private String getIdentifier(Map<?, ?> parameters)
+	{
+		return (String) ((List<?>) parameters.get("identifier")).get(0);
+	}
+
+	private String toString(Identifier identifier)
+	{
+		return identifier.getSystem() + "|" + identifier.getValue();
+	}
+
+	private interface Handler
+	{
+		Object invoke(String method, Object[] args) throws Exception;
+	}
+
+	private <T> T proxy(Class<T> type, Handler handler)
+	{
+		return type.cast(proxy(new Class<?>[] { type }, handler));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T proxy(Class<?>[] types, Handler handler)
+	{
+		return (T) Proxy.newProxyInstance(getClass().getClassLoader(), types, (proxy, method, args) ->
+		{
+			if (method.getDeclaringClass() == Object.class)
+				return switch (method.getName())
+				{
+					case "equals" -> proxy == args[0];
+					case "hashCode" -> System.identityHashCode(proxy);
+					default -> "StandInDsfApi" + List.of(types);
+				};
+
+			Object result = handler.invoke(method.getName(), args);
+
+			// client configuration methods return the client itself
+			return result == null && method.getReturnType().isInstance(proxy) ? proxy : result;
+		});
+	}
+}
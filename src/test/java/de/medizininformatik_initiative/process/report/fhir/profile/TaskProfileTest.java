@@ -75,6 +75,21 @@ public class TaskProfileTest
 				|| ResultSeverityEnum.FATAL.equals(m.getSeverity())).count());
 	}
 
+	@Test
+	public void testTaskAutostartStartProcessProfileValidTimerIntervalCron()
+	{
+		Task task = createValidTaskAutostartStartProcess();
+		task.addInput().setValue(new StringType("30 2 * * MON")).getType().addCoding()
+				.setSystem(ConstantsReport.CODESYSTEM_REPORT)
+				.setCode(ConstantsReport.CODESYSTEM_REPORT_VALUE_TIMER_INTERVAL);
+
+		ValidationResult result = resourceValidator.validate(task);
+		ValidationSupportRule.logValidationMessages(logger, result);
+
+		assertEquals(0, result.getMessages().stream().filter(m -> ResultSeverityEnum.ERROR.equals(m.getSeverity())
+				|| ResultSeverityEnum.FATAL.equals(m.getSeverity())).count());
+	}
+
 	@Test
 	public void testTaskStartAutostartProcessProfileNotValidTimerInterval()
 	{
@@ -0,0 +1,30 @@
+package de.medizininformatik_initiative.process.report.load;
+
+import java.time.Duration;
+import java.util.Random;
+
+public interface LatencyDistribution
+{
+	Duration sample(Random random);
+
+	static LatencyDistribution fixed(Duration latency)
+	{
+		return random -> latency;
+	}
+
+	static LatencyDistribution uniform(Duration min, Duration max)
+	{
+		long minNanos = min.toNanos();
+		long rangeNanos = max.toNanos() - minNanos;
+
+		return random -> Duration.ofNanos(minNanos + (long) (random.nextDouble() * rangeNanos));
+	}
+
+	static LatencyDistribution logNormal(Duration median, double sigma)
+	{
+		// long tail typical for FHIR search requests, most requests close to the median, some a multiple of it
+		double mu = Math.log(median.toNanos());
+
+		return random -> Duration.ofNanos((long) Math.exp(mu + sigma * random.nextGaussian()));
+	}
+}
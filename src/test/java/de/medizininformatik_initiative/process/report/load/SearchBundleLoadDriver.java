@@ -0,0 +1,158 @@
+package de.medizininformatik_initiative.process.report.load;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.store.ReportCheckpointStore;
+import de.medizininformatik_initiative.process.report.util.CapabilityStatementCache;
+import de.medizininformatik_initiative.process.report.util.FhirStoreCircuitBreaker;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.process.report.util.SearchBundleExecutor;
+import de.medizininformatik_initiative.process.report.util.SearchResultCache;
+import de.medizininformatik_initiative.processes.common.fhir.client.FhirClientFactory;
+import de.medizininformatik_initiative.processes.common.fhir.client.logging.DataLogger;
+import de.medizininformatik_initiative.processes.common.fhir.client.token.OAuth2TokenClient;
+import de.medizininformatik_initiative.processes.common.fhir.client.token.OAuth2TokenProvider;
+
+public class SearchBundleLoadDriver
+{
+	private static final Logger logger = LoggerFactory.getLogger(SearchBundleLoadDriver.class);
+
+	public static final String SEARCH_BUNDLE = "/fhir/Bundle/search-bundle-v1.2.xml";
+
+	private static final String HRP_IDENTIFIER = "load-test-hrp";
+	private static final String LOCAL_IDENTIFIER = "load-test-dic";
+	private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+	public record Result(int executions, long searches, long errors, Duration elapsed, ReportMetrics metrics)
+	{
+		public double getSearchesPerSecond()
+		{
+			return elapsed.isZero() ? 0 : searches / (elapsed.toNanos() / 1_000_000_000d);
+		}
+	}
+
+	private final FhirContext fhirContext;
+	private final String baseUrl;
+	private final int socketTimeoutMillis;
+	private final int asyncPollingIntervalMillis;
+
+	public SearchBundleLoadDriver(FhirContext fhirContext, String baseUrl, int socketTimeoutMillis,
+			int asyncPollingIntervalMillis)
+	{
+		this.fhirContext = fhirContext;
+		this.baseUrl = baseUrl;
+		this.socketTimeoutMillis = socketTimeoutMillis;
+		this.asyncPollingIntervalMillis = asyncPollingIntervalMillis;
+	}
+
+	public Result run(Bundle searchBundle, boolean async, int executions, int concurrency) throws Exception
+	{
+		ReportMetrics metrics = new ReportMetrics();
+		SearchBundleExecutor executor = new SearchBundleExecutor(
+				createFhirClientFactory(fhirContext, baseUrl, socketTimeoutMillis, asyncPollingIntervalMillis), async,
+				metrics, new ReportEventResourceSize(fhirContext, false),
+				new FhirStoreCircuitBreaker(null, metrics, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, null),
+				new ReportCheckpointStore(null, fhirContext, Duration.ZERO), 1,
+				new FhirStoreFormat(null, FhirStoreFormat.FORMAT_NONE), new CapabilityStatementCache(null, null, false),
+				new SearchResultCache(Duration.ZERO, new ReportMetrics()));
+
+		ExecutorService threads = Executors.newFixedThreadPool(concurrency);
+		try
+		{
+			long start = System.nanoTime();
+
+			List<Future<Bundle>> futures = new ArrayList<>();
+			for (int i = 0; i < executions; i++)
+			{
+				String taskId = "load-test-" + i;
+				futures.add(threads.submit(() -> executor.execute(searchBundle, HRP_IDENTIFIER, taskId)));
+			}
+
+			long searches = 0, errors = 0;
+			for (Future<Bundle> future : futures)
+			{
+				Bundle response = future.get();
+				searches += response.getEntry().size();
+				errors += response.getEntry().stream().filter(e -> !"200".equals(e.getResponse().getStatus())).count();
+			}
+
+			return new Result(executions, searches, errors, Duration.ofNanos(System.nanoTime() - start), metrics);
+		}
+		finally
+		{
+			threads.shutdownNow();
+		}
+	}
+
+	public static FhirClientFactory createFhirClientFactory(FhirContext fhirContext, String baseUrl,
+			int socketTimeoutMillis, int asyncPollingIntervalMillis)
+	{
+		// same construction as FhirClientConfig, without certificates, authentication and proxy
+		OAuth2TokenProvider tokenProvider = new OAuth2TokenProvider(
+				new OAuth2TokenClient(null, "/.well-known/openid-configuration", null, null, CONNECT_TIMEOUT_MILLIS,
+						socketTimeoutMillis, null, null, null, null, false));
+
+		return new FhirClientFactory(null, null, null, null, CONNECT_TIMEOUT_MILLIS, socketTimeoutMillis,
+				CONNECT_TIMEOUT_MILLIS, baseUrl, null, null, null, tokenProvider, null, null, null, false,
+				asyncPollingIntervalMillis, fhirContext, LOCAL_IDENTIFIER, new DataLogger(false, fhirContext), false,
+				false);
+	}
+
+	public static Bundle readSearchBundle(FhirContext fhirContext) throws Exception
+	{
+		try (InputStream in = SearchBundleLoadDriver.class.getResourceAsStream(SEARCH_BUNDLE))
+		{
+			return fhirContext.newXmlParser().parseResource(Bundle.class, in);
+		}
+	}
+
+	// e.g. -Dreport.load.executions=20 -Dreport.load.concurrency=4 -Dreport.load.latency.median=50
+	public static void main(String[] args) throws Exception
+	{
+		FhirContext fhirContext = FhirContext.forR4();
+
+		int executions = Integer.getInteger("report.load.executions", 10);
+		int concurrency = Integer.getInteger("report.load.concurrency", 1);
+		long latencyMedian = Long.getLong("report.load.latency.median", 20);
+		double latencySigma = Double.parseDouble(System.getProperty("report.load.latency.sigma", "0.8"));
+		double internalServerErrorRate = Double.parseDouble(System.getProperty("report.load.error.500", "0"));
+		double tooManyRequestsRate = Double.parseDouble(System.getProperty("report.load.error.429", "0"));
+		double timeoutRate = Double.parseDouble(System.getProperty("report.load.error.timeout", "0"));
+		int socketTimeout = Integer.getInteger("report.load.socket.timeout", 5000);
+		int pollingInterval = Integer.getInteger("report.load.async.polling.interval", 100);
+
+		Bundle searchBundle = readSearchBundle(fhirContext);
+
+		for (boolean async : new boolean[] { false, true })
+		{
+			try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42)
+					.withLatency(LatencyDistribution.logNormal(Duration.ofMillis(latencyMedian), latencySigma))
+					.withErrors(internalServerErrorRate, tooManyRequestsRate)
+					.withTimeouts(timeoutRate, Duration.ofMillis(socketTimeout * 2L)).withAsync(async).start())
+			{
+				Result result = new SearchBundleLoadDriver(fhirContext, server.getBaseUrl(), socketTimeout,
+						pollingInterval).run(searchBundle, async, executions, concurrency);
+
+				logger.info(
+						"{} request pattern: {} executions, {} searches, {} errors in {} ms, {} searches/s, {} server requests ({} polls)",
+						async ? "Async" : "Normal", result.executions(), result.searches(), result.errors(),
+						result.elapsed().toMillis(), String.format("%.1f", result.getSearchesPerSecond()),
+						server.getRequestCount(), server.getPollCount());
+				result.metrics().format().forEach(line -> logger.info("  {}", line));
+			}
+		}
+	}
+}
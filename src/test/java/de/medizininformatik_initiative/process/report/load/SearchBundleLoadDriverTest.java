@@ -0,0 +1,95 @@
+package de.medizininformatik_initiative.process.report.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+
+public class SearchBundleLoadDriverTest
+{
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	private static Bundle searchBundle;
+
+	@BeforeClass
+	public static void beforeClass() throws Exception
+	{
+		searchBundle = SearchBundleLoadDriver.readSearchBundle(fhirContext);
+	}
+
+	@Test
+	public void testNormalRequestPattern() throws Exception
+	{
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42)
+				.withLatency(LatencyDistribution.uniform(Duration.ZERO, Duration.ofMillis(2))).start())
+		{
+			SearchBundleLoadDriver.Result result = new SearchBundleLoadDriver(fhirContext, server.getBaseUrl(), 5000,
+					10).run(searchBundle, false, 2, 2);
+
+			assertEquals(2L * searchBundle.getEntry().size(), result.searches());
+			assertEquals(0, result.errors());
+			assertEquals(result.searches(), server.getStatusCount(200));
+			assertTrue(result.metrics().timer(ReportMetrics.SEARCH_DURATION, ReportMetrics.TAG_RESOURCE, "Patient",
+					ReportMetrics.TAG_REQUEST_PATTERN, "normal").getCount() > 0);
+		}
+	}
+
+	@Test
+	public void testAsyncRequestPattern() throws Exception
+	{
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42)
+				.withLatency(LatencyDistribution.fixed(Duration.ofMillis(5))).withAsync(true).start())
+		{
+			SearchBundleLoadDriver.Result result = new SearchBundleLoadDriver(fhirContext, server.getBaseUrl(), 5000,
+					10).run(searchBundle, true, 1, 1);
+
+			assertEquals(searchBundle.getEntry().size(), result.searches());
+			assertEquals(0, result.errors());
+			assertEquals(searchBundle.getEntry().size(), server.getStatusCount(202) - countPending(server));
+			assertTrue(server.getPollCount() >= searchBundle.getEntry().size());
+		}
+	}
+
+	@Test
+	public void testErrorInjection() throws Exception
+	{
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42).withErrors(0.5, 0.5).start())
+		{
+			SearchBundleLoadDriver.Result result = new SearchBundleLoadDriver(fhirContext, server.getBaseUrl(), 5000,
+					10).run(searchBundle, false, 1, 1);
+
+			assertEquals(searchBundle.getEntry().size(), result.errors());
+			assertEquals(searchBundle.getEntry().size(), server.getStatusCount(500) + server.getStatusCount(429));
+		}
+	}
+
+	@Test
+	public void testTimeoutInjection() throws Exception
+	{
+		Bundle smallSearchBundle = new Bundle().setType(Bundle.BundleType.BATCH);
+		searchBundle.getEntry().stream().limit(3).forEach(e -> smallSearchBundle.addEntry(e.copy()));
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42)
+				.withTimeouts(1.0, Duration.ofMillis(1000)).start())
+		{
+			SearchBundleLoadDriver.Result result = new SearchBundleLoadDriver(fhirContext, server.getBaseUrl(), 200, 10)
+					.run(smallSearchBundle, false, 1, 1);
+
+			assertEquals(3, result.searches());
+			assertEquals(3, result.errors());
+		}
+	}
+
+	private long countPending(StandInFhirServer server)
+	{
+		// polls answered with 202 while the result was not ready yet
+		return server.getPollCount() - server.getStatusCount(200);
+	}
+}
@@ -0,0 +1,369 @@
+package de.medizininformatik_initiative.process.report.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ca.uhn.fhir.context.FhirContext;
+
+public class StandInFhirServer implements AutoCloseable
+{
+	private static final Logger logger = LoggerFactory.getLogger(StandInFhirServer.class);
+
+	private static final String BASE_PATH = "/fhir";
+	private static final String ASYNC_PATH = "/async/";
+	private static final String CAPABILITY_STATEMENT_PATH = "metadata";
+	private static final String CONTENT_TYPE = "application/fhir+json";
+	private static final int MAX_TOTAL = 100_000;
+	private static final String LAST_UPDATED_PARAMETER = "_lastUpdated=gt";
+
+	private enum Fault
+	{
+		NONE, INTERNAL_SERVER_ERROR, TOO_MANY_REQUESTS, TIMEOUT
+	}
+
+	private record AsyncJob(long readyAtNanos, Bundle result)
+	{
+	}
+
+	private final FhirContext fhirContext;
+	private final Random random;
+
+	private final Map<String, LatencyDistribution> resourceLatencies = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AsyncJob> asyncJobs = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+	private final LongAdder requests = new LongAdder();
+	private final Queue<String> requestUrls = new ConcurrentLinkedQueue<>();
+	private final LongAdder polls = new LongAdder();
+	private final Date started = new Date();
+
+	private volatile LatencyDistribution latency = LatencyDistribution.fixed(Duration.ZERO);
+	private volatile double internalServerErrorRate;
+	private volatile double tooManyRequestsRate;
+	private volatile double timeoutRate;
+	private volatile Duration timeoutDelay = Duration.ofSeconds(5);
+	private volatile boolean asyncEnabled;
+	private volatile Set<String> changedResourceTypes;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public StandInFhirServer(FhirContext fhirContext, long seed)
+	{
+		this.fhirContext = fhirContext;
+		this.random = new Random(seed);
+	}
+
+	public StandInFhirServer withLatency(LatencyDistribution latency)
+	{
+		this.latency = latency;
+		return this;
+	}
+
+	public StandInFhirServer withLatency(String resourceType, LatencyDistribution latency)
+	{
+		resourceLatencies.put(resourceType, latency);
+		return this;
+	}
+
+	public StandInFhirServer withErrors(double internalServerErrorRate, double tooManyRequestsRate)
+	{
+		this.internalServerErrorRate = internalServerErrorRate;
+		this.tooManyRequestsRate = tooManyRequestsRate;
+		return this;
+	}
+
+	public StandInFhirServer withTimeouts(double timeoutRate, Duration timeoutDelay)
+	{
+		this.timeoutRate = timeoutRate;
+		this.timeoutDelay = timeoutDelay;
+		return this;
+	}
+
+	public StandInFhirServer withAsync(boolean asyncEnabled)
+	{
+		this.asyncEnabled = asyncEnabled;
+		return this;
+	}
+
+	// _lastUpdated searches return a total of 0 for resource types not listed, all types change if not configured
+	public StandInFhirServer withChangedResourceTypes(Set<String> changedResourceTypes)
+	{
+		this.changedResourceTypes = changedResourceTypes;
+		return this;
+	}
+
+	public StandInFhirServer start() throws IOException
+	{
+		executor = Executors.newCachedThreadPool(runnable ->
+		{
+			Thread thread = new Thread(runnable, "stand-in-fhir-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext(BASE_PATH, this::handle);
+		server.setExecutor(executor);
+		server.start();
+
+		logger.info("Stand-in FHIR server started at {}", getBaseUrl());
+
+		return this;
+	}
+
+	@Override
+	public void close()
+	{
+		if (server != null)
+			server.stop(0);
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	public String getBaseUrl()
+	{
+		return "http://localhost:" + server.getAddress().getPort() + BASE_PATH;
+	}
+
+	public long getRequestCount()
+	{
+		return requests.sum();
+	}
+
+	// relative URLs of all requests except async polls
+	public List<String> getRequestUrls()
+	{
+		return new ArrayList<>(requestUrls);
+	}
+
+	public long getPollCount()
+	{
+		return polls.sum();
+	}
+
+	public long getStatusCount(int status)
+	{
+		LongAdder count = statusCounts.get(status);
+		return count == null ? 0 : count.sum();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException
+	{
+		try (exchange)
+		{
+			requests.increment();
+
+			String path = exchange.getRequestURI().getRawPath().substring(BASE_PATH.length());
+			String query = exchange.getRequestURI().getRawQuery();
+
+			if (!"GET".equals(exchange.getRequestMethod()))
+				sendOutcome(exchange, 405, "Only GET supported");
+			else if (path.startsWith(ASYNC_PATH))
+				handlePoll(exchange, path.substring(ASYNC_PATH.length()));
+			else
+			{
+				String resourceType = path.substring(1);
+				String url = query == null ? resourceType : resourceType + "?" + query;
+				requestUrls.add(url);
+				handleSearch(exchange, resourceType, url);
+			}
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException exception)
+		{
+			// client gave up on the request, e.g. after a socket timeout
+			logger.debug("Could not send response - {}", exception.getMessage());
+		}
+	}
+
+	private void handleSearch(HttpExchange exchange, String resourceType, String url)
+			throws IOException, InterruptedException
+	{
+		switch (sampleFault())
+		{
+			case INTERNAL_SERVER_ERROR:
+				sendOutcome(exchange, 500, "Injected internal server error");
+				return;
+
+			case TOO_MANY_REQUESTS:
+				exchange.getResponseHeaders().add("Retry-After", "1");
+				sendOutcome(exchange, 429, "Injected too many requests");
+				return;
+
+			case TIMEOUT:
+				Thread.sleep(timeoutDelay.toMillis());
+				sendOutcome(exchange, 504, "Injected timeout");
+				return;
+
+			default:
+				break;
+		}
+
+		Resource result = CAPABILITY_STATEMENT_PATH.equals(resourceType)
+				? createCapabilityStatement(url.contains("_summary=true"))
+				: createSearchSet(resourceType, url);
+		Duration delay = resourceLatencies.getOrDefault(resourceType, latency).sample(random);
+
+		if (asyncEnabled && isRespondAsync(exchange))
+		{
+			String id = UUID.randomUUID().toString();
+			asyncJobs.put(id, new AsyncJob(System.nanoTime() + delay.toNanos(), createAsyncResult(result)));
+
+			exchange.getResponseHeaders().add("Content-Location", getBaseUrl() + ASYNC_PATH + id);
+			send(exchange, 202, null);
+		}
+		else
+		{
+			Thread.sleep(delay.toMillis());
+			send(exchange, 200, result);
+		}
+	}
+
+	private void handlePoll(HttpExchange exchange, String id) throws IOException
+	{
+		polls.increment();
+
+		AsyncJob job = asyncJobs.get(id);
+
+		if (job == null)
+			sendOutcome(exchange, 404, "Unknown async request " + id);
+		else if (System.nanoTime() < job.readyAtNanos())
+		{
+			exchange.getResponseHeaders().add("X-Progress", "in progress");
+			send(exchange, 202, null);
+		}
+		else
+		{
+			asyncJobs.remove(id);
+			send(exchange, 200, job.result());
+		}
+	}
+
+	private Fault sampleFault()
+	{
+		double value = random.nextDouble();
+
+		if (value < internalServerErrorRate)
+			return Fault.INTERNAL_SERVER_ERROR;
+		else if (value < internalServerErrorRate + tooManyRequestsRate)
+			return Fault.TOO_MANY_REQUESTS;
+		else if (value < internalServerErrorRate + tooManyRequestsRate + timeoutRate)
+			return Fault.TIMEOUT;
+		else
+			return Fault.NONE;
+	}
+
+	private boolean isRespondAsync(HttpExchange exchange)
+	{
+		return exchange.getRequestHeaders().getOrDefault("Prefer", List.of()).stream()
+				.anyMatch(p -> p.contains("respond-async"));
+	}
+
+	private Bundle createSearchSet(String resourceType, String url)
+	{
+		// deterministic totals per url, the same search returns the same count in every run
+		boolean unchanged = changedResourceTypes != null && url.contains(LAST_UPDATED_PARAMETER)
+				&& !changedResourceTypes.contains(resourceType);
+		Bundle searchSet = new Bundle().setType(Bundle.BundleType.SEARCHSET)
+				.setTotal(unchanged ? 0 : Math.floorMod(url.hashCode(), MAX_TOTAL));
+		searchSet.getMeta().setLastUpdated(new Date());
+		searchSet.addLink().setRelation("self").setUrl(getBaseUrl() + "/" + url);
+
+		return searchSet;
+	}
+
+	private Bundle createAsyncResult(Resource result)
+	{
+		Bundle batchResponse = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+		batchResponse.addEntry().setResource(result).getResponse().setStatus("200 OK");
+
+		return batchResponse;
+	}
+
+	// summaries are marked as subsetted and do not contain rest components
+	private CapabilityStatement createCapabilityStatement(boolean summary)
+	{
+		CapabilityStatement capabilityStatement = new CapabilityStatement();
+		capabilityStatement.setStatus(Enumerations.PublicationStatus.ACTIVE).setDate(started)
+				.setKind(CapabilityStatement.CapabilityStatementKind.INSTANCE)
+				.setFhirVersion(Enumerations.FHIRVersion._4_0_1);
+		capabilityStatement.getSoftware().setName("Stand-in FHIR Server").setVersion("1.0.0");
+		capabilityStatement.addFormat("application/fhir+json").addFormat("application/fhir+xml");
+
+		if (summary)
+		{
+			capabilityStatement.getMeta().addTag("http://terminology.hl7.org/CodeSystem/v3-ObservationValue",
+					"SUBSETTED", "Resource encoded in summary mode");
+			return capabilityStatement;
+		}
+
+		CapabilityStatement.CapabilityStatementRestComponent rest = capabilityStatement.addRest()
+				.setMode(CapabilityStatement.RestfulCapabilityMode.SERVER);
+		for (String type : new String[] { "Condition", "Encounter", "Medication", "MedicationAdministration",
+				"MedicationRequest", "MedicationStatement", "Observation", "Patient", "Procedure", "Specimen" })
+			rest.addResource().setType(type).addSearchParam().setName("_profile")
+					.setType(Enumerations.SearchParamType.URI).setDocumentation("Search by profile");
+
+		return capabilityStatement;
+	}
+
+	private void sendOutcome(HttpExchange exchange, int status, String diagnostics) throws IOException
+	{
+		OperationOutcome outcome = new OperationOutcome();
+		outcome.addIssue().setSeverity(OperationOutcome.IssueSeverity.ERROR)
+				.setCode(OperationOutcome.IssueType.EXCEPTION).setDiagnostics(diagnostics);
+
+		send(exchange, status, outcome);
+	}
+
+	private void send(HttpExchange exchange, int status, Resource resource) throws IOException
+	{
+		statusCounts.computeIfAbsent(status, s -> new LongAdder()).increment();
+
+		if (resource == null)
+		{
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+
+		byte[] body = fhirContext.newJsonParser().encodeResourceToString(resource).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", CONTENT_TYPE);
+		exchange.sendResponseHeaders(status, body.length);
+
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			out.write(body);
+		}
+	}
+}
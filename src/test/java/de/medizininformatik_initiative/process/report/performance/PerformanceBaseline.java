@@ -0,0 +1,74 @@
+package de.medizininformatik_initiative.process.report.performance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class PerformanceBaseline
+{
+	public static final String BASELINE_RESOURCE = "/performance/baseline.properties";
+	public static final Path RESULT_FILE = Paths.get("target", "performance", "result.properties");
+
+	private final Properties baseline = new Properties();
+	private final Properties results = new Properties();
+	private final double margin;
+
+	public PerformanceBaseline(double margin) throws IOException
+	{
+		this.margin = margin;
+
+		try (InputStream in = PerformanceBaseline.class.getResourceAsStream(BASELINE_RESOURCE))
+		{
+			if (in == null)
+				throw new IOException(BASELINE_RESOURCE + " not found");
+
+			baseline.load(in);
+		}
+	}
+
+	public List<String> check(String name, PerformanceMeasurement measurement)
+	{
+		measurement.store(results, name);
+
+		List<String> violations = new ArrayList<>();
+		check(violations, name, PerformanceMeasurement.WALL_TIME_MILLIS, measurement.wallTime().toMillis());
+		check(violations, name, PerformanceMeasurement.ALLOCATED_BYTES_PER_ENTRY, measurement.allocatedBytesPerEntry());
+		check(violations, name, PerformanceMeasurement.PEAK_HEAP_BYTES, measurement.peakHeapBytes());
+
+		return violations;
+	}
+
+	private void check(List<String> violations, String name, String metric, long measured)
+	{
+		String key = name + "." + metric;
+		String value = baseline.getProperty(key);
+
+		if (value == null)
+		{
+			violations.add("No baseline for '" + key + "'");
+			return;
+		}
+
+		long limit = (long) (Long.parseLong(value.trim()) * (1 + margin));
+		if (measured > limit)
+			violations.add("'" + key + "' measured " + measured + " exceeds baseline " + value + " by more than "
+					+ Math.round(margin * 100) + "%");
+	}
+
+	// measured values can be copied to the baseline after an intended change
+	public void writeResults() throws IOException
+	{
+		Files.createDirectories(RESULT_FILE.getParent());
+
+		try (OutputStream out = Files.newOutputStream(RESULT_FILE))
+		{
+			results.store(out, "Measured with margin " + margin);
+		}
+	}
+}
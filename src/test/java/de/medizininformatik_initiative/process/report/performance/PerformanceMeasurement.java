@@ -0,0 +1,65 @@
+package de.medizininformatik_initiative.process.report.performance;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+public record PerformanceMeasurement(Duration wallTime, long allocatedBytesPerEntry, long peakHeapBytes)
+{
+
+	public static final String WALL_TIME_MILLIS = "wall.time.millis";
+	public static final String ALLOCATED_BYTES_PER_ENTRY = "allocated.bytes.per.entry";
+	public static final String PEAK_HEAP_BYTES = "peak.heap.bytes";
+
+	// wall time is the median of all runs, allocations are measured on the calling thread only
+	public static PerformanceMeasurement measure(int entries, int warmups, int runs, Runnable task)
+	{
+		for (int i = 0; i < warmups; i++)
+			task.run();
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(p -> MemoryType.HEAP.equals(p.getType())).toList();
+
+		System.gc();
+		heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+		long[] wallTimes = new long[runs];
+		long allocatedBytes = 0;
+
+		for (int i = 0; i < runs; i++)
+		{
+			long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+
+			task.run();
+
+			wallTimes[i] = System.nanoTime() - start;
+			allocatedBytes += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+		}
+
+		long peakHeap = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+
+		Arrays.sort(wallTimes);
+		return new PerformanceMeasurement(Duration.ofNanos(wallTimes[runs / 2]), allocatedBytes / runs / entries,
+				peakHeap);
+	}
+
+	public void store(Properties properties, String name)
+	{
+		properties.setProperty(name + "." + WALL_TIME_MILLIS, String.valueOf(wallTime.toMillis()));
+		properties.setProperty(name + "." + ALLOCATED_BYTES_PER_ENTRY, String.valueOf(allocatedBytesPerEntry));
+		properties.setProperty(name + "." + PEAK_HEAP_BYTES, String.valueOf(peakHeapBytes));
+	}
+
+	@Override
+	public String toString()
+	{
+		return "wall time " + wallTime.toMillis() + " ms, " + allocatedBytesPerEntry + " bytes allocated per entry, "
+				+ peakHeapBytes / (1024 * 1024) + " MiB peak heap";
+	}
+}
@@ -0,0 +1,174 @@
+package de.medizininformatik_initiative.process.report.performance;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Identifier;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ca.uhn.fhir.context.FhirContext;
+import de.medizininformatik_initiative.process.report.ConstantsReport;
+import de.medizininformatik_initiative.process.report.jfr.ReportEventResourceSize;
+import de.medizininformatik_initiative.process.report.load.LatencyDistribution;
+import de.medizininformatik_initiative.process.report.load.SearchBundleLoadDriver;
+import de.medizininformatik_initiative.process.report.load.StandInFhirServer;
+import de.medizininformatik_initiative.process.report.metrics.ReportMetrics;
+import de.medizininformatik_initiative.process.report.store.ReportCheckpointStore;
+import de.medizininformatik_initiative.process.report.util.CapabilityStatementCache;
+import de.medizininformatik_initiative.process.report.util.FhirStoreCircuitBreaker;
+import de.medizininformatik_initiative.process.report.util.FhirStoreFormat;
+import de.medizininformatik_initiative.process.report.util.ReportBundleMerger;
+import de.medizininformatik_initiative.process.report.util.ReportEntryTransformer;
+import de.medizininformatik_initiative.process.report.util.SearchBundleExecutor;
+import de.medizininformatik_initiative.process.report.util.SearchQueryCheckService;
+import de.medizininformatik_initiative.process.report.util.SearchResultCache;
+
+public class ReportPerformanceTest
+{
+	private static final Logger logger = LoggerFactory.getLogger(ReportPerformanceTest.class);
+
+	private static final FhirContext fhirContext = FhirContext.forR4();
+
+	private static final double MARGIN = Double.parseDouble(System.getProperty("report.performance.margin", "0.5"));
+	private static final int REPETITIONS = Integer.getInteger("report.performance.repetitions", 50);
+	private static final int CREATION_REPETITIONS = Integer.getInteger("report.performance.creation.repetitions", 2);
+	private static final int DICS = Integer.getInteger("report.performance.dics", 10);
+	private static final int WARMUPS = Integer.getInteger("report.performance.warmups", 2);
+	private static final int RUNS = Integer.getInteger("report.performance.runs", 5);
+
+	private static Bundle searchBundle;
+	private static PerformanceBaseline baseline;
+
+	@BeforeClass
+	public static void beforeClass() throws Exception
+	{
+		searchBundle = SearchBundleLoadDriver.readSearchBundle(fhirContext);
+		baseline = new PerformanceBaseline(MARGIN);
+	}
+
+	@AfterClass
+	public static void afterClass() throws Exception
+	{
+		baseline.writeResults();
+	}
+
+	@Test
+	public void testValidation()
+	{
+		Bundle scaled = scale(searchBundle, REPETITIONS);
+		SearchQueryCheckService searchQueryCheckService = new SearchQueryCheckService();
+
+		check("validation", PerformanceMeasurement.measure(scaled.getEntry().size(), WARMUPS, RUNS,
+				() -> searchQueryCheckService.checkBundle(scaled)));
+	}
+
+	@Test
+	public void testReportCreation() throws Exception
+	{
+		Bundle scaled = scale(searchBundle, CREATION_REPETITIONS);
+
+		try (StandInFhirServer server = new StandInFhirServer(fhirContext, 42)
+				.withLatency(LatencyDistribution.fixed(Duration.ZERO)).start())
+		{
+			SearchBundleExecutor executor = new SearchBundleExecutor(
+					SearchBundleLoadDriver.createFhirClientFactory(fhirContext, server.getBaseUrl(), 5000, 100), false,
+					new ReportMetrics(), new ReportEventResourceSize(fhirContext, false),
+					new FhirStoreCircuitBreaker(null, new ReportMetrics(), 0, Duration.ZERO, Duration.ZERO,
+							Duration.ZERO, null),
+					new ReportCheckpointStore(null, fhirContext, Duration.ZERO), 1,
+					new FhirStoreFormat(null, FhirStoreFormat.FORMAT_NONE),
+					new CapabilityStatementCache(null, null, false),
+					new SearchResultCache(Duration.ZERO, new ReportMetrics()));
+			ReportEntryTransformer transformer = new ReportEntryTransformer(false);
+
+			check("creation", PerformanceMeasurement.measure(scaled.getEntry().size(), WARMUPS, RUNS, () ->
+			{
+				executor.execute(scaled, "performance-test-hrp", "performance-test", Map.of(),
+						transformer::transformEntry, (completed, entries) ->
+						{});
+			}));
+		}
+	}
+
+	@Test
+	public void testAggregation()
+	{
+		Bundle scaled = scale(searchBundle, REPETITIONS);
+		ReportEntryTransformer transformer = new ReportEntryTransformer(false);
+
+		List<Bundle> reports = new ArrayList<>();
+		for (int i = 0; i < DICS; i++)
+		{
+			Bundle report = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE).setIdentifier(new Identifier()
+					.setSystem(ConstantsReport.NAMINGSYSTEM_CDS_REPORT_IDENTIFIER).setValue("dic-" + i));
+			Bundle response = createResponse(scaled, i);
+			for (int j = 0; j < scaled.getEntry().size(); j++)
+				report.addEntry(transformer.transformEntry(scaled.getEntry().get(j).getRequest().getUrl(),
+						response.getEntry().get(j)));
+			reports.add(report);
+		}
+
+		ReportBundleMerger merger = new ReportBundleMerger();
+
+		check("aggregation", PerformanceMeasurement.measure(scaled.getEntry().size() * DICS, WARMUPS, RUNS, () ->
+		{
+			Bundle base = reports.get(0).copy();
+			reports.stream().skip(1).forEach(next -> merger.mergeBundles(base, next));
+		}));
+	}
+
+	private void check(String name, PerformanceMeasurement measurement)
+	{
+		logger.info("Performance of {}: {}", name, measurement);
+
+		List<String> violations = baseline.check(name, measurement);
+		assertTrue(String.join(", ", violations), violations.isEmpty());
+	}
+
+	private static Bundle scale(Bundle searchBundle, int repetitions)
+	{
+		Bundle scaled = new Bundle().setType(Bundle.BundleType.BATCH);
+
+		// repeated urls are made unique, report merges are keyed by url
+		for (int r = 0; r < repetitions; r++)
+		{
+			for (Bundle.BundleEntryComponent entry : searchBundle.getEntry())
+			{
+				Bundle.BundleEntryComponent copy = entry.copy();
+				String url = copy.getRequest().getUrl();
+
+				if (r > 0)
+					copy.getRequest().setUrl(url + (url.contains("?") ? "&" : "?") + "_profile=repetition-" + r);
+
+				scaled.addEntry(copy);
+			}
+		}
+
+		return scaled;
+	}
+
+	private static Bundle createResponse(Bundle searchBundle, int dic)
+	{
+		Bundle response = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+
+		for (Bundle.BundleEntryComponent entry : searchBundle.getEntry())
+		{
+			Bundle searchSet = new Bundle().setType(Bundle.BundleType.SEARCHSET)
+					.setTotal(Math.floorMod(entry.getRequest().getUrl().hashCode() + dic, 100_000));
+
+			Bundle.BundleEntryComponent responseEntry = response.addEntry().setResource(searchSet);
+			responseEntry.getResponse().setStatus("200");
+		}
+
+		return response;
+	}
+}